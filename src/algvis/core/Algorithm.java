@@ -31,7 +31,15 @@ import algvis.ui.VisPanel;
  * <p/>
  * A visualized algorithm has its own thread which can be suspended (e.g., after
  * each step of the algorithm; see method pause) and is automatically resumed
- * (method myresume) after pressing the "Next" button.
+ * (method myresume) after pressing the "Next" button. The thread is a platform
+ * or a virtual thread depending on the panel's AlgorithmRuntime.
+ * <p/>
+ * When the panel is in the turbo mode (see VisPanel.turbo), the algorithm runs
+ * headless: it never waits at the gate, records no history, writes no
+ * commentary and does not touch the scene; only the final state is shown.
+ * <p/>
+ * The scene is not drawn while an algorithm changes it; each pause publishes
+ * it again without waiting for the screen (see Scene.publish).
  */
 abstract public class Algorithm implements Runnable {
 	private final VisPanel panel;
@@ -61,31 +69,46 @@ abstract public class Algorithm implements Runnable {
 	@Override
 	public void run() {
 		panel.D.A = this;
-		begin();
+		if (!wrapped) {
+			panel.scene.beginUpdate();
+		}
 		try {
-			runAlgorithm();
-		} catch (final InterruptedException e) {
-			this.done = true;
-			panel.history.trimToEnd();
-			EventQueue.invokeLater(new Runnable() {
-				@Override
-				public void run() {
-					panel.refresh();
-				}
-			});
-			// e.printStackTrace();
-			return;
+			begin();
+			try {
+				runAlgorithm();
+			} catch (final InterruptedException e) {
+				this.done = true;
+				panel.history.trimToEnd();
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						panel.refresh();
+					}
+				});
+				// e.printStackTrace();
+				return;
+			}
+			end();
+		} finally {
+			if (!wrapped) {
+				panel.scene.publish();
+				panel.screen.repaint();
+			}
 		}
-		end();
 	}
 
 	public abstract void runAlgorithm() throws InterruptedException;
 
 	protected void pause() throws InterruptedException {
+		if (panel.turbo) {
+			return;
+		}
 		if (wrapped) {
 			wrapperAlg.pause();
 		} else {
 			panelState.end();
+			panel.scene.publish();
+			panel.screen.repaint();
 			if (panel.pauses) {
 				EventQueue.invokeLater(new Runnable() {
 					@Override
@@ -95,6 +118,7 @@ abstract public class Algorithm implements Runnable {
 				});
 				gate.acquire();
 			}
+			panel.scene.beginUpdate();
 			panel.history.addEdit(panelState = new UpdatableStateEdit(panel,
 					panel.history.getNextId()));
 		}
@@ -109,42 +133,63 @@ abstract public class Algorithm implements Runnable {
 	}
 
 	protected void setHeader(String s) {
-		panel.commentary.setHeader(s);
+		if (!panel.turbo) {
+			panel.commentary.setHeader(s);
+		}
 	}
 
 	protected void setHeader(String s, String... par) {
-		panel.commentary.setHeader(s, par);
+		if (!panel.turbo) {
+			panel.commentary.setHeader(s, par);
+		}
 	}
 
 	protected void setHeader(String s, int... par) {
-		panel.commentary.setHeader(s, par);
+		if (!panel.turbo) {
+			panel.commentary.setHeader(s, par);
+		}
 	}
 
 	protected void addNote(String s) {
-		panel.commentary.addNote(s);
+		if (!panel.turbo) {
+			panel.commentary.addNote(s);
+		}
 	}
 
 	public void addNote(String s, String[] par) {
-		panel.commentary.addNote(s, par);
+		if (!panel.turbo) {
+			panel.commentary.addNote(s, par);
+		}
 	}
 
 	protected void addNote(String s, int... par) {
-		panel.commentary.addNote(s, par);
+		if (!panel.turbo) {
+			panel.commentary.addNote(s, par);
+		}
 	}
 
 	protected void addStep(String s) {
-		panel.commentary.addStep(s);
+		if (!panel.turbo) {
+			panel.commentary.addStep(s);
+		}
 	}
 
 	protected void addStep(String s, String... par) {
-		panel.commentary.addStep(s, par);
+		if (!panel.turbo) {
+			panel.commentary.addStep(s, par);
+		}
 	}
 
 	protected void addStep(String s, int... par) {
-		panel.commentary.addStep(s, par);
+		if (!panel.turbo) {
+			panel.commentary.addStep(s, par);
+		}
 	}
 
 	protected void addToScene(VisualElement element) {
+		if (panel.turbo) {
+			return;
+		}
 		if (wrapped) {
 			wrapperAlg.addToScene(element);
 		} else {
@@ -154,6 +199,9 @@ abstract public class Algorithm implements Runnable {
 	}
 
 	protected void removeFromScene(VisualElement element) {
+		if (panel.turbo) {
+			return;
+		}
 		// if (panel.pauses) {
 		panel.scene.remove(element);
 		// } else {
@@ -162,6 +210,9 @@ abstract public class Algorithm implements Runnable {
 	}
 
 	void begin() {
+		if (panel.turbo) {
+			return;
+		}
 		panel.history.addEdit(panelState = new UpdatableStateEdit(panel,
 				panel.history.getNextId()));
 		panel.commentary.clear();
@@ -175,6 +226,10 @@ abstract public class Algorithm implements Runnable {
 	}
 
 	void end() {
+		if (panel.turbo) {
+			this.done = true;
+			return;
+		}
 		panel.D.setStats();
 		panelState.end();
 		panel.history.putAlgorithmEnd();
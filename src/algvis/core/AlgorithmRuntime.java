@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The runtime that runs the algorithms of a panel. A suspended algorithm is a
+ * thread blocked in Algorithm.pause() (on its gate semaphore), so the kind of
+ * thread decides what a suspended algorithm costs:
+ * <ul>
+ * <li>PLATFORM - each panel has its own single-thread executor; every
+ * suspended algorithm holds a whole platform thread (with its stack);</li>
+ * <li>VIRTUAL - all the panels share one virtual-thread-per-task executor; a
+ * suspended algorithm is an unmounted virtual thread (a few kilobytes on the
+ * heap), so many panels can step concurrently.</li>
+ * </ul>
+ * Virtual threads need Java 21; on older runtimes VIRTUAL falls back to
+ * PLATFORM. The default is taken from the system property "algvis.runtime"
+ * ("platform" or "virtual"); it can be switched in the menu (see
+ * Settings.setRuntime).
+ */
+public enum AlgorithmRuntime {
+	PLATFORM, VIRTUAL;
+
+	private static ExecutorService virtualThreads = null;
+	private static boolean virtualChecked = false;
+
+	public static AlgorithmRuntime getDefault() {
+		return parse(System.getProperty("algvis.runtime"));
+	}
+
+	public static AlgorithmRuntime parse(String s) {
+		if ("virtual".equals(s)) {
+			return VIRTUAL;
+		}
+		return PLATFORM;
+	}
+
+	/**
+	 * Is this runtime really available in the running JVM?
+	 */
+	public boolean isSupported() {
+		return this == PLATFORM || virtualThreads() != null;
+	}
+
+	/**
+	 * Executor for the operation queue of one panel. The queue itself makes
+	 * sure that its tasks run one after another.
+	 */
+	Executor newExecutor() {
+		if (this == VIRTUAL) {
+			final Executor e = virtualThreads();
+			if (e != null) {
+				return e;
+			}
+		}
+		return Executors.newSingleThreadExecutor();
+	}
+
+	/**
+	 * Stop the executor of a queue which has switched to another runtime
+	 * once its running task ends; the shared executor is kept.
+	 */
+	static void release(Executor e) {
+		if (e instanceof ExecutorService && e != virtualThreads) {
+			((ExecutorService) e).shutdown();
+		}
+	}
+
+	private static synchronized ExecutorService virtualThreads() {
+		if (!virtualChecked) {
+			virtualChecked = true;
+			try {
+				virtualThreads = (ExecutorService) Executors.class.getMethod(
+						"newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (final Exception e) {
+				System.err.println("Virtual threads are not available ("
+						+ System.getProperty("java.version")
+						+ "); using platform threads.");
+			}
+		}
+		return virtualThreads;
+	}
+}
@@ -16,9 +16,12 @@
  ******************************************************************************/
 package algvis.core;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.awt.EventQueue;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import algvis.core.history.UpdatableStateEdit;
 import algvis.core.visual.VisualElement;
 import algvis.core.visual.ZDepth;
 import algvis.ui.InputField;
@@ -33,16 +36,40 @@ abstract public class DataStructure extends VisualElement {
 	public final VisPanel panel;
 	public static final int rootx = 0, rooty = 0, sheight = 600, swidth = 400,
 			minsepx = 38, minsepy = 30;
+	/** random(n) inserts more keys than this in the turbo mode */
+	public static final int TURBO_RANDOM = 100;
 	public int x1, x2, y1 = -50, y2;
 	public Node chosen = null;
 	public static String adtName = "";
 	public static String dsName = "";
+	protected final String hash = Integer.toString(hashCode());
+	/** the thread running fastForward, if any */
+	private volatile Thread fastThread = null;
+	/** the nodes on the screen (see NodeGrid) */
+	public final NodeGrid grid = new NodeGrid();
+	/** the number of nodes ever created for this structure (see TreeWalk) */
+	private final AtomicInteger nodes = new AtomicInteger();
 
 	protected DataStructure(VisPanel panel) {
 		super(ZDepth.DS);
 		this.panel = panel;
 	}
 
+	/**
+	 * Called by each new node of this structure.
+	 */
+	void nodeCreated() {
+		nodes.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of nodes ever created for this structure; no tree of
+	 *         it, as published or as being changed, has more nodes
+	 */
+	public int getNodeCount() {
+		return nodes.get();
+	}
+
 	abstract public String getName();
 
 	abstract public String stats();
@@ -55,25 +82,28 @@ abstract public class DataStructure extends VisualElement {
 	abstract public void draw(View v);
 
 	public void start(Runnable runnable) {
+		start(runnable, OperationQueue.LOG);
+	}
+
+	/**
+	 * Queue the runnable in the panel's operation queue; the callback is
+	 * notified when it completes or fails. Within fastForward the runnable is
+	 * run at once by the thread of the fast-forward.
+	 */
+	public void start(Runnable runnable, OperationCallback callback) {
 		unmark();
-		final Future result = panel.algorithmPool.submit(runnable);
-		// TODO only for debugging purposes:
-		// mozno to trochu spomali vkladanie vrcholov, ale bez tohto by sa nedal
-		// najst bug v algoritmoch (nevypisal
-		// by sa ziadny exception)
-		final Thread t = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					result.get();
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
-				} catch (final ExecutionException e) {
-					e.printStackTrace();
-				}
+		if (Thread.currentThread() != fastThread) {
+			panel.operations.submit(runnable, callback);
+		} else if (Thread.currentThread().isInterrupted()) {
+			callback.failed(runnable, new CancellationException());
+		} else {
+			try {
+				runnable.run();
+				callback.completed(runnable);
+			} catch (final Throwable t) {
+				callback.failed(runnable, t);
 			}
-		});
-		t.start();
+		}
 	}
 
 	public void setStats() {
@@ -89,10 +119,14 @@ abstract public class DataStructure extends VisualElement {
 	}
 
 	public void random(final int n) {
+		if (n > TURBO_RANDOM) {
+			fastRandom(n);
+			return;
+		}
 		final boolean p = panel.pauses;
 		panel.pauses = false;
 		for (int i = 0; i < n; ++i) {
-			insert(MyRandom.Int(InputField.MAX + 1));
+			insert(panel.random.Int(InputField.MAX + 1));
 		}
 		start(new Runnable() {
 			@Override
@@ -102,6 +136,67 @@ abstract public class DataStructure extends VisualElement {
 		});
 	}
 
+	/**
+	 * Run all the operations issued by the given runnable (e.g., a loop calling
+	 * insert) in the headless turbo mode and show only the final state. The
+	 * operations record no steps of their own; the whole run is kept in the
+	 * history as a single step after the earlier ones.
+	 * <p/>
+	 * The whole run is a single operation in the queue: the operations it
+	 * issues are run at once instead of being queued (see start), so a long
+	 * run neither fills the queue nor blocks the caller. Within another
+	 * fastForward, the operations just join it.
+	 */
+	public void fastForward(final Runnable operations) {
+		if (Thread.currentThread() == fastThread) {
+			operations.run();
+			return;
+		}
+		start(new Runnable() {
+			@Override
+			public void run() {
+				final UpdatableStateEdit edit = new UpdatableStateEdit(panel,
+						panel.history.getNextId());
+				panel.history.addEdit(edit);
+				panel.turbo = true;
+				fastThread = Thread.currentThread();
+				try {
+					operations.run();
+				} finally {
+					fastThread = null;
+					panel.turbo = false;
+					panel.commentary.clear();
+					panel.scene.endAnimation();
+					edit.end();
+					panel.history.putAlgorithmEnd();
+					setStats();
+					EventQueue.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							panel.refresh();
+						}
+					});
+				}
+			}
+		});
+	}
+
+	/**
+	 * Insert n random keys in the turbo mode.
+	 */
+	public void fastRandom(final int n) {
+		// the keys are drawn in the queue, from a generator split off now
+		final Random keys = panel.random.fork();
+		fastForward(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < n; ++i) {
+					insert(keys.nextInt(InputField.MAX + 1));
+				}
+			}
+		});
+	}
+
 	void unmark() {
 		if (chosen != null) {
 			chosen.unmark();
@@ -109,8 +204,16 @@ abstract public class DataStructure extends VisualElement {
 		}
 	}
 
+	/**
+	 * The layout chosen in the layout menu, or the default layout of this
+	 * data structure if none has been chosen.
+	 */
 	public Layout getLayout() {
-		return panel.S.layout;
+		return panel.S.layout != null ? panel.S.layout : getDefaultLayout();
+	}
+
+	public Layout getDefaultLayout() {
+		return Layout.SIMPLE;
 	}
 
 	public Algorithm getA() {
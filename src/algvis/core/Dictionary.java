@@ -17,9 +17,12 @@
 package algvis.core;
 
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.Random;
 
 import algvis.core.history.HashtableStoreSupport;
+import algvis.ui.InputField;
 import algvis.ui.VisPanel;
 import algvis.ui.view.Layout;
 
@@ -38,6 +41,94 @@ abstract public class Dictionary extends DataStructure {
 
 	abstract public void delete(int x);
 
+	/**
+	 * A large random dictionary is built at once (see insertAll) instead of
+	 * key by key.
+	 */
+	@Override
+	public void fastRandom(int n) {
+		final Random r = panel.random.fork();
+		final int[] keys = new int[n];
+		for (int i = 0; i < n; ++i) {
+			keys[i] = r.nextInt(InputField.MAX + 1);
+		}
+		insertAll(keys, false);
+	}
+
+	/**
+	 * Insert all the given keys at once (see insertAll(int[], boolean)); the
+	 * nodes fly to their places in one summary step.
+	 */
+	public void insertAll(int[] keys) {
+		insertAll(keys, true);
+	}
+
+	/**
+	 * Insert all the given keys at once. The new keys are merged with the keys
+	 * already in the dictionary and the structure is built directly in its
+	 * balanced shape in linear time (see buildFrom), followed by a single
+	 * layout pass. If animate is set, the nodes move to their places in one
+	 * summary step; otherwise the final state is shown immediately.
+	 */
+	public void insertAll(int[] keys, final boolean animate) {
+		final int[] sorted = sortedSet(keys);
+		start(new AlgorithmAdapter(panel) {
+			@Override
+			public void runAlgorithm() throws InterruptedException {
+				setHeader("insertall", sorted.length);
+				final int[] all = union(keys(), sorted);
+				buildFrom(all);
+				if (animate) {
+					addStep("insertall-built", all.length);
+					pause();
+				} else {
+					endAnimation();
+				}
+				addNote("done");
+			}
+		});
+	}
+
+	/**
+	 * @return all the keys in the dictionary in increasing order
+	 */
+	abstract protected int[] keys();
+
+	/**
+	 * Throw away the current contents and build the structure holding exactly
+	 * the given keys (sorted, no duplicates) in O(n) time; then reposition.
+	 */
+	abstract protected void buildFrom(int[] sorted);
+
+	private static int[] sortedSet(int[] a) {
+		final int[] r = a.clone();
+		Arrays.sort(r);
+		int n = 0;
+		for (int i = 0; i < r.length; ++i) {
+			if (n == 0 || r[i] != r[n - 1]) {
+				r[n++] = r[i];
+			}
+		}
+		return Arrays.copyOf(r, n);
+	}
+
+	// merge two sorted arrays without duplicates
+	private static int[] union(int[] a, int[] b) {
+		final int[] r = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				r[n++] = a[i++];
+			} else if (i == a.length || b[j] < a[i]) {
+				r[n++] = b[j++];
+			} else {
+				r[n++] = a[i++];
+				++j;
+			}
+		}
+		return Arrays.copyOf(r, n);
+	}
+
 	protected Node getRoot() {
 		return root;
 	}
@@ -52,7 +143,7 @@ abstract public class Dictionary extends DataStructure {
 	}
 
 	@Override
-	public Layout getLayout() {
+	public Layout getDefaultLayout() {
 		return Layout.COMPACT;
 	}
 
@@ -2,26 +2,76 @@ package algvis.core;
 
 import java.util.Random;
 
+/**
+ * The random generators of a panel (see VisPanel.random); every panel has its
+ * own, so that replaying a session in one panel is not disturbed by the
+ * others.
+ */
 public class MyRandom {
-	static Random G = new Random(System.currentTimeMillis());
+	private final Random G = new Random(System.currentTimeMillis());
+	/**
+	 * generator for the choices made inside running algorithms (treap
+	 * priorities, skip list towers); these run in the operation queue
+	 * concurrently with the user interface, so they cannot share G
+	 */
+	private final Random A = new Random(System.currentTimeMillis() + 1);
 
-	public static boolean heads() {
+	public boolean heads() {
 		return G.nextInt(2) == 1;
 	}
 
-	public static boolean tails() {
+	public boolean tails() {
 		return G.nextInt(2) == 0;
 	}
 
-	public static int bit() {
+	public int bit() {
 		return G.nextInt(2);
 	}
 
-	public static int Int(int n) {
+	public int Int(int n) {
 		return G.nextInt(n);
 	}
 
-	public static int Int(int min, int max) {
+	public int Int(int min, int max) {
 		return G.nextInt(max - min + 1) + min;
 	}
+
+	/**
+	 * @return a new generator seeded from the user interface generator; for
+	 *         random choices made later in the operation queue
+	 */
+	public Random fork() {
+		return new Random(G.nextLong());
+	}
+
+	/**
+	 * @return a number uniformly distributed in [0, 1); to be called from
+	 *         algorithms only
+	 */
+	public double uniform() {
+		return A.nextDouble();
+	}
+
+	/**
+	 * A fair coin toss; to be called from algorithms only.
+	 */
+	public boolean toss() {
+		return A.nextBoolean();
+	}
+
+	/**
+	 * Restarts the generator used by the user interface (used to replay
+	 * recorded sessions).
+	 */
+	public void setSeed(long seed) {
+		G.setSeed(seed);
+	}
+
+	/**
+	 * Restarts the generator used by algorithms; call it from the operation
+	 * queue.
+	 */
+	public void setAlgorithmSeed(long seed) {
+		A.setSeed(seed);
+	}
 }
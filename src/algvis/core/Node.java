@@ -17,10 +17,15 @@
 package algvis.core;
 
 import java.awt.Color;
+import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.util.Hashtable;
+import java.util.List;
 
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.Recordable;
+import algvis.core.history.StateRecord;
+import algvis.core.visual.DirtyRegion;
+import algvis.core.visual.Scene;
 import algvis.core.visual.VisualElement;
 import algvis.core.visual.ZDepth;
 import algvis.ui.Fonts;
@@ -32,18 +37,23 @@ import algvis.ui.view.View;
  * direction. Nodes are by default drawn as circles with their key in the
  * middle.
  */
-public class Node extends VisualElement {
+public class Node extends VisualElement implements Recordable {
 	public DataStructure D;
 	protected int key;
 	/**
 	 * x, y - node position tox, toy - the position, where the node is heading
-	 * steps - the number of steps to reach the destination
+	 * steps - the number of steps to reach the destination (or 0 if it is
+	 * there); the node started at (fromx, fromy) at the time start
 	 */
 	public volatile int x;
 	public volatile int y;
 	public int tox;
 	public int toy;
 	protected int steps;
+	private int fromx, fromy;
+	private long start;
+	// the time of the last frame in which the node moved (see isMoving)
+	private long movedAt;
 	/** the state of a node - either ALIVE, DOWN, LEFT, or RIGHT. */
 	public int state = ALIVE;
 	private NodeColor color = NodeColor.NORMAL;
@@ -52,9 +62,23 @@ public class Node extends VisualElement {
 	private int arrow = Node.NOARROW; // NOARROW or angle (0=E, 45=SE, 90=S,
 										// 135=SW, 180=W)
 	private boolean arc = false;
+	// the cell of the target position in the grid of D (see NodeGrid)
+	long cell = NodeGrid.NONE;
+	// whether nothing in the subtree has changed since the following were
+	// computed: the number of nodes in the subtree and the box they fit in,
+	// whether none of them moves, the time of the frame in which they were
+	// computed and the cached image of the subtree (see Tile, changed)
+	boolean tileValid = false;
+	int tileSize;
+	Rectangle tileBox;
+	boolean tileStill;
+	long tileSince;
+	Tile tile;
 
 	public static final int STEPS = 10;
 	public static final int RADIUS = 10;
+	// room for the labels around a node when it is redrawn (see moved)
+	private static final int MARGIN = RADIUS;
 
 	/**
 	 * the key values are generally integers from 1 to 999 (inclusive) special
@@ -91,6 +115,8 @@ public class Node extends VisualElement {
 		this.x = tox = x;
 		this.y = toy = y;
 		steps = 0;
+		D.nodeCreated();
+		D.grid.file(this);
 	}
 
 	protected Node(DataStructure D, int key, int zDepth) {
@@ -106,7 +132,34 @@ public class Node extends VisualElement {
 	}
 
 	public void setState(int s) {
-		state = s;
+		if (state != s) {
+			state = s;
+			changed();
+		}
+	}
+
+	/**
+	 * Notes that the node looks different or has been relinked, so that the
+	 * subtrees containing it have to be checked again and their cached images
+	 * dropped (see Tile). The setters call this; code writing the public
+	 * fields of a node directly has to call it too.
+	 */
+	public void changed() {
+		Node w = this;
+		// the ancestors of a changed node have changed too
+		while (w != null && w.tileValid) {
+			w.tileValid = false;
+			w.tile = null;
+			w = w.getParent();
+		}
+	}
+
+	/**
+	 * @return the parent of the node in the tree drawing it, or null (see
+	 *         changed)
+	 */
+	protected Node getParent() {
+		return null;
 	}
 
 	public NodeColor getColor() {
@@ -114,20 +167,25 @@ public class Node extends VisualElement {
 	}
 
 	public void setColor(NodeColor color) {
-		fgColor(color.fgColor);
-		bgColor(color.bgColor);
-		this.color = color;
+		if (color != this.color) {
+			fgColor(color.fgColor);
+			bgColor(color.bgColor);
+			this.color = color;
+			changed();
+		}
 	}
 
 	protected void fgColor(Color fg) {
 		if (fg != color.fgColor) {
 			color = new NodeColor(fg, color.bgColor);
+			changed();
 		}
 	}
 
 	protected void bgColor(Color bg) {
 		if (bg != color.bgColor) {
 			color = new NodeColor(color.fgColor, bg);
+			changed();
 		}
 	}
 
@@ -148,11 +206,17 @@ public class Node extends VisualElement {
 	}
 
 	public void mark() {
-		marked = true;
+		if (!marked) {
+			marked = true;
+			changed();
+		}
 	}
 
 	public void unmark() {
-		marked = false;
+		if (marked) {
+			marked = false;
+			changed();
+		}
 	}
 
 	/**
@@ -163,6 +227,7 @@ public class Node extends VisualElement {
 	public void pointAbove(Node w) {
 		dir = w;
 		arrow = Node.DIRARROW;
+		changed();
 	}
 
 	/**
@@ -173,6 +238,7 @@ public class Node extends VisualElement {
 	public void pointTo(Node w) {
 		dir = w;
 		arrow = Node.TOARROW;
+		changed();
 	}
 
 	/**
@@ -184,12 +250,16 @@ public class Node extends VisualElement {
 	public void pointInDir(int angle) {
 		dir = null;
 		arrow = angle;
+		changed();
 	}
 
 	/**
 	 * Stop drawing an arrow.
 	 */
 	public void noArrow() {
+		if (arrow != Node.NOARROW) {
+			changed();
+		}
 		dir = null;
 		arrow = Node.NOARROW;
 	}
@@ -202,13 +272,17 @@ public class Node extends VisualElement {
 	public void setArc(Node w) {
 		dir = w;
 		arc = true;
+		changed();
 	}
 
 	/**
 	 * Stop drawing an arc.
 	 */
 	public void noArc() {
-		arc = false;
+		if (arc) {
+			arc = false;
+			changed();
+		}
 	}
 
 	/**
@@ -243,8 +317,10 @@ public class Node extends VisualElement {
 
 	protected void drawKey(View v) {
 		v.setColor(getFgColor());
-		if (getKey() != NOKEY) {
+		if (getKey() == INF || getKey() == -INF) {
 			v.drawString(toString(), x, y, Fonts.NORMAL);
+		} else if (getKey() != NOKEY) {
+			v.drawNumber(getKey(), x, y, Fonts.NORMAL);
 		}
 	}
 
@@ -299,9 +375,19 @@ public class Node extends VisualElement {
 		}
 	}
 
+	/**
+	 * Skip nodes outside the visible part of the view, unless they draw a line
+	 * which may reach into it (see getPointee).
+	 * 
+	 * @return true if the node should not be drawn
+	 */
+	protected boolean cull(View v) {
+		return !v.isVisible(x, y, getExtent()) && getPointee() == null;
+	}
+
 	@Override
 	public void draw(View v) {
-		if (state == Node.INVISIBLE || getKey() == NULL) {
+		if (state == Node.INVISIBLE || getKey() == NULL || cull(v)) {
 			return;
 		}
 		drawBg(v);
@@ -310,6 +396,31 @@ public class Node extends VisualElement {
 		drawArc(v);
 	}
 
+	/**
+	 * Adds the children of the node (as drawn by the tree) to list. Only the
+	 * subtrees of nodes which override this and drawSubtree may be drawn from
+	 * cached images (see Tile).
+	 */
+	protected void getChildren(List<Node> list) {
+	}
+
+	/**
+	 * Draws the subtree rooted at this node, except for the edge to its
+	 * parent.
+	 */
+	protected void drawSubtree(View v) {
+		draw(v);
+	}
+
+	/**
+	 * Is the node at rest and drawn without anything pointing out of its
+	 * subtree (arrows, arcs)? (see Tile)
+	 */
+	boolean isStill() {
+		return ((steps == 0 && state == ALIVE) || state == INVISIBLE || state == OUT)
+				&& arrow == NOARROW && !arc;
+	}
+
 	/**
 	 * Is the given point inside the node? (Used mainly to decide whether a user
 	 * clicked at the node.)
@@ -325,7 +436,12 @@ public class Node extends VisualElement {
 	public void goTo(int tox, int toy) {
 		this.tox = tox;
 		this.toy = toy;
+		D.grid.file(this);
 		this.steps = STEPS;
+		fromx = x;
+		fromy = y;
+		start = System.nanoTime();
+		changed();
 	}
 
 	/**
@@ -395,30 +511,111 @@ public class Node extends VisualElement {
 	 */
 	@Override
 	public void move() {
+		final int ox = x, oy = y;
 		switch (state) {
 		case Node.ALIVE:
 		case Node.INVISIBLE:
 			if (steps > 0) {
-				x += (tox - x) / steps;
-				y += (toy - y) / steps;
-				--steps;
+				// linear motion taking STEPS ticks whatever the frame rate
+				final double t = (D.panel.scene.getTime() - start)
+						/ (double) (STEPS * Scene.TICK);
+				if (t >= 1) {
+					x = tox;
+					y = toy;
+					steps = 0;
+					changed();
+				} else if (t > 0) {
+					x = fromx + (int) ((tox - fromx) * t);
+					y = fromy + (int) ((toy - fromy) * t);
+				}
 			}
 			break;
 		case Node.DOWN:
 		case Node.LEFT:
 		case Node.RIGHT:
-			y += 20;
+			final int d = (int) Math.round(20 * D.panel.scene.getTicks());
+			y += d;
 			if (state == Node.LEFT) {
-				x -= 20;
+				x -= d;
 			} else if (state == Node.RIGHT) {
-				x += 20;
+				x += d;
 			}
 			// robi problem, ked rychlo dozadu a potom rychlo dopredu
 			if (!D.panel.screen.V.inside(x, y - Node.RADIUS)) {
 				state = OUT;
+				changed();
 			}
 			break;
 		}
+		if (x != ox || y != oy) {
+			moved(ox, oy);
+		}
+		markPointers();
+		if (steps > 0 || state == DOWN || state == LEFT || state == RIGHT) {
+			D.panel.scene.stillMoving();
+		}
+	}
+
+	/**
+	 * Mark the area touched by the last step of the node as dirty: the node
+	 * at its old and new position and the edges moving with it.
+	 */
+	private void moved(int ox, int oy) {
+		final DirtyRegion dirty = D.panel.scene.dirty;
+		final int r = getExtent() + MARGIN;
+		movedAt = D.panel.scene.getTime();
+		dirty.add(ox, oy, r);
+		dirty.add(x, y, r);
+		markEdges(dirty);
+	}
+
+	/**
+	 * Mark the lines connecting this node to other nodes (add the other ends
+	 * to the dirty region). Node does not know its neighbours, so the whole
+	 * frame is marked.
+	 */
+	protected void markEdges(DirtyRegion dirty) {
+		dirty.addAll();
+	}
+
+	/**
+	 * @return the node this one draws an arrow or an arc to, or null
+	 */
+	protected Node getPointee() {
+		if (dir != null && (arc || arrow == DIRARROW || arrow == TOARROW)) {
+			return dir;
+		}
+		return null;
+	}
+
+	/**
+	 * Mark the lines this node draws to nodes other than its neighbours (see
+	 * getPointee). Such a line may cross the whole screen, so the whole frame
+	 * is marked while either of its ends moves.
+	 */
+	protected void markPointers() {
+		markPointer(getPointee());
+	}
+
+	protected final void markPointer(Node w) {
+		if (w != null && (isMoving() || w.isMoving())) {
+			D.panel.scene.dirty.addAll();
+		}
+	}
+
+	/**
+	 * @return whether the node has moved in the current frame or is still
+	 *         on its way
+	 */
+	public boolean isMoving() {
+		return movedAt == D.panel.scene.getTime() || !isAnimationDone();
+	}
+
+	/**
+	 * @return half of the side of the square the node is drawn in
+	 */
+	protected int getExtent() {
+		return 2 * Node.RADIUS;
 	}
 
 	@Override
@@ -430,7 +627,10 @@ public class Node extends VisualElement {
 	@Override
 	public void endAnimation() {
 		if (state == ALIVE || state == INVISIBLE) {
-			steps = 0;
+			if (steps > 0) {
+				steps = 0;
+				changed();
+			}
 			x = tox;
 			y = toy;
 		} else if (state == DOWN || state == LEFT || state == RIGHT) {
@@ -443,6 +643,7 @@ public class Node extends VisualElement {
 				}
 			}
 			state = OUT;
+			changed();
 		}
 	}
 
@@ -456,78 +657,57 @@ public class Node extends VisualElement {
 	}
 
 	public void setKey(int key) {
-		this.key = key;
+		if (this.key != key) {
+			this.key = key;
+			changed();
+		}
 	}
 
 	@Override
 	public void storeState(Hashtable<Object, Object> state) {
 		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "key", key);
-		HashtableStoreSupport.store(state, hash + "state", this.state);
-		HashtableStoreSupport.store(state, hash + "tox", tox);
-		HashtableStoreSupport.store(state, hash + "toy", toy);
-		HashtableStoreSupport.store(state, hash + "color", color);
-		HashtableStoreSupport.store(state, hash + "marked", marked);
-		HashtableStoreSupport.store(state, hash + "dir", dir);
-		HashtableStoreSupport.store(state, hash + "arrow", arrow);
-		HashtableStoreSupport.store(state, hash + "arc", arc);
+		StateRecord.store(state, this);
 	}
 
 	@Override
 	public void restoreState(Hashtable<?, ?> state) {
 		super.restoreState(state);
-		final Object key = state.get(hash + "key");
-		if (key != null) {
-			this.key = (Integer) HashtableStoreSupport.restore(key);
-		}
-
-		Object stat = state.get(hash + "state");
-		if (stat != null) {
-			stat = HashtableStoreSupport.restore(stat);
-			// tu nechcem mat invisible (inak spravit)
-			if ((this.state == OUT || this.state == DOWN || this.state == LEFT || this.state == RIGHT)
-					&& stat.equals(ALIVE)) {
-				goTo(tox, toy);
-			}
-			this.state = (Integer) stat;
-		}
+		StateRecord.restore(state, this);
+	}
 
-		boolean isMoved = false;
-		Object tox = state.get(hash + "tox");
-		Object toy = state.get(hash + "toy");
-		if (tox != null) {
-			isMoved = true;
-		} else {
-			tox = this.tox;
-		}
-		if (toy != null) {
-			isMoved = true;
-		} else {
-			toy = this.toy;
-		}
-		if (isMoved) {
-			goTo((Integer) tox, (Integer) toy);
-		}
+	@Override
+	public void storeFields(StateRecord r) {
+		r.putInt(key);
+		r.putInt(state);
+		r.putInt(tox);
+		r.putInt(toy);
+		r.putRef(color);
+		r.putBoolean(marked);
+		r.putRef(dir);
+		r.putInt(arrow);
+		r.putBoolean(arc);
+	}
 
-		final Object color = state.get(hash + "color");
-		if (color != null) {
-			this.color = (NodeColor) HashtableStoreSupport.restore(color);
-		}
-		final Object marked = state.get(hash + "marked");
-		if (marked != null) {
-			this.marked = (Boolean) HashtableStoreSupport.restore(marked);
-		}
-		final Object dir = state.get(hash + "dir");
-		if (dir != null) {
-			this.dir = (Node) HashtableStoreSupport.restore(dir);
-		}
-		final Object arrow = state.get(hash + "arrow");
-		if (arrow != null) {
-			this.arrow = (Integer) HashtableStoreSupport.restore(arrow);
+	@Override
+	public void restoreFields(StateRecord r) {
+		key = r.getInt();
+		final int state = r.getInt();
+		// tu nechcem mat invisible (inak spravit)
+		if ((this.state == OUT || this.state == DOWN || this.state == LEFT || this.state == RIGHT)
+				&& state == ALIVE) {
+			goTo(tox, toy);
 		}
-		final Object arc = state.get(hash + "arc");
-		if (arc != null) {
-			this.arc = (Boolean) HashtableStoreSupport.restore(arc);
+		this.state = state;
+		final int tox = r.getInt();
+		final int toy = r.getInt();
+		if (tox != this.tox || toy != this.toy) {
+			goTo(tox, toy);
 		}
+		color = (NodeColor) r.getRef();
+		marked = r.getBoolean();
+		dir = (Node) r.getRef();
+		arrow = r.getInt();
+		arc = r.getBoolean();
+		changed();
 	}
 }
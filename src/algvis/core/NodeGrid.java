@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A uniform grid over the nodes of a data structure used to find the node the
+ * user clicked at without walking the whole structure.
+ * <p/>
+ * A node is filed under the cell of its target position whenever the target
+ * changes (see Node.goTo), so the grid does not depend on what is drawn. The
+ * grid does not know which nodes have left the structure: it holds the nodes
+ * weakly and the callers of at check that the nodes found are theirs.
+ */
+public class NodeGrid {
+	static final long NONE = Long.MIN_VALUE;
+	private static final int SHIFT = 6; // cells are 64x64
+	private final HashMap<Long, ArrayList<WeakReference<Node>>> cells = new HashMap<Long, ArrayList<WeakReference<Node>>>();
+
+	private static long cell(int x, int y) {
+		return ((long) (x >> SHIFT) << 32) | ((y >> SHIFT) & 0xffffffffL);
+	}
+
+	/**
+	 * Files node v under its target position.
+	 */
+	public void file(Node v) {
+		final long c = cell(v.tox, v.toy);
+		if (c == v.cell) {
+			return;
+		}
+		synchronized (this) {
+			if (v.cell != NONE) {
+				final ArrayList<WeakReference<Node>> old = cells.get(v.cell);
+				if (old != null) {
+					for (int i = old.size() - 1; i >= 0; --i) {
+						if (old.get(i).get() == v) {
+							remove(old, i);
+							break;
+						}
+					}
+					if (old.isEmpty()) {
+						cells.remove(v.cell);
+					}
+				}
+			}
+			ArrayList<WeakReference<Node>> list = cells.get(c);
+			if (list == null) {
+				cells.put(c, list = new ArrayList<WeakReference<Node>>());
+			} else {
+				prune(list);
+			}
+			list.add(new WeakReference<Node>(v));
+			v.cell = c;
+		}
+	}
+
+	private static void remove(ArrayList<WeakReference<Node>> list, int i) {
+		list.set(i, list.get(list.size() - 1));
+		list.remove(list.size() - 1);
+	}
+
+	/**
+	 * Drop the nodes which have been garbage collected.
+	 */
+	private static void prune(ArrayList<WeakReference<Node>> list) {
+		for (int i = list.size() - 1; i >= 0; --i) {
+			if (list.get(i).get() == null) {
+				remove(list, i);
+			}
+		}
+	}
+
+	/**
+	 * @return the visible nodes which contain point (x,y), including nodes
+	 *         that are no longer in the data structure
+	 */
+	public synchronized List<Node> at(int x, int y) {
+		final List<Node> result = new ArrayList<Node>();
+		final int r = Node.RADIUS;
+		for (int dx = -r; dx <= r; dx += 2 * r) {
+			for (int dy = -r; dy <= r; dy += 2 * r) {
+				final ArrayList<WeakReference<Node>> list = cells.get(cell(x
+						+ dx, y + dy));
+				if (list == null) {
+					continue;
+				}
+				prune(list);
+				for (final WeakReference<Node> w : list) {
+					final Node v = w.get();
+					if (v != null && v.state != Node.INVISIBLE
+							&& v.getKey() != Node.NULL && v.inside(x, y)
+							&& !result.contains(v)) {
+						result.add(v);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	public synchronized void clear() {
+		for (final ArrayList<WeakReference<Node>> list : cells.values()) {
+			for (final WeakReference<Node> w : list) {
+				final Node v = w.get();
+				if (v != null) {
+					v.cell = NONE;
+				}
+			}
+		}
+		cells.clear();
+	}
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core;
+
+/**
+ * Completion callback for the operations submitted to an OperationQueue. The
+ * methods are called on the thread that runs the operation.
+ */
+public interface OperationCallback {
+	void completed(Runnable operation);
+
+	/**
+	 * Called if the operation threw an exception, or with a
+	 * CancellationException if it was dropped from the queue before it ran.
+	 */
+	void failed(Runnable operation, Throwable cause);
+}
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The Class OperationQueue. Each panel runs its operations (algorithms) one
+ * after another in a single worker. Consecutive operations of the same type
+ * (e.g., the inserts issued by "random") that have not started yet are
+ * coalesced into one batch, so that the executor sees one task per batch
+ * instead of one per operation.
+ * <p/>
+ * The queue is bounded: a thread other than the event dispatch thread blocks
+ * in submit while there are too many pending operations, so it must not hold
+ * any other lock when it submits. The event dispatch thread is never blocked
+ * (a paused algorithm may be waiting for it), nor is the worker running the
+ * operations (it would wait for itself); their operations are coalesced
+ * while there is room and rejected when the queue is full. Rejections are
+ * reported to the callback of the operation and to the rejection callback of
+ * the queue (see setRejectionCallback).
+ * <p/>
+ * The batches run on the executor of the given AlgorithmRuntime; the queue
+ * hands over a batch only after the previous one has finished, so the
+ * operations of one panel never run concurrently, whatever the executor.
+ */
+public class OperationQueue {
+	public static final int CAPACITY = 4096, MAX_BATCH = 512;
+	private final int capacity;
+	private Executor executor;
+	private final LinkedList<Batch> waiting = new LinkedList<Batch>();
+	private Batch running = null;
+	private Thread runner = null;
+	private int pending = 0; // number of submitted operations not finished yet
+	private int generation = 0; // incremented by cancelAll
+	private volatile OperationCallback rejection = null;
+
+	/**
+	 * Default callback: failures are printed (otherwise we would never find a
+	 * bug in the algorithms), cancellations are silent.
+	 */
+	public static final OperationCallback LOG = new OperationCallback() {
+		@Override
+		public void completed(Runnable operation) {
+		}
+
+		@Override
+		public void failed(Runnable operation, Throwable cause) {
+			if (cause instanceof RejectedExecutionException) {
+				System.err.println("operation rejected, the queue is full");
+			} else if (!(cause instanceof CancellationException)) {
+				cause.printStackTrace();
+			}
+		}
+	};
+
+	public OperationQueue() {
+		this(AlgorithmRuntime.PLATFORM, CAPACITY);
+	}
+
+	public OperationQueue(AlgorithmRuntime runtime) {
+		this(runtime, CAPACITY);
+	}
+
+	public OperationQueue(AlgorithmRuntime runtime, int capacity) {
+		this.capacity = capacity;
+		executor = runtime.newExecutor();
+	}
+
+	/**
+	 * Run the following batches on the executor of another runtime; the
+	 * running batch finishes on the old one.
+	 */
+	public synchronized void setRuntime(AlgorithmRuntime runtime) {
+		final Executor old = executor;
+		executor = runtime.newExecutor();
+		AlgorithmRuntime.release(old);
+	}
+
+	/**
+	 * The callback is told about every rejected operation (e.g., to show it
+	 * in the status bar of the panel), on the thread that submitted it.
+	 */
+	public void setRejectionCallback(OperationCallback rejection) {
+		this.rejection = rejection;
+	}
+
+	public void submit(Runnable operation) {
+		submit(operation, LOG);
+	}
+
+	public synchronized void submit(Runnable operation,
+			OperationCallback callback) {
+		if (callback == null) {
+			callback = LOG;
+		}
+		if (EventQueue.isDispatchThread()
+				|| Thread.currentThread() == runner) {
+			if (pending >= capacity) {
+				final RejectedExecutionException e = new RejectedExecutionException();
+				callback.failed(operation, e);
+				if (rejection != null && rejection != callback) {
+					rejection.failed(operation, e);
+				}
+				return;
+			}
+		} else {
+			final int g = generation;
+			while (pending >= capacity && g == generation) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					callback.failed(operation, new CancellationException());
+					return;
+				}
+			}
+		}
+		++pending;
+		final Batch last = waiting.peekLast();
+		if (last != null && last.accepts(operation)) {
+			last.add(operation, callback);
+		} else {
+			final Batch b = new Batch(generation);
+			b.add(operation, callback);
+			waiting.add(b);
+			dispatch();
+		}
+	}
+
+	private void dispatch() {
+		if (running == null && !waiting.isEmpty()) {
+			running = waiting.removeFirst();
+			executor.execute(running);
+		}
+	}
+
+	/**
+	 * Drop all the waiting operations and interrupt the running one.
+	 */
+	public synchronized void cancelAll() {
+		for (final Batch b : waiting) {
+			b.cancel();
+		}
+		waiting.clear();
+		if (running != null) {
+			running.cancel();
+			if (runner != null) {
+				runner.interrupt();
+			}
+		}
+		pending = 0;
+		++generation;
+		notifyAll();
+	}
+
+	/**
+	 * @return the number of submitted operations that have not finished yet
+	 */
+	public synchronized int getPending() {
+		return pending;
+	}
+
+	public synchronized boolean isIdle() {
+		return pending == 0;
+	}
+
+	private synchronized boolean begin(Batch b) {
+		if (b.cancelled) {
+			return false;
+		}
+		runner = Thread.currentThread();
+		return true;
+	}
+
+	private synchronized void finished(Batch b) {
+		if (b.generation == generation) {
+			--pending;
+			notifyAll();
+		}
+	}
+
+	private synchronized void end(Batch b) {
+		if (running == b) {
+			running = null;
+			runner = null;
+		}
+		// clear a late interrupt from cancelAll before the thread is reused
+		Thread.interrupted();
+		dispatch();
+	}
+
+	private class Batch implements Runnable {
+		private final List<Runnable> operations = new ArrayList<Runnable>();
+		private final List<OperationCallback> callbacks = new ArrayList<OperationCallback>();
+		private final int generation;
+		private volatile boolean cancelled = false;
+		private int next = 0;
+
+		Batch(int generation) {
+			this.generation = generation;
+		}
+
+		boolean accepts(Runnable operation) {
+			return operations.size() < MAX_BATCH
+					&& operations.get(0).getClass() == operation.getClass();
+		}
+
+		void add(Runnable operation, OperationCallback callback) {
+			operations.add(operation);
+			callbacks.add(callback);
+		}
+
+		/**
+		 * Called with the queue locked; reports the operations that will not
+		 * run.
+		 */
+		void cancel() {
+			cancelled = true;
+			for (int i = next; i < operations.size(); ++i) {
+				callbacks.get(i).failed(operations.get(i),
+						new CancellationException());
+			}
+			next = operations.size();
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!begin(this)) {
+					return;
+				}
+				while (true) {
+					final Runnable op;
+					final OperationCallback cb;
+					synchronized (OperationQueue.this) {
+						if (cancelled || next >= operations.size()) {
+							return;
+						}
+						op = operations.get(next);
+						cb = callbacks.get(next);
+						++next;
+					}
+					try {
+						op.run();
+						cb.completed(op);
+					} catch (final Throwable t) {
+						cb.failed(op, t);
+					}
+					// an interrupt meant for this operation must not leak
+					// into the next one
+					Thread.interrupted();
+					finished(this);
+				}
+			} finally {
+				end(this);
+			}
+		}
+	}
+}
@@ -19,29 +19,67 @@ package algvis.core;
 import java.util.LinkedList;
 import java.util.List;
 
+import algvis.core.history.HistoryBudget;
 import algvis.ui.view.Layout;
 import algvis.ui.view.LayoutListener;
 
 public class Settings {
-	public Layout layout;
+	/** the layout of the trees; the default of each data structure if null */
+	public Layout layout = null;
+	/** the runtime of newly created panels (see AlgorithmRuntime) */
+	public AlgorithmRuntime runtime = AlgorithmRuntime.getDefault();
+	/** memory budget of the undo histories of all the panels in bytes */
+	public long historyBudget = Long.getLong("algvis.history.budget", 64L << 20);
+	private HistoryBudget sharedBudget = null;
+	/** directory for history spill files; the temporary directory if null */
+	public String historySpill = System.getProperty("algvis.history.spill");
+	/** show the frame times over the screen (see algvis.ui.FrameStats) */
+	public boolean frameStats = Boolean.getBoolean("algvis.stats");
 	private final List<LayoutListener> listeners = new LinkedList<LayoutListener>();
-
-	public Settings() {
-		layout = Layout.SIMPLE;
-	}
+	private final List<OperationQueue> queues = new LinkedList<OperationQueue>();
 
 	public void setLayout(String s) {
 		if ("compact".equals(s)) {
 			layout = Layout.COMPACT;
-		} else {
+		} else if ("simple".equals(s)) {
 			layout = Layout.SIMPLE;
+		} else {
+			layout = null;
 		}
 		for (final LayoutListener l : listeners) {
 			l.changeLayout();
 		}
 	}
 
+	/**
+	 * Switch the runtime of all the panels (see AlgorithmRuntime); an
+	 * unsupported runtime is replaced by PLATFORM.
+	 */
+	public void setRuntime(String s) {
+		runtime = AlgorithmRuntime.parse(s);
+		if (!runtime.isSupported()) {
+			runtime = AlgorithmRuntime.PLATFORM;
+		}
+		for (final OperationQueue q : queues) {
+			q.setRuntime(runtime);
+		}
+	}
+
+	public void addOperationQueue(OperationQueue q) {
+		queues.add(q);
+	}
+
 	public void addLayoutListener(LayoutListener l) {
 		listeners.add(l);
 	}
+
+	/**
+	 * @return the history budget shared by all the panels with these settings
+	 */
+	public synchronized HistoryBudget getHistoryBudget() {
+		if (sharedBudget == null) {
+			sharedBudget = new HistoryBudget(historyBudget);
+		}
+		return sharedBudget;
+	}
 }
@@ -72,8 +72,8 @@ public class StringElem implements StateEditable {
 			v.setColor(col.get(i));
 			v.fillRect(x0, y, 6, Node.RADIUS);
 			v.setColor(NodeColor.NORMAL.fgColor);
-			v.drawString("" + (i + 1), x0, y - Node.RADIUS - 5, Fonts.SMALL);
-			v.drawString("" + s.charAt(i), x0, y - 1, Fonts.TYPEWRITER);
+			v.drawNumber(i + 1, x0, y - Node.RADIUS - 5, Fonts.SMALL);
+			v.drawChar(s.charAt(i), x0, y - 1, Fonts.TYPEWRITER);
 			if (marked.get(i)) {
 				v.drawArrow(x0, y - 32, x0, y - 22);
 			}
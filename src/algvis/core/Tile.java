@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+
+import algvis.core.visual.Scene;
+import algvis.ui.view.Detail;
+import algvis.ui.view.View;
+
+/**
+ * An image of a subtree which has not changed for a while, so that it can be
+ * drawn by a single drawImage instead of node by node.
+ * <p>
+ * A tree calls update on its root before drawing it and draw on its nodes on
+ * the way down (the nodes have to implement getChildren, getParent and
+ * drawSubtree). A subtree is drawn from its image if it has at least
+ * MIN_NODES nodes, none of them moves and none has changed since the previous
+ * frame. A node which moves, changes its looks or is relinked drops the
+ * images of the subtrees containing it (see Node.changed), so update visits
+ * only the nodes on the paths to the changes. Images are drawn at the scale
+ * of the view and redrawn once the zoom settles.
+ * <p>
+ * When zoomed out to POINT detail (see View.getDetail), a subtree at rest
+ * narrower than COLLAPSE pixels is drawn as a box of the color of its root.
+ */
+public class Tile {
+	public static final int MIN_NODES = 16;
+	// the largest image (in pixels) and the room for labels around the nodes
+	private static final int MAX_PIXELS = 1 << 20;
+	private static final int MARGIN = 2 * Node.RADIUS;
+	private static final double EPSILON = 1e-6;
+	private static final int COLLAPSE = 4;
+
+	private final Rectangle bounds;
+	private final double scale;
+	// the fractional part of the position of the image on the screen
+	private final double fx, fy;
+	// null if the subtree is too large at this scale
+	private final SoftReference<BufferedImage> image;
+
+	private Tile(Rectangle bounds, double scale, double fx, double fy,
+			BufferedImage image) {
+		this.bounds = bounds;
+		this.scale = scale;
+		this.fx = fx;
+		this.fy = fy;
+		this.image = image == null ? null : new SoftReference<BufferedImage>(
+				image);
+	}
+
+	/**
+	 * Checks the subtrees of root which have changed since the last update,
+	 * children before parents.
+	 */
+	public static void update(Node root) {
+		final Scene scene = root.D.panel.scene;
+		final int version = scene.getVersion();
+		if (root.tileValid || !Scene.isConsistent(version)) {
+			return;
+		}
+		final int limit = TreeWalk.limit(root);
+		final ArrayList<Node> order = new ArrayList<Node>();
+		final ArrayList<Node> children = new ArrayList<Node>();
+		order.add(root);
+		for (int i = 0; i < order.size(); ++i) {
+			children.clear();
+			order.get(i).getChildren(children);
+			for (final Node c : children) {
+				if (!c.tileValid) {
+					order.add(c);
+				}
+			}
+			if (order.size() > limit) {
+				throw new ConcurrentModificationException();
+			}
+		}
+		final long time = scene.getTime();
+		for (int i = order.size() - 1; i >= 0; --i) {
+			final Node u = order.get(i);
+			if (u.tileBox == null) {
+				u.tileBox = new Rectangle();
+			}
+			u.tileBox.setBounds(u.tox - Node.RADIUS, u.toy - Node.RADIUS,
+					2 * Node.RADIUS, 2 * Node.RADIUS);
+			int size = 1;
+			boolean still = u.isStill();
+			children.clear();
+			u.getChildren(children);
+			for (final Node c : children) {
+				size += c.tileSize;
+				still &= c.tileStill;
+				u.tileBox.add(c.tileBox);
+			}
+			u.tileSize = size;
+			u.tileStill = still;
+			u.tileSince = time;
+			u.tile = null;
+			u.tileValid = true;
+		}
+		if (scene.getVersion() != version) {
+			// an algorithm has changed the tree meanwhile
+			for (final Node u : order) {
+				u.tileValid = false;
+			}
+		}
+	}
+
+	/**
+	 * Draws the subtree of u from its image (which is drawn first if needed).
+	 * 
+	 * @return false if the subtree has to be drawn node by node
+	 */
+	public static boolean draw(Node u, View v) {
+		if (isCollapsed(u, v)) {
+			if (v.isVisible(u.tileBox)) {
+				v.setColor(u.getBgColor());
+				v.fillRect(u.tileBox.getCenterX(), u.tileBox.getCenterY(),
+						u.tileBox.width / 2.0, u.tileBox.height / 2.0);
+			}
+			return true;
+		}
+		if (!isCached(u, v)) {
+			return false;
+		}
+		BufferedImage img = u.tile.image.get();
+		if (img == null) {
+			u.tile = build(u, v);
+			if (u.tile == null) {
+				return false;
+			}
+			img = u.tile.image.get();
+		}
+		v.drawTile(img, u.tile.bounds);
+		return true;
+	}
+
+	/**
+	 * @return whether the subtree of u is drawn from its image in this frame
+	 *         (trees drawing edges and nodes separately skip such subtrees
+	 *         when drawing edges)
+	 */
+	public static boolean isCached(Node u, View v) {
+		if (isCollapsed(u, v)) {
+			return true;
+		}
+		if (v.isTiling() || !u.tileValid || u.tileSize < MIN_NODES
+				|| !u.tileStill || u.tileSince == u.D.panel.scene.getTime()
+				|| v.isFocused(u.tileBox)) {
+			return false;
+		}
+		if (u.tile == null || !u.tile.fits(v)) {
+			if (v.isZooming()) {
+				return false;
+			}
+			u.tile = build(u, v);
+		}
+		return u.tile != null && u.tile.image != null;
+	}
+
+	private static boolean isCollapsed(Node u, View v) {
+		return v.getDetail() == Detail.POINT && u.tileValid && u.tileSize > 1
+				&& u.tileStill && u.tileBox.width * v.getScale() < COLLAPSE;
+	}
+
+	/**
+	 * Can the image be drawn with the current transform of v, i.e., at the
+	 * same scale and the same offset within a pixel (as when dragged)?
+	 */
+	private boolean fits(View v) {
+		if (scale != v.getScale()) {
+			return false;
+		}
+		final Point2D p = v.toDevice(bounds.x, bounds.y);
+		return Math.abs(fraction(p.getX()) - fx) < EPSILON
+				&& Math.abs(fraction(p.getY()) - fy) < EPSILON;
+	}
+
+	private static double fraction(double x) {
+		return x - Math.floor(x);
+	}
+
+	private static Tile build(Node u, View v) {
+		final Scene scene = u.D.panel.scene;
+		final int version = scene.getVersion();
+		final ArrayList<Node> nodes = TreeWalk.topDown(u);
+		int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE;
+		int x2 = Integer.MIN_VALUE, y2 = Integer.MIN_VALUE;
+		for (final Node w : nodes) {
+			final int r = w.getExtent() + MARGIN;
+			x1 = Math.min(x1, w.x - r);
+			y1 = Math.min(y1, w.y - r);
+			x2 = Math.max(x2, w.x + r);
+			y2 = Math.max(y2, w.y + r);
+		}
+		final Rectangle bounds = new Rectangle(x1, y1, x2 - x1, y2 - y1);
+		final double scale = v.getScale();
+		final Point2D p = v.toDevice(x1, y1);
+		final double fx = fraction(p.getX()), fy = fraction(p.getY());
+		final int w = (int) Math.ceil(bounds.width * scale + 1), h = (int) Math
+				.ceil(bounds.height * scale + 1);
+		if ((long) w * h > MAX_PIXELS) {
+			return new Tile(bounds, scale, fx, fy, null);
+		}
+		final BufferedImage img = new BufferedImage(w, h,
+				BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = img.createGraphics();
+		g.translate(fx, fy);
+		g.scale(scale, scale);
+		g.translate(-x1, -y1);
+		v.startTile(g);
+		try {
+			u.drawSubtree(v);
+		} finally {
+			v.endTile();
+			g.dispose();
+		}
+		if (!Scene.isConsistent(version) || scene.getVersion() != version) {
+			// an algorithm has changed the subtree meanwhile
+			return null;
+		}
+		return new Tile(bounds, scale, fx, fy, img);
+	}
+}
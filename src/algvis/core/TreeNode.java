@@ -17,32 +17,38 @@
 package algvis.core;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Hashtable;
-import java.util.Stack;
+import java.util.List;
 import java.util.Vector;
 
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
+import algvis.core.visual.DirtyRegion;
 import algvis.core.visual.ZDepth;
 import algvis.ui.view.View;
 
 public class TreeNode extends Node {
 	private TreeNode child = null, right = null, parent = null;
 
-	// variables for the Reingold-Tilford-Walker layout
-	private int offset = 0; // offset from base line, base line has x-coord
-	// equaled to x-coord of leftmost child
-	private int level; // distance from the root
-	protected boolean thread = false; // is this node threaded?
-
-	private int toExtremeSon = 0; // offset from the leftmost son
-	private int toBaseline = 0; // distance to child's baseline
-	private int tmpx = 0;
-	private int tmpy = 0; // temporary coordinates of the node
-	private int number = 1;
-
-	private int change = 0;
-	private int shift = 0; // for evenly spaced smaller subtrees
-	// TreeNode ancestor = this; // unused variable for now
+	/*
+	 * The Reingold-Tilford-Walker layout, kept between calls of reposition():
+	 * relx is the x-coordinate relative to the parent, laid are the children
+	 * at the last layout of the subtree and lheight is its height. The
+	 * threads lthr/rthr (lthrDx/rthrDx to the right of this node) continue
+	 * the left/right contour of some subtree below this leaf; they are kept
+	 * apart from the children, so subtrees whose shape has not changed keep
+	 * their contours and need not be laid out again. lspan/rspan are the
+	 * distances to the leftmost/rightmost node of the subtree. As in BSTNode,
+	 * a subtree is laid out again only if it is dirty (some link in it has
+	 * changed), and its nodes are sent to their places again only if it is
+	 * not placed (some node in it has been sent elsewhere).
+	 */
+	private int relx = 0;
+	private TreeNode[] laid = null;
+	private int lheight = 1, lspan = 0, rspan = 0;
+	private TreeNode lthr = null, rthr = null;
+	private int lthrDx = 0, rthrDx = 0;
+	private boolean dirty = true, placed = false;
 
 	// statistics
 	private int size = 1;
@@ -92,47 +98,82 @@ public class TreeNode extends Node {
 	 * Calculate height and size of subtree rooted by "this" node bottom-up
 	 */
 	void calcTree() {
-		if (!isLeaf()) {
-			TreeNode w = getChild();
-			while (w != null) {
-				w.calcTree();
-				w = w.getRight();
-			}
+		final List<TreeNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).calc();
 		}
-		calc();
 	}
 
 	public void setArc() {
 		setArc(getParent());
 	}
 
+	@Override
+	protected void markEdges(DirtyRegion dirty) {
+		if (getParent() != null) {
+			dirty.add(getParent().x, getParent().y, 2);
+		}
+		TreeNode w = getChild();
+		while (w != null) {
+			dirty.add(w.x, w.y, 2);
+			w = w.getRight();
+		}
+	}
+
+	@Override
+	protected void getChildren(List<Node> list) {
+		TreeNode w = getChild();
+		while (w != null) {
+			list.add(w);
+			w = w.getRight();
+		}
+	}
+
 	public void drawEdges(View v) {
-		if (state != INVISIBLE) {
-			if (thread) {
-				v.setColor(Color.red);
-				if (getChild() != null) {
-					v.drawLine(x, y, getChild().x, getChild().y);
-				}
+		final List<TreeNode> stack = new ArrayList<TreeNode>();
+		stack.add(this);
+		while (!stack.isEmpty()) {
+			final TreeNode u = stack.remove(stack.size() - 1);
+			if (Tile.isCached(u, v) || u.state == INVISIBLE) {
+				continue;
+			}
+			TreeNode w = u.getChild();
+			while (w != null) {
 				v.setColor(Color.black);
-			} else {
-				TreeNode w = getChild();
-				while (w != null) {
-					v.setColor(Color.black);
-					v.drawLine(x, y, w.x, w.y);
-					w.drawEdges(v);
-					w = w.getRight();
-				}
+				v.drawLine(u.x, u.y, w.x, w.y);
+				stack.add(w);
+				w = w.getRight();
 			}
 		}
 	}
 
+	/**
+	 * Draw the children (from left to right) before their parent. The nodes
+	 * are collected parents first with the children from right to left, so
+	 * the list read backwards is in this order.
+	 */
 	public void drawVertices(View v) {
-		TreeNode w = getChild();
-		while (w != null) {
-			w.drawVertices(v);
-			w = w.getRight();
+		final List<TreeNode> stack = new ArrayList<TreeNode>();
+		final List<TreeNode> order = new ArrayList<TreeNode>();
+		stack.add(this);
+		while (!stack.isEmpty()) {
+			final TreeNode u = stack.remove(stack.size() - 1);
+			order.add(u);
+			if (Tile.isCached(u, v)) {
+				continue;
+			}
+			TreeNode w = u.getChild();
+			while (w != null) {
+				stack.add(w);
+				w = w.getRight();
+			}
+		}
+		for (int k = order.size() - 1; k >= 0; --k) {
+			final TreeNode u = order.get(k);
+			if (!Tile.draw(u, v)) {
+				u.draw(v);
+			}
 		}
-		draw(v);
 	}
 
 	/**
@@ -140,17 +181,21 @@ public class TreeNode extends Node {
 	 * from and to them
 	 */
 	protected void drawTree(View v) {
+		Tile.update(this);
+		drawSubtree(v);
+	}
+
+	@Override
+	protected void drawSubtree(View v) {
 		drawEdges(v);
 		drawVertices(v);
 	}
 
 	public void moveTree() {
-		TreeNode w = getChild();
-		while (w != null) {
-			w.moveTree();
-			w = w.getRight();
+		final List<TreeNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).move();
 		}
-		move();
 	}
 
 	/**
@@ -158,29 +203,41 @@ public class TreeNode extends Node {
 	 * that has been clicked by user.
 	 */
 	public TreeNode find(int x, int y) {
-		if (inside(x, y)) {
-			return this;
-		}
-		TreeNode w = getChild();
-		TreeNode res = null;
-		while ((w != null) && (res == null)) {
-			res = w.find(x, y);
-			w = w.getRight();
+		// only the nodes near the point are candidates (see NodeGrid)
+		for (final Node w : D.grid.at(x, y)) {
+			if (w instanceof TreeNode) {
+				TreeNode u = (TreeNode) w;
+				while (u != null && u != this) {
+					u = u.getParent();
+				}
+				if (u == this) {
+					return (TreeNode) w;
+				}
+			}
 		}
-		return res;
+		return null;
 	}
 
 	/**
 	 * Rebox the whole subtree calculating the widths recursively bottom-up.
 	 */
 	public void reboxTree() {
+		final List<TreeNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).rebox();
+		}
+	}
+
+	/**
+	 * Calculate the widths of "this" node assuming these were calculated in
+	 * its children.
+	 */
+	private void rebox() {
 		final int bw = DataStructure.minsepx / 2;
 		int le = 9999999; // keeps current extreme leftw value
 		int re = -9999999;
 		TreeNode T = getChild();
 		while (T != null) {
-			T.reboxTree();
-
 			final int lxe = (T.tox - tox) - T.leftw;
 			if (lxe < le) {
 				le = lxe;
@@ -262,253 +319,291 @@ public class TreeNode extends Node {
 		}
 	}
 
+	/**
+	 * Mark this node and its ancestors as dirty and not placed: the subtrees
+	 * have to be laid out again (and checked for cached images, see changed).
+	 */
+	private void invalidate() {
+		changed();
+		TreeNode w = this;
+		while (w != null && (!w.dirty || w.placed)) {
+			w.dirty = true;
+			w.placed = false;
+			w = w.parent;
+		}
+	}
+
+	/**
+	 * Mark this node and its ancestors as not placed: the layout has not
+	 * changed, but some node has been sent elsewhere.
+	 */
+	private void unplace() {
+		TreeNode w = this;
+		while (w != null && w.placed) {
+			w.placed = false;
+			w = w.parent;
+		}
+	}
+
+	@Override
+	public void goTo(int tox, int toy) {
+		super.goTo(tox, toy);
+		unplace();
+	}
+
+	/**
+	 * Lay out the subtree with this node at [0,0]. Only the subtrees in which
+	 * some link has changed since the last call are laid out again (the
+	 * contours are merged along the paths from the changes up to this node),
+	 * and only the subtrees in which some node is not at its place are
+	 * visited; then the boundary of the tree is computed.
+	 */
 	public void reposition() {
-		fTRInitialization(0);
-		fTRPrePosition();
-		fTRDisposeThreads();
-		fTRPetrification(0);
-		fTRBounding(-tmpx);
-		reboxTree();
-		/*
-		 * D.x1 -= D.minsepx; D.x2 += D.xspan + D.radius; D.y1 -= D.yspan +
-		 * D.radius; D.y2 += D.yspan + D.radius;
-		 */
+		layout();
+		place(0, 0);
 	}
 
 	/**
-	 * First traverse of tree in repositioning process. Set some basic
-	 * variables.
-	 * 
-	 * @param level
-	 *            current level in tree
+	 * Lay out the dirty subtrees bottom-up.
 	 */
-	private void fTRInitialization(int level) {
-		this.level = level;
-		offset = shift = change = 0;
-		toExtremeSon = 0;
-		toBaseline = 0;
-		leftw = rightw = 0;
+	private void layout() {
+		final List<TreeNode> changed = new ArrayList<TreeNode>();
+		if (dirty) {
+			changed.add(this);
+		}
+		for (int k = 0; k < changed.size(); ++k) {
+			TreeNode w = changed.get(k).getChild();
+			while (w != null) {
+				if (w.dirty) {
+					changed.add(w);
+				}
+				w = w.getRight();
+			}
+		}
+		// children come after their parents in the list
+		for (int k = changed.size() - 1; k >= 0; --k) {
+			changed.get(k).layoutNode();
+		}
+	}
+
+	/**
+	 * Lay out this node assuming its children have been laid out.
+	 */
+	private void layoutNode() {
+		int k = 0;
 		TreeNode w = getChild();
-		level++;
-		int noofchild = 1;
 		while (w != null) {
-			w.fTRInitialization(level);
-			w.number = noofchild;
+			++k;
 			w = w.getRight();
-			noofchild++;
 		}
+		merge(k);
+		dirty = false;
+		placed = false;
 	}
 
 	/**
-	 * The core of algorithm. Computes relative coordinates, uses threads to
-	 * keep subtrees/subforests bounded and easy-track for spacing.
-	 * 
-	 * @return Leftmost and rightmost nodes on the last level of subtree
+	 * The core of the algorithm. Places the k children (already laid out)
+	 * from left to right as close as the right contour of the subforest
+	 * allows, spaces the smaller subtrees evenly, and threads the contours of
+	 * the children into the contours of this subtree.
 	 */
-	private NodePair<TreeNode> fTRPrePosition() {
-		NodePair<TreeNode> result = new NodePair<TreeNode>();
-
-		if (isLeaf()) {
-			offset = 0;
-			result.left = this;
-			result.right = this;
-			return result;
+	private void merge(int k) {
+		final int bw = DataStructure.minsepx / 2;
+		final TreeNode[] c = new TreeNode[k];
+		int h = 0;
+		TreeNode w = getChild();
+		for (int j = 0; j < k; ++j) {
+			c[j] = w;
+			h = Math.max(h, w.lheight);
+			w = w.getRight();
+		}
+		laid = c;
+		lheight = h + 1;
+		lspan = rspan = 0;
+		if (k == 0) {
+			leftw = rightw = bw;
+			return;
 		}
-
-		TreeNode LeftSubtree = getChild();
-		TreeNode RightSubtree = getChild().getRight();
-
-		/*
-		 * So lets get result from first child
-		 */
-		final NodePair<TreeNode> fromLeftSubtree = LeftSubtree.fTRPrePosition();
-		result = fromLeftSubtree;
 
 		/*
-		 * Spacing right subtree with left subforest. It will pre-compute shifts
-		 * for distributing smaller subtrees.
+		 * the right contour of the subforest: at depth d, node fnode[d] of
+		 * child owner[d] is fx[d] to the right of this child
 		 */
-		while (RightSubtree != null) {
-			final NodePair<TreeNode> fromRightSubtree = RightSubtree
-					.fTRPrePosition();
-
-			TreeNode L = LeftSubtree;
-			TreeNode R = RightSubtree;
-			int loffset = LeftSubtree.offset;
-			int roffset = RightSubtree.offset = LeftSubtree.offset;
-
-			while ((L != null) && (R != null)) {
-				final int distance = (loffset + DataStructure.minsepx - roffset);
-				if (distance > 0) {
-					RightSubtree.offset += distance;
-					roffset += distance;
-
-					/*
-					 * set spacing for smaller subtrees
-					 */
-					TreeNode Elevator = L;
-					while (Elevator.getParent() != LeftSubtree.getParent()) {
-						Elevator = Elevator.getParent();
+		final int[] fx = new int[h], owner = new int[h];
+		final TreeNode[] fnode = new TreeNode[h];
+		// bottom left node of the subforest, lbx to the right of child lbj
+		TreeNode lb = null;
+		int lbx = 0, lbj = 0, fh = 0;
+		final int[] pos = new int[k], change = new int[k], shift = new int[k];
+		// threads made at child j: from lfrom (in child lj) and from rfrom
+		final TreeNode[] lfrom = new TreeNode[k], rfrom = new TreeNode[k];
+		final int[] lj = new int[k], rj = new int[k];
+
+		for (int j = 0; j < k; ++j) {
+			final int hj = c[j].lheight;
+			pos[j] = j > 0 ? pos[j - 1] : 0;
+
+			// spacing the left contour of c[j] with the subforest
+			TreeNode L = c[j], below = null;
+			int lx = 0, belowx = 0;
+			for (int d = 0; d < hj; ++d) {
+				if (d < fh) {
+					final int o = owner[d];
+					final int distance = pos[o] + fx[d] + DataStructure.minsepx
+							- (pos[j] + lx);
+					if (distance > 0) {
+						// set spacing for smaller subtrees
+						pos[j] += distance;
+						final int theta = j - o;
+						change[j] -= distance / theta;
+						shift[j] += distance;
+						change[o] += distance / theta;
 					}
-					final int theta = RightSubtree.number - Elevator.number;
-					RightSubtree.change -= distance / theta;
-					RightSubtree.shift += distance;
-					Elevator.change += distance / theta;
+				} else if (d == fh) {
+					below = L;
+					belowx = lx;
 				}
-				/*
-				 * I think this (Elevator) part causes O(n^2) (un)efficiency
-				 */
-				if (!L.thread) {
-					loffset += L.toExtremeSon;
-				} else {
-					loffset = 0;
-					TreeNode Elevator = L.getChild();
-					int cursep = 0;
-					while (Elevator.getParent() != LeftSubtree.getParent()) {
-						cursep += Elevator.offset
-								- Elevator.getParent().leftmostChild().offset
-								- Elevator.getParent().toExtremeSon;
-						Elevator = Elevator.getParent();
+				if (d + 1 < hj) {
+					if (L.laid.length > 0) {
+						L = L.laid[0];
+						lx += L.relx;
+					} else {
+						lx += L.lthrDx;
+						L = L.lthr;
 					}
-
-					loffset = Elevator.offset + cursep;
 				}
-
-				if (!R.thread) {
-					roffset -= R.toExtremeSon;
-				} else {
-					roffset = 0;
-					TreeNode Elevator = R.getChild();
-					int cursep = 0;
-					do {
-						cursep += Elevator.offset
-								- Elevator.getParent().leftmostChild().offset
-								- Elevator.getParent().toExtremeSon;
-						Elevator = Elevator.getParent();
-					} while (Elevator != RightSubtree);
-
-					roffset = RightSubtree.offset + cursep;
+			}
+			// the subforest is more shallow
+			if (hj > fh) {
+				if (lb != null) {
+					lb.lthr = below;
+					lb.lthrDx = pos[j] + belowx - (pos[lbj] + lbx);
+					lfrom[j] = lb;
+					lj[j] = lbj;
 				}
-
-				L = L.rightmostChild();
-				R = R.leftmostChild();
+				lb = L;
+				lbx = lx;
+				lbj = j;
 			}
 
-			/*
-			 * L & R pointers are set right for making thread easy
-			 */
-			// both left subforest and right subtree have the same height
-			if ((L == null) && (R == null)) {
-				fromLeftSubtree.right = fromRightSubtree.right;
-			} else if ((L == null) && (R != null)) {
-				// left subforest is more shallow
-				fromLeftSubtree.left.thread = true;
-				fromLeftSubtree.left.setChild(R);
-				fromLeftSubtree.left = fromRightSubtree.left;
-				fromLeftSubtree.right = fromRightSubtree.right;
-			} else if ((L != null) && (R == null)) {
-				// right subtree is more shallow
-				fromRightSubtree.right.thread = true;
-				fromRightSubtree.right.setChild(L);
+			// c[j] is the right contour of the subforest as deep as it goes
+			TreeNode R = c[j];
+			int rx = 0;
+			for (int d = 0; d < hj; ++d) {
+				fx[d] = rx;
+				fnode[d] = R;
+				owner[d] = j;
+				if (d + 1 < hj) {
+					if (R.laid.length > 0) {
+						R = R.laid[R.laid.length - 1];
+						rx += R.relx;
+					} else {
+						rx += R.rthrDx;
+						R = R.rthr;
+					}
+				}
+			}
+			// c[j] is more shallow
+			if (hj < fh) {
+				R.rthr = fnode[hj];
+				R.rthrDx = pos[owner[hj]] + fx[hj] - (pos[j] + rx);
+				rfrom[j] = R;
+				rj[j] = owner[hj];
 			}
-			LeftSubtree = LeftSubtree.getRight();
-			RightSubtree = RightSubtree.getRight();
+			fh = Math.max(fh, hj);
 		}
 
 		/*
-		 * spaces smaller subtrees: a traverse of children from right to left
+		 * spaces smaller subtrees: a traverse of children from right to left;
+		 * shift[j] becomes the amount child j has moved by
 		 */
-		int distance = 0;
-		int change = 0;
-		TreeNode w = getChild();
-		final Stack<TreeNode> stack = new Stack<TreeNode>();
-		while (w != null) {
-			final NodePair<TreeNode> N = new NodePair<TreeNode>();
-			N.left = w;
-			stack.push(w);
-			w = w.getRight();
+		int distance = 0, chg = 0;
+		for (int j = k - 1; j >= 0; --j) {
+			final int s = shift[j];
+			pos[j] += distance;
+			shift[j] = distance;
+			chg += change[j];
+			distance += s + chg;
+		}
+		for (int j = 0; j < k; ++j) {
+			if (lfrom[j] != null) {
+				lfrom[j].lthrDx += shift[j] - shift[lj[j]];
+			}
+			if (rfrom[j] != null) {
+				rfrom[j].rthrDx += shift[rj[j]] - shift[j];
+			}
 		}
 
-		while (!stack.empty()) {
-			w = stack.pop();
-			w.offset += distance;
-			change += w.change;
-			distance += w.shift + change;
+		// finally, center this node above its children and rebox it
+		final int half = (pos[k - 1] - pos[0]) / 2;
+		int le = -bw, re = bw;
+		for (int j = 0; j < k; ++j) {
+			c[j].relx = pos[j] - pos[0] - half;
+			le = Math.min(le, c[j].relx - c[j].leftw);
+			re = Math.max(re, c[j].relx + c[j].rightw);
+			lspan = Math.max(lspan, c[j].lspan - c[j].relx);
+			rspan = Math.max(rspan, c[j].relx + c[j].rspan);
 		}
-
-		/*
-		 * finally, set proper offset to self
-		 */
-		toExtremeSon = (rightmostChild().offset - leftmostChild().offset) / 2;
-		toBaseline = leftmostChild().offset + toExtremeSon;
-		offset += toExtremeSon;
-
-		return fromLeftSubtree;
+		leftw = -le;
+		rightw = re;
 	}
 
 	/**
-	 * Disposes threads. Useful as stand-alone only for testing.
+	 * Final step of layout algorithm. Sends the nodes to their places,
+	 * skipping the subtrees that are already there, and computes boundary of
+	 * a tree.
+	 * 
+	 * @param px
+	 *            x-coordinate of this node
+	 * @param py
+	 *            y-coordinate of this node
 	 */
-	void fTRDisposeThreads() {
-		if (thread) {
-			thread = false;
-			setChild(null);
+	private void place(int px, int py) {
+		final List<TreeNode> stack = new ArrayList<TreeNode>();
+		if (placeNode(px, py)) {
+			stack.add(this);
+		}
+		while (!stack.isEmpty()) {
+			final TreeNode u = stack.remove(stack.size() - 1);
+			TreeNode w = u.getChild();
+			while (w != null) {
+				if (w.placeNode(u.tox + w.relx, u.toy + DataStructure.minsepy)) {
+					stack.add(w);
+				}
+				w = w.getRight();
+			}
 		}
 
-		TreeNode w = getChild();
-		while (w != null) {
-			w.fTRDisposeThreads();
-			w = w.getRight();
+		if (px - lspan < D.x1) {
+			D.x1 = px - lspan;
 		}
-	}
-
-	/**
-	 * Changes relative coordinates to absolute. Spacing smaller subtrees works
-	 * with absolute coordinates.
-	 * 
-	 * @param baseline
-	 *            x-coordinate of the baseline
-	 */
-	private void fTRPetrification(int baseline) {
-		tmpx = baseline + offset;
-		tmpy = level * (DataStructure.minsepy);
-
-		TreeNode w = getChild();
-		while (w != null) {
-			w.fTRPetrification(tmpx - toBaseline);
-			w = w.getRight();
+		if (px + rspan > D.x2) {
+			D.x2 = px + rspan;
+		}
+		if (py < D.y1) {
+			// this case should be always false
+			D.y1 = py;
+		}
+		final int bottom = py + (lheight - 1) * DataStructure.minsepy;
+		if (bottom > D.y2) {
+			D.y2 = bottom;
 		}
 	}
 
 	/**
-	 * Final step of layout algorithm. Changes temporary coordinates to real
-	 * one. And computes boundary of a tree.
+	 * Direct this node to [px,py] unless its whole subtree is there.
 	 * 
-	 * @param correction
-	 *            Useful when you want make root rooted at [0,0]
+	 * @return whether the children have to be placed too
 	 */
-	private void fTRBounding(int correction) {
-		goTo(tmpx + correction, tmpy);
-
-		if (tox < D.x1) {
-			D.x1 = tox;
+	private boolean placeNode(int px, int py) {
+		if (placed && tox == px && toy == py) {
+			return false;
 		}
-		if (tox > D.x2) {
-			D.x2 = tox;
-		}
-		if (toy < D.y1) {
-			// this case should be always false
-			D.y1 = toy;
-		}
-		if (toy > D.y2) {
-			D.y2 = toy;
-		}
-
-		TreeNode w = getChild();
-		while (w != null) {
-			w.fTRBounding(correction);
-			w = w.getRight();
+		if (tox != px || toy != py || (steps == 0 && (x != px || y != py))) {
+			super.goTo(px, py);
 		}
+		placed = true;
+		return true;
 	}
 
 	/**
@@ -520,11 +615,8 @@ public class TreeNode extends Node {
 	 *            amount of shift in y-axis
 	 */
 	public void shift(int xamount, int yamount) {
-		goTo(tox + xamount, toy + yamount);
-		TreeNode w = getChild();
-		while (w != null) {
-			w.shift(xamount, yamount);
-			w = w.getRight();
+		for (final TreeNode w : TreeWalk.topDown(this)) {
+			w.goTo(w.tox + xamount, w.toy + yamount);
 		}
 	}
 
@@ -533,6 +625,9 @@ public class TreeNode extends Node {
 	}
 
 	public void setChild(TreeNode child) {
+		if (this.child != child) {
+			invalidate();
+		}
 		this.child = child;
 	}
 
@@ -540,7 +635,14 @@ public class TreeNode extends Node {
 		return right;
 	}
 
+	/**
+	 * The siblings are the children of the parent, so its subtree has to be
+	 * laid out again.
+	 */
 	public void setRight(TreeNode right) {
+		if (this.right != right && parent != null) {
+			parent.invalidate();
+		}
 		this.right = right;
 	}
 
@@ -549,6 +651,9 @@ public class TreeNode extends Node {
 	}
 
 	public void setParent(TreeNode parent) {
+		if (parent != null && this.parent != parent) {
+			parent.invalidate();
+		}
 		this.parent = parent;
 	}
 
@@ -584,42 +689,42 @@ public class TreeNode extends Node {
 		}
 	}
 
+	/**
+	 * Store the state of the subtree and the subtrees of the following
+	 * siblings (see TreeWalk).
+	 */
 	@Override
 	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "child", child);
-		HashtableStoreSupport.store(state, hash + "right", right);
-		HashtableStoreSupport.store(state, hash + "parent", parent);
-
-		if (child != null) {
-			child.storeState(state);
-		}
-		if (right != null) {
-			right.storeState(state);
+		for (TreeNode u = this; u != null; u = u.right) {
+			TreeWalk.storeState(u, state);
 		}
 	}
 
 	@Override
 	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object child = state.get(hash + "child");
-		if (child != null) {
-			this.child = (TreeNode) HashtableStoreSupport.restore(child);
-		}
-		final Object right = state.get(hash + "right");
-		if (right != null) {
-			this.right = (TreeNode) HashtableStoreSupport.restore(right);
-		}
-		final Object parent = state.get(hash + "parent");
-		if (parent != null) {
-			this.parent = (TreeNode) HashtableStoreSupport.restore(parent);
+		// the sibling is read after the links of u are restored
+		for (TreeNode u = this; u != null; u = u.right) {
+			TreeWalk.restoreState(u, state);
 		}
+	}
 
-		if (this.child != null) {
-			this.child.restoreState(state);
-		}
-		if (this.right != null) {
-			this.right.restoreState(state);
+	@Override
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(child);
+		r.putRef(right);
+		r.putRef(parent);
+	}
+
+	@Override
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		child = (TreeNode) r.getRef();
+		right = (TreeNode) r.getRef();
+		parent = (TreeNode) r.getRef();
+		invalidate();
+		if (parent != null) {
+			parent.invalidate();
 		}
 	}
 }
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Hashtable;
+
+import algvis.core.history.StateRecord;
+
+/**
+ * Traversals of a subtree without recursion. A tree built from sorted keys
+ * (or a splay tree after sequential access) is a path, and recursing along
+ * it overflows the stack long before the tree gets large. The children of a
+ * node are the ones it lists in getChildren.
+ * 
+ * The renderer walks trees that an algorithm may be changing at the same
+ * time (see Scene), and a link may be briefly cyclic, e.g., in the middle of
+ * a rotation. A walk therefore stops as soon as it has listed more nodes than
+ * the structure has ever created and throws a ConcurrentModificationException;
+ * the renderer drops such a frame.
+ */
+public final class TreeWalk {
+	private TreeWalk() {
+	}
+
+	/**
+	 * List the nodes of the subtree rooted at u level by level, so that each
+	 * node comes before its descendants. Walk the list backwards to visit the
+	 * children before their parents.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Node> ArrayList<T> topDown(T u) {
+		final int limit = limit(u);
+		final ArrayList<Node> order = new ArrayList<Node>();
+		order.add(u);
+		for (int i = 0; i < order.size(); ++i) {
+			order.get(i).getChildren(order);
+			check(order, limit);
+		}
+		return (ArrayList<T>) order;
+	}
+
+	/**
+	 * Store the states of the nodes of the subtree rooted at u.
+	 */
+	public static void storeState(Node u, Hashtable<Object, Object> state) {
+		for (final Node w : topDown(u)) {
+			StateRecord.store(state, w);
+		}
+	}
+
+	/**
+	 * Restore the states of the nodes of the subtree rooted at u, parents
+	 * first; the children of a node are listed after its links have been
+	 * restored, so the subtree walked is the restored one.
+	 */
+	public static void restoreState(Node u, Hashtable<?, ?> state) {
+		final int limit = limit(u);
+		final ArrayList<Node> order = new ArrayList<Node>();
+		order.add(u);
+		for (int i = 0; i < order.size(); ++i) {
+			StateRecord.restore(state, order.get(i));
+			order.get(i).getChildren(order);
+			check(order, limit);
+		}
+	}
+
+	/**
+	 * @return the most nodes a walk from u may list
+	 */
+	public static int limit(Node u) {
+		return u.D == null ? Integer.MAX_VALUE : u.D.getNodeCount();
+	}
+
+	private static void check(ArrayList<Node> order, int limit) {
+		if (order.size() > limit) {
+			throw new ConcurrentModificationException();
+		}
+	}
+}
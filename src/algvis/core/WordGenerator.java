@@ -50,20 +50,20 @@ public class WordGenerator {
 		return skWords;
 	}
 
-	private static String getEnWord() {
+	private static String getEnWord(MyRandom random) {
 		final WordGenerator wg = WordGenerator.getInstance();
-		return wg.getEnWords().get(MyRandom.Int(wg.getEnWords().size()));
+		return wg.getEnWords().get(random.Int(wg.getEnWords().size()));
 	}
 
-	public static String getSkWord() {
+	public static String getSkWord(MyRandom random) {
 		final WordGenerator wg = WordGenerator.getInstance();
-		return wg.getSkWords().get(MyRandom.Int(wg.getSkWords().size()));
+		return wg.getSkWords().get(random.Int(wg.getSkWords().size()));
 	}
 
-	public static String getABWord(int n) {
+	public static String getABWord(int n, MyRandom random) {
 		final StringBuilder s = new StringBuilder("");
 		for (int i = 0; i < n; ++i) {
-			if (MyRandom.heads()) {
+			if (random.heads()) {
 				s.append("A");
 			} else {
 				s.append("B");
@@ -73,13 +73,13 @@ public class WordGenerator {
 		return s.toString();
 	}
 
-	public static String getWord(Settings s) {
+	public static String getWord(Settings s, MyRandom random) {
 		final int current_language = Languages.getCurrentLanguage();
 		switch (current_language) {
 		case 0:
-			return getEnWord();
+			return getEnWord(random);
 		case 1:
-			return getSkWord();
+			return getSkWord(random);
 		}
 		return null;
 	}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core.history;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Memory budget shared by the histories of all the panels (see HistorySpill).
+ * The resident edits of all the histories are kept in a single LRU order, so
+ * the panel in use evicts the old steps of the other panels first.
+ */
+public class HistoryBudget {
+	private final long bytes;
+	/** resident edits of all the spills, least recently used first */
+	final LinkedHashMap<UpdatableStateEdit, Boolean> lru = new LinkedHashMap<UpdatableStateEdit, Boolean>(
+			16, 0.75f, true);
+	/** estimated heap footprint of the resident edits */
+	long resident = 0;
+
+	/**
+	 * @param bytes
+	 *            bytes of state tables kept on the heap by all the histories
+	 */
+	public HistoryBudget(long bytes) {
+		this.bytes = bytes;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public synchronized long getResident() {
+		return resident;
+	}
+}
@@ -16,6 +16,10 @@
  ******************************************************************************/
 package algvis.core.history;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 import java.util.WeakHashMap;
 
@@ -25,15 +29,33 @@ import javax.swing.undo.UndoableEdit;
 
 import algvis.ui.VisPanel;
 
+/**
+ * Undo history of a panel. Every edit stores only the entries that changed
+ * during its step; every KEYFRAME_INTERVAL-th edit additionally keeps a full
+ * snapshot. Seeking (goTo, seek, undoAlgorithm, redoAlgorithm) locates the
+ * target edit by binary search on the ids and, when that is cheaper than
+ * walking, restores the nearest keyframe and replays at most
+ * KEYFRAME_INTERVAL deltas.
+ * 
+ * Without a budget the history keeps the last 500 edits. With a budget (see
+ * setBudget) it keeps up to MAX_EDITS edits and spills the state tables of
+ * the least recently used ones to disk (see HistorySpill).
+ */
 public class HistoryManager extends UndoManager {
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = -842354204488084104L;
+	public static final int KEYFRAME_INTERVAL = 64;
+	public static final int MAX_EDITS = 100000;
+	/** a keyframe restore is counted as this many delta steps */
+	private static final int KEYFRAME_COST = KEYFRAME_INTERVAL / 2;
 	private final Map<UndoableEdit, Boolean> algorithmEnds = new WeakHashMap<UndoableEdit, Boolean>();
 	private long id = -1; // ak sa v paneli vykona viac ako 2^63 krokov, tak
 							// mame problem
 	private final VisPanel panel;
+	private UpdatableStateEdit lastKeyframe = null;
+	private HistorySpill spill = null;
 
 	public HistoryManager(VisPanel panel) {
 		super();
@@ -41,9 +63,33 @@ public class HistoryManager extends UndoManager {
 		setLimit(500);
 	}
 
+	/**
+	 * Bounds the memory of the history by bytes instead of by the number of
+	 * edits; the budget may be shared with other histories. Evicted edits are
+	 * kept in a file created in spillDirectory (the default temporary-file
+	 * directory if null).
+	 */
+	public synchronized void setBudget(HistoryBudget budget,
+			File spillDirectory) {
+		spill = new HistorySpill(budget, spillDirectory);
+		setLimit(MAX_EDITS);
+	}
+
 	@Override
 	public synchronized boolean addEdit(UndoableEdit anEdit) {
-		return anEdit instanceof UpdatableStateEdit && super.addEdit(anEdit);
+		if (!(anEdit instanceof UpdatableStateEdit) || !super.addEdit(anEdit)) {
+			return false;
+		}
+		final UpdatableStateEdit edit = (UpdatableStateEdit) anEdit;
+		if (edits.size() > 1) {
+			account(edit(edits.size() - 2));
+		}
+		if (lastKeyframe == null || !lastKeyframe.isKeyframe()
+				|| edit.getId() - lastKeyframe.getId() >= KEYFRAME_INTERVAL) {
+			edit.makeKeyframe();
+			lastKeyframe = edit;
+		}
+		return true;
 	}
 
 	public long getNextId() {
@@ -58,34 +104,179 @@ public class HistoryManager extends UndoManager {
 		final UndoableEdit edit = editToBeUndone();
 		if (edit != null) {
 			algorithmEnds.put(edit, true);
+			account(editToBeUndone());
+		}
+	}
+
+	@Override
+	public synchronized void discardAllEdits() {
+		super.discardAllEdits();
+		if (spill != null) {
+			spill.reset();
+		}
+	}
+
+	/**
+	 * Puts an ended edit under the memory budget. If the spill file cannot be
+	 * written, the oldest edits are dropped instead.
+	 */
+	private void account(UpdatableStateEdit e) {
+		if (spill == null) {
+			return;
+		}
+		spill.admit(e);
+		while (spill.isOverBudget() && edits.size() > 1 && edit(0) != e) {
+			trimEdits(0, 0);
 		}
 	}
 
 	public synchronized void undoAlgorithm() {
-		do {
-			undo();
-		} while (canUndo() && !algorithmEnds.containsKey(editToBeUndone()));
+		int t = getPosition() - 1;
+		while (t > 0 && !algorithmEnds.containsKey(edits.get(t - 1))) {
+			--t;
+		}
+		seek(t);
 	}
 
 	public synchronized void redoAlgorithm() {
-		do {
-			redo();
-		} while (!algorithmEnds.containsKey(editToBeUndone()) && canRedo());
+		final int n = edits.size();
+		int t = getPosition() + 1;
+		while (t < n && !algorithmEnds.containsKey(edits.get(t - 1))) {
+			++t;
+		}
+		seek(t);
 	}
 
+	/**
+	 * Shows the state right after the edit with the given id, animating its
+	 * step.
+	 */
 	public synchronized void goTo(long id) {
-		if (id <= editToBeUndone().getId()) {
-			while (canUndo() && editToBeUndone().getId() >= id) {
-				undo();
-			}
-			panel.scene.endAnimation();
+		final int p = indexOf(id);
+		if (p == edits.size()) {
+			return;
+		}
+		seek(p);
+		panel.scene.endAnimation();
+		redo();
+	}
+
+	/**
+	 * @return number of edits in the history
+	 */
+	public synchronized int getLength() {
+		return edits.size();
+	}
+
+	/**
+	 * @return number of edits that are currently done
+	 */
+	public synchronized int getPosition() {
+		final UpdatableStateEdit e = editToBeUndone();
+		return e == null ? 0 : indexOf(e.getId()) + 1;
+	}
+
+	/**
+	 * @return id of the edit at the given index
+	 */
+	public synchronized long getEditId(int index) {
+		return edit(index).getId();
+	}
+
+	/**
+	 * @return id of the oldest edit in the history; the next id if there is
+	 *         none
+	 */
+	public synchronized long getFirstEditId() {
+		return edits.isEmpty() ? id + 1 : edit(0).getId();
+	}
+
+	/**
+	 * Writes the length of the history and the position in it. The edits
+	 * themselves refer to the live elements of the panel, so a saved session
+	 * regenerates them by running its operations again (see Session).
+	 */
+	public synchronized void save(DataOutput out) throws IOException {
+		out.writeInt(edits.size());
+		out.writeInt(getPosition());
+	}
+
+	/**
+	 * Reads what save wrote and moves to the saved position, counted from the
+	 * end of the history; to be called once the edits have been regenerated.
+	 */
+	public synchronized void load(DataInput in) throws IOException {
+		final int length = in.readInt();
+		final int position = in.readInt();
+		if (position < 0 || position > length) {
+			throw new IOException("bad history position " + position + " of "
+					+ length);
+		}
+		seek(edits.size() - (length - position));
+	}
+
+	/**
+	 * Moves to the state where exactly the first position edits are done.
+	 */
+	public synchronized void seek(int position) {
+		position = Math.max(0, Math.min(position, edits.size()));
+		int current = getPosition();
+		if (position == current) {
+			return;
+		}
+		int k = Math.min(position, edits.size() - 1);
+		while (k >= 0 && !edit(k).isKeyframe()) {
+			--k;
+		}
+		if (k >= 0
+				&& position - k + KEYFRAME_COST < Math.abs(position - current)) {
+			skipTo(current, k);
+			edit(k).restoreKeyframe();
+			current = k;
+		}
+		for (; current > position; --current) {
+			undo();
+		}
+		for (; current < position; ++current) {
 			redo();
-		} else {
-			while (editToBeRedone().getId() < id) {
-				redo();
+		}
+	}
+
+	/**
+	 * Moves the undo pointer without restoring any state.
+	 */
+	private void skipTo(int current, int position) {
+		if (current > position) {
+			for (int i = position; i < current; ++i) {
+				edit(i).skip = true;
+			}
+			undoTo(edit(position));
+		} else if (current < position) {
+			for (int i = current; i < position; ++i) {
+				edit(i).skip = true;
+			}
+			redoTo(edit(position - 1));
+		}
+	}
+
+	private UpdatableStateEdit edit(int i) {
+		return (UpdatableStateEdit) edits.get(i);
+	}
+
+	/**
+	 * @return index of the first edit whose id is at least id
+	 */
+	private int indexOf(long id) {
+		int lo = 0, hi = edits.size();
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (edit(mid).getId() < id) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
 			}
-			redo();
 		}
+		return lo;
 	}
 
 	public synchronized boolean isBetweenAlgorithms() {
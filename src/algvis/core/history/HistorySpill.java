@@ -0,0 +1,567 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core.history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the state tables of a history within a memory budget shared with the
+ * other histories (see HistoryBudget). Ended edits are kept in LRU order;
+ * when their estimated size exceeds the budget, the least recently used ones
+ * are written to their memory-mapped spill files and their tables are
+ * dropped. Undo, redo or a keyframe restore of an evicted edit reads it back,
+ * so evicted steps remain reachable by goTo.
+ * 
+ * Primitives, strings, state records, lists, sets and arrays are written by
+ * value. Elements and any other objects are written as indices into an
+ * object table; an object stays in the table only while some written edit
+ * refers to it. The entries of the state before a keyframe edit that are the
+ * same as in the keyframe are written only once.
+ * <p/>
+ * The spill file is a list of mapped segments filled one after another. A
+ * segment whose written edits have all died is reused for the next writes,
+ * so the file grows only with the edits that are still alive; when the whole
+ * history is discarded, the file is closed and deleted.
+ */
+public class HistorySpill {
+	public static final int SEGMENT_SIZE = 16 << 20;
+	private static final byte NULL = 0, INT = 1, BOOLEAN = 2, CHAR = 3,
+			STRING = 4, RECORD = 5, REF = 6, LIST = 7, SET = 8, ARRAY = 9,
+			INTS = 10, BOOLEANS = 11, SHARED = 12;
+
+	private final HistoryBudget budget;
+	private final File directory;
+	private File file = null;
+	private FileChannel channel = null;
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	// the number of live written edits in each segment, the segments with
+	// none that can be reused, and the segment being filled
+	private final List<Integer> live = new ArrayList<Integer>();
+	private final List<Integer> freeSegments = new ArrayList<Integer>();
+	private int current = -1;
+	private long end = 0;
+	private boolean failed = false;
+
+	// the objects written by reference, their number of written edits
+	// referring to them, and the free slots of the table
+	private final List<Object> objects = new ArrayList<Object>();
+	private final List<Integer> objectRefs = new ArrayList<Integer>();
+	private final Map<Object, Integer> objectIds = new IdentityHashMap<Object, Integer>();
+	private final List<Integer> freeIds = new ArrayList<Integer>();
+	// the ids referred to by the edit being written
+	private Set<Integer> written = null;
+
+	/**
+	 * @param budget
+	 *            the budget shared with the other histories
+	 * @param directory
+	 *            where the spill file is created; the default temporary-file
+	 *            directory if null
+	 */
+	public HistorySpill(HistoryBudget budget, File directory) {
+		this.budget = budget;
+		this.directory = directory;
+	}
+
+	public HistoryBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return true if the budget is exceeded because the spill file could not
+	 *         be written
+	 */
+	public boolean isOverBudget() {
+		synchronized (budget) {
+			return failed && budget.resident > budget.getBytes();
+		}
+	}
+
+	/**
+	 * Starts accounting for an edit that has ended.
+	 */
+	void admit(UpdatableStateEdit e) {
+		synchronized (budget) {
+			if (e.spill == this || !e.isEnded()) {
+				return;
+			}
+			e.spill = this;
+			e.bytes = sizeOf(e.getPreState(), e.getKeyframe())
+					+ sizeOf(e.getPostState(), null)
+					+ sizeOf(e.getKeyframe(), null);
+			budget.lru.put(e, Boolean.TRUE);
+			budget.resident += e.bytes;
+			trim(e);
+		}
+	}
+
+	/**
+	 * Makes sure the edit is on the heap and marks it as recently used. The
+	 * edit cannot be evicted (by this or another history) until it is
+	 * unpinned, so its tables can be restored outside the lock.
+	 */
+	void pin(UpdatableStateEdit e) {
+		synchronized (budget) {
+			if (budget.lru.get(e) == null) {
+				if (!e.isResident()) {
+					load(e);
+				}
+				budget.lru.put(e, Boolean.TRUE);
+				budget.resident += e.bytes;
+			}
+			++e.pins;
+			trim(e);
+		}
+	}
+
+	void unpin(UpdatableStateEdit e) {
+		synchronized (budget) {
+			--e.pins;
+			trim(null);
+		}
+	}
+
+	/**
+	 * Stops accounting for an edit that has died and releases the objects
+	 * and the space in the file only it referred to.
+	 */
+	void forget(UpdatableStateEdit e) {
+		synchronized (budget) {
+			if (budget.lru.remove(e) != null) {
+				budget.resident -= e.bytes;
+			}
+			if (e.segment >= 0) {
+				final int n = live.get(e.segment) - 1;
+				live.set(e.segment, n);
+				if (n == 0 && e.segment != current) {
+					freeSegments.add(e.segment);
+				}
+				e.segment = -1;
+			}
+			if (e.refs != null) {
+				for (final int id : e.refs) {
+					release(id);
+				}
+				e.refs = null;
+			}
+		}
+	}
+
+	/**
+	 * Drops everything; called when the whole history is discarded.
+	 */
+	void reset() {
+		synchronized (budget) {
+			final Iterator<UpdatableStateEdit> it = budget.lru.keySet()
+					.iterator();
+			while (it.hasNext()) {
+				final UpdatableStateEdit e = it.next();
+				if (e.spill == this) {
+					it.remove();
+					budget.resident -= e.bytes;
+				}
+			}
+			objects.clear();
+			objectRefs.clear();
+			objectIds.clear();
+			freeIds.clear();
+			segments.clear();
+			live.clear();
+			freeSegments.clear();
+			current = -1;
+			end = 0;
+			if (channel != null) {
+				// the mappings are released when the segments are collected
+				try {
+					channel.close();
+				} catch (final IOException ex) {
+					System.err.println("History spill not closed: " + ex);
+				}
+				file.delete();
+				channel = null;
+				file = null;
+			}
+		}
+	}
+
+	/**
+	 * Evicts the least recently used edits of all the histories until the
+	 * budget is kept. Called with the budget locked.
+	 */
+	private void trim(UpdatableStateEdit keep) {
+		final Iterator<UpdatableStateEdit> it = budget.lru.keySet().iterator();
+		while (budget.resident > budget.getBytes() && it.hasNext()) {
+			final UpdatableStateEdit e = it.next();
+			if (e == keep || e.pins > 0) {
+				continue;
+			}
+			if (e.segment < 0 && !e.spill.write(e)) {
+				return;
+			}
+			it.remove();
+			budget.resident -= e.bytes;
+			e.setStates(null, null, null);
+		}
+	}
+
+	private boolean write(UpdatableStateEdit e) {
+		if (failed) {
+			return false;
+		}
+		written = new HashSet<Integer>();
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			final Hashtable<Object, Object> keyframe = e.getKeyframe();
+			out.writeBoolean(keyframe != null);
+			if (keyframe != null) {
+				writeTable(out, keyframe, null);
+			}
+			writeTable(out, e.getPreState(), keyframe);
+			writeTable(out, e.getPostState(), null);
+			out.flush();
+			final byte[] b = bytes.toByteArray();
+			final MappedByteBuffer segment = segment(b.length);
+			e.segment = current;
+			e.offset = segment.position();
+			e.length = b.length;
+			segment.put(b);
+			live.set(current, live.get(current) + 1);
+			e.refs = new int[written.size()];
+			int i = 0;
+			for (final int id : written) {
+				e.refs[i++] = id;
+			}
+			return true;
+		} catch (final IOException ex) {
+			System.err.println("History spill disabled: " + ex);
+			failed = true;
+			for (final int id : written) {
+				release(id);
+			}
+			return false;
+		} finally {
+			written = null;
+		}
+	}
+
+	/**
+	 * @return the segment to write length bytes to: the current one if they
+	 *         fit, otherwise a free or a new one, which becomes current
+	 */
+	private MappedByteBuffer segment(int length) throws IOException {
+		if (current >= 0 && segments.get(current).remaining() >= length) {
+			return segments.get(current);
+		}
+		int next = -1;
+		for (int i = 0; i < freeSegments.size(); ++i) {
+			if (segments.get(freeSegments.get(i)).capacity() >= length) {
+				next = freeSegments.remove(i);
+				segments.get(next).clear();
+				break;
+			}
+		}
+		if (next < 0) {
+			final int size = Math.max(SEGMENT_SIZE, length);
+			segments.add(channel().map(FileChannel.MapMode.READ_WRITE, end,
+					size));
+			live.add(0);
+			end += size;
+			next = segments.size() - 1;
+		}
+		if (current >= 0 && live.get(current) == 0) {
+			freeSegments.add(current);
+		}
+		current = next;
+		return segments.get(current);
+	}
+
+	private void load(UpdatableStateEdit e) {
+		final ByteBuffer in = segments.get(e.segment).duplicate();
+		in.position(e.offset);
+		final Hashtable<Object, Object> keyframe = in.get() != 0 ? readTable(
+				in, null) : null;
+		final Hashtable<Object, Object> pre = readTable(in, keyframe);
+		final Hashtable<Object, Object> post = readTable(in, null);
+		e.setStates(pre, post, keyframe);
+	}
+
+	private FileChannel channel() throws IOException {
+		if (channel == null) {
+			file = File.createTempFile("algvis-history", ".bin", directory);
+			file.deleteOnExit();
+			channel = new RandomAccessFile(file, "rw").getChannel();
+		}
+		return channel;
+	}
+
+	/**
+	 * Writes the table; the values that are the same objects as in the
+	 * shared table (if not null) are written as references to it.
+	 */
+	private void writeTable(DataOutputStream out, Hashtable<Object, Object> t,
+			Hashtable<Object, Object> shared) throws IOException {
+		out.writeInt(t.size());
+		for (final Map.Entry<Object, Object> entry : t.entrySet()) {
+			writeValue(out, entry.getKey());
+			if (shared != null && shared.get(entry.getKey()) == entry.getValue()) {
+				out.writeByte(SHARED);
+			} else {
+				writeValue(out, entry.getValue());
+			}
+		}
+	}
+
+	private Hashtable<Object, Object> readTable(ByteBuffer in,
+			Hashtable<Object, Object> shared) {
+		final int n = in.getInt();
+		final Hashtable<Object, Object> t = new Hashtable<Object, Object>(
+				n * 4 / 3 + 1);
+		for (int i = 0; i < n; ++i) {
+			final Object key = readValue(in);
+			if (in.get(in.position()) == SHARED) {
+				in.get();
+				t.put(key, shared.get(key));
+			} else {
+				t.put(key, readValue(in));
+			}
+		}
+		return t;
+	}
+
+	private void writeValue(DataOutputStream out, Object v) throws IOException {
+		if (v == null) {
+			out.writeByte(NULL);
+		} else if (v instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) v);
+		} else if (v instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) v);
+		} else if (v instanceof Character) {
+			out.writeByte(CHAR);
+			out.writeChar((Character) v);
+		} else if (v instanceof String) {
+			final String s = (String) v;
+			out.writeByte(STRING);
+			out.writeInt(s.length());
+			out.writeChars(s);
+		} else if (v instanceof StateRecord) {
+			final StateRecord r = (StateRecord) v;
+			out.writeByte(RECORD);
+			out.writeInt(r.getIntCount());
+			for (int i = 0; i < r.getIntCount(); ++i) {
+				out.writeInt(r.intAt(i));
+			}
+			out.writeInt(r.getRefCount());
+			for (int i = 0; i < r.getRefCount(); ++i) {
+				writeValue(out, r.refAt(i));
+			}
+		} else if (v.getClass() == ArrayList.class
+				|| v.getClass() == HashSet.class) {
+			final Collection<?> c = (Collection<?>) v;
+			out.writeByte(v.getClass() == ArrayList.class ? LIST : SET);
+			out.writeInt(c.size());
+			for (final Object o : c) {
+				writeValue(out, o);
+			}
+		} else if (v instanceof int[]) {
+			final int[] a = (int[]) v;
+			out.writeByte(INTS);
+			out.writeInt(a.length);
+			for (final int x : a) {
+				out.writeInt(x);
+			}
+		} else if (v instanceof boolean[]) {
+			final boolean[] a = (boolean[]) v;
+			out.writeByte(BOOLEANS);
+			out.writeInt(a.length);
+			for (final boolean x : a) {
+				out.writeBoolean(x);
+			}
+		} else if (v instanceof Object[]) {
+			final Object[] a = (Object[]) v;
+			out.writeByte(ARRAY);
+			out.writeInt(objectId(a.getClass().getComponentType()));
+			out.writeInt(a.length);
+			for (final Object o : a) {
+				writeValue(out, o);
+			}
+		} else {
+			out.writeByte(REF);
+			out.writeInt(objectId(v));
+		}
+	}
+
+	private Object readValue(ByteBuffer in) {
+		final byte tag = in.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case INT:
+			return in.getInt();
+		case BOOLEAN:
+			return in.get() != 0;
+		case CHAR:
+			return in.getChar();
+		case STRING: {
+			final char[] s = new char[in.getInt()];
+			for (int i = 0; i < s.length; ++i) {
+				s[i] = in.getChar();
+			}
+			return new String(s);
+		}
+		case RECORD: {
+			final int[] ints = new int[in.getInt()];
+			for (int i = 0; i < ints.length; ++i) {
+				ints[i] = in.getInt();
+			}
+			final Object[] refs = new Object[in.getInt()];
+			for (int i = 0; i < refs.length; ++i) {
+				refs[i] = readValue(in);
+			}
+			return new StateRecord(ints, refs);
+		}
+		case LIST:
+		case SET: {
+			final int n = in.getInt();
+			final Collection<Object> c = tag == LIST ? new ArrayList<Object>(n)
+					: new HashSet<Object>(n * 4 / 3 + 1);
+			for (int i = 0; i < n; ++i) {
+				c.add(readValue(in));
+			}
+			return c;
+		}
+		case INTS: {
+			final int[] a = new int[in.getInt()];
+			for (int i = 0; i < a.length; ++i) {
+				a[i] = in.getInt();
+			}
+			return a;
+		}
+		case BOOLEANS: {
+			final boolean[] a = new boolean[in.getInt()];
+			for (int i = 0; i < a.length; ++i) {
+				a[i] = in.get() != 0;
+			}
+			return a;
+		}
+		case ARRAY: {
+			final Class<?> type = (Class<?>) objects.get(in.getInt());
+			final Object[] a = (Object[]) Array.newInstance(type, in.getInt());
+			for (int i = 0; i < a.length; ++i) {
+				a[i] = readValue(in);
+			}
+			return a;
+		}
+		default:
+			return objects.get(in.getInt());
+		}
+	}
+
+	/**
+	 * @return the index of the object in the object table; the edit being
+	 *         written refers to it from now on
+	 */
+	private int objectId(Object o) {
+		Integer id = objectIds.get(o);
+		if (id == null) {
+			if (freeIds.isEmpty()) {
+				id = objects.size();
+				objects.add(o);
+				objectRefs.add(0);
+			} else {
+				id = freeIds.remove(freeIds.size() - 1);
+				objects.set(id, o);
+			}
+			objectIds.put(o, id);
+		}
+		if (written.add(id)) {
+			objectRefs.set(id, objectRefs.get(id) + 1);
+		}
+		return id;
+	}
+
+	/**
+	 * One edit referring to the object does not need it any more.
+	 */
+	private void release(int id) {
+		final int refs = objectRefs.get(id) - 1;
+		objectRefs.set(id, refs);
+		if (refs == 0) {
+			objectIds.remove(objects.get(id));
+			objects.set(id, null);
+			freeIds.add(id);
+		}
+	}
+
+	/**
+	 * Rough heap footprint of a state table (64-bit JVM, compressed oops).
+	 * The values that are the same objects as in the shared table (if not
+	 * null) are not counted.
+	 */
+	private static long sizeOf(Hashtable<Object, Object> t,
+			Hashtable<Object, Object> shared) {
+		if (t == null) {
+			return 0;
+		}
+		long size = 48 + 8L * t.size();
+		for (final Map.Entry<Object, Object> entry : t.entrySet()) {
+			size += 32 + sizeOf(entry.getKey());
+			if (shared == null || shared.get(entry.getKey()) != entry.getValue()) {
+				size += sizeOf(entry.getValue());
+			}
+		}
+		return size;
+	}
+
+	private static long sizeOf(Object v) {
+		if (v instanceof String) {
+			return 40 + 2L * ((String) v).length();
+		} else if (v instanceof StateRecord) {
+			final StateRecord r = (StateRecord) v;
+			return 72 + 4L * (r.getIntCount() + r.getRefCount());
+		} else if (v instanceof Integer || v instanceof Boolean
+				|| v instanceof Character) {
+			return 16;
+		} else if (v instanceof Collection) {
+			return 64 + 40L * ((Collection<?>) v).size();
+		} else if (v instanceof int[]) {
+			return 16 + 4L * ((int[]) v).length;
+		} else if (v instanceof Object[]) {
+			return 16 + 4L * ((Object[]) v).length;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core.history;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typed snapshot of one visual element. Primitive fields are written into an
+ * int array and references into an object array in a fixed order, so a whole
+ * node costs one table entry instead of one boxed value and one String key
+ * per field. The record is stored in the state table under the element
+ * itself.
+ * 
+ * Two records are equal iff they hold the same values, so
+ * {@link javax.swing.undo.StateEdit} still drops elements that did not change
+ * during an edit.
+ * <p/>
+ * The arrays of a record are allocated with the sizes of the last record of
+ * the same class, so a node of fixed shape fills them exactly and they need
+ * neither growing nor trimming.
+ */
+public final class StateRecord {
+	private static final int[] NO_INTS = new int[0];
+	private static final Object[] NO_REFS = new Object[0];
+	/** the numbers of ints and refs last stored by each class */
+	private static final ConcurrentHashMap<Class<?>, int[]> sizes =
+			new ConcurrentHashMap<Class<?>, int[]>();
+	private int[] ints;
+	private Object[] refs;
+	private int ni, nr;
+	private int ri, rr;
+
+	public StateRecord() {
+		this(8, 4);
+	}
+
+	private StateRecord(int ni, int nr) {
+		ints = ni == 0 ? NO_INTS : new int[ni];
+		refs = nr == 0 ? NO_REFS : new Object[nr];
+	}
+
+	/**
+	 * Record read back from the spill file (see HistorySpill).
+	 */
+	StateRecord(int[] ints, Object[] refs) {
+		this.ints = ints;
+		this.refs = refs;
+		ni = ints.length;
+		nr = refs.length;
+	}
+
+	/**
+	 * Stores the typed state of element into state unless it is already
+	 * there.
+	 */
+	public static void store(Hashtable<Object, Object> state, Recordable element) {
+		if (!state.containsKey(element)) {
+			final Class<?> c = element.getClass();
+			final int[] size = sizes.get(c);
+			final StateRecord r = size == null ? new StateRecord()
+					: new StateRecord(size[0], size[1]);
+			element.storeFields(r);
+			if (size == null || size[0] != r.ni || size[1] != r.nr) {
+				sizes.put(c, new int[] { r.ni, r.nr });
+				r.trim();
+			}
+			state.put(element, r);
+		}
+	}
+
+	/**
+	 * Restores element from its record in state, if there is one.
+	 */
+	public static void restore(Hashtable<?, ?> state, Recordable element) {
+		final Object r = state.get(element);
+		if (r instanceof StateRecord) {
+			((StateRecord) r).rewind();
+			element.restoreFields((StateRecord) r);
+		}
+	}
+
+	public void putInt(int value) {
+		if (ni == ints.length) {
+			ints = Arrays.copyOf(ints, Math.max(2 * ni, 8));
+		}
+		ints[ni++] = value;
+	}
+
+	public void putBoolean(boolean value) {
+		putInt(value ? 1 : 0);
+	}
+
+	public void putRef(Object value) {
+		if (nr == refs.length) {
+			refs = Arrays.copyOf(refs, Math.max(2 * nr, 4));
+		}
+		refs[nr++] = value;
+	}
+
+	public int getInt() {
+		return ints[ri++];
+	}
+
+	public boolean getBoolean() {
+		return ints[ri++] != 0;
+	}
+
+	public Object getRef() {
+		return refs[rr++];
+	}
+
+	int getIntCount() {
+		return ni;
+	}
+
+	int getRefCount() {
+		return nr;
+	}
+
+	int intAt(int i) {
+		return ints[i];
+	}
+
+	Object refAt(int i) {
+		return refs[i];
+	}
+
+	private void rewind() {
+		ri = rr = 0;
+	}
+
+	private void trim() {
+		if (ni < ints.length) {
+			ints = Arrays.copyOf(ints, ni);
+		}
+		if (nr < refs.length) {
+			refs = Arrays.copyOf(refs, nr);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof StateRecord)) {
+			return false;
+		}
+		final StateRecord r = (StateRecord) obj;
+		if (ni != r.ni || nr != r.nr) {
+			return false;
+		}
+		for (int i = 0; i < ni; ++i) {
+			if (ints[i] != r.ints[i]) {
+				return false;
+			}
+		}
+		for (int i = 0; i < nr; ++i) {
+			if (refs[i] == null ? r.refs[i] != null : !refs[i].equals(r.refs[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 1;
+		for (int i = 0; i < ni; ++i) {
+			h = 31 * h + ints[i];
+		}
+		for (int i = 0; i < nr; ++i) {
+			h = 31 * h + (refs[i] == null ? 0 : refs[i].hashCode());
+		}
+		return h;
+	}
+}
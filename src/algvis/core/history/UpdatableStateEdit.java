@@ -17,6 +17,8 @@
 
 package algvis.core.history;
 
+import java.util.Hashtable;
+
 import javax.swing.undo.StateEdit;
 import javax.swing.undo.StateEditable;
 
@@ -25,7 +27,31 @@ public class UpdatableStateEdit extends StateEdit {
 	 * 
 	 */
 	private static final long serialVersionUID = -702806146128844264L;
+	private static final StateEditable DETACHED = new StateEditable() {
+		@Override
+		public void storeState(Hashtable<Object, Object> state) {
+		}
+
+		@Override
+		public void restoreState(Hashtable<?, ?> state) {
+		}
+	};
 	private final long id;
+	/** full snapshot of the state before this edit, or null */
+	private Hashtable<Object, Object> keyframe;
+	private boolean keyframed = false;
+	/** store that keeps this edit on disk when it is evicted, or null */
+	HistorySpill spill = null;
+	/** location in the spill file; segment is -1 until written */
+	int segment = -1, offset, length;
+	/** the object table entries the written edit refers to (see HistorySpill) */
+	int[] refs = null;
+	/** estimated heap footprint of the state tables */
+	long bytes = 0;
+	/** the number of restores running from the tables (see HistorySpill.pin) */
+	int pins = 0;
+	/** next undo/redo only moves the history pointer (see HistoryManager) */
+	boolean skip = false;
 
 	public UpdatableStateEdit(StateEditable anObject, long id) {
 		super(anObject);
@@ -39,4 +65,121 @@ public class UpdatableStateEdit extends StateEdit {
 	public long getId() {
 		return id;
 	}
+
+	/**
+	 * Keeps a copy of the complete state captured by the constructor. Must be
+	 * called before end(), which strips the unchanged entries.
+	 */
+	void makeKeyframe() {
+		keyframe = new Hashtable<Object, Object>(preState);
+		keyframed = true;
+	}
+
+	boolean isKeyframe() {
+		return keyframed;
+	}
+
+	void restoreKeyframe() {
+		final HistorySpill s = spill;
+		if (s == null) {
+			object.restoreState(keyframe);
+			return;
+		}
+		s.pin(this);
+		try {
+			object.restoreState(keyframe);
+		} finally {
+			s.unpin(this);
+		}
+	}
+
+	boolean isEnded() {
+		return postState != null;
+	}
+
+	boolean isResident() {
+		return preState != null;
+	}
+
+	Hashtable<Object, Object> getPreState() {
+		return preState;
+	}
+
+	Hashtable<Object, Object> getPostState() {
+		return postState;
+	}
+
+	Hashtable<Object, Object> getKeyframe() {
+		return keyframe;
+	}
+
+	void setStates(Hashtable<Object, Object> preState,
+			Hashtable<Object, Object> postState,
+			Hashtable<Object, Object> keyframe) {
+		this.preState = preState;
+		this.postState = postState;
+		this.keyframe = keyframe;
+	}
+
+	@Override
+	public void undo() {
+		if (skip) {
+			skip = false;
+			final StateEditable o = object;
+			object = DETACHED;
+			try {
+				super.undo();
+			} finally {
+				object = o;
+			}
+		} else {
+			final HistorySpill s = spill;
+			if (s == null) {
+				super.undo();
+				return;
+			}
+			s.pin(this);
+			try {
+				super.undo();
+			} finally {
+				s.unpin(this);
+			}
+		}
+	}
+
+	@Override
+	public void redo() {
+		if (skip) {
+			skip = false;
+			final StateEditable o = object;
+			object = DETACHED;
+			try {
+				super.redo();
+			} finally {
+				object = o;
+			}
+		} else {
+			final HistorySpill s = spill;
+			if (s == null) {
+				super.redo();
+				return;
+			}
+			s.pin(this);
+			try {
+				super.redo();
+			} finally {
+				s.unpin(this);
+			}
+		}
+	}
+
+	@Override
+	public void die() {
+		if (spill != null) {
+			spill.forget(this);
+		}
+		keyframe = null;
+		keyframed = false;
+		super.die();
+	}
 }
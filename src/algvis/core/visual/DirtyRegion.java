@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.core.visual;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * The part of the plane that has to be redrawn in the next frame, i.e., the
+ * bounding box of everything that has moved since the last one (see
+ * Node.move). Changes other than motion make the whole frame dirty.
+ */
+public class DirtyRegion {
+	private double minx, miny, maxx, maxy;
+	private boolean empty = true, all = true;
+
+	/**
+	 * Add the square with center (x,y) and radius r.
+	 */
+	public void add(double x, double y, double r) {
+		if (empty) {
+			minx = x - r;
+			miny = y - r;
+			maxx = x + r;
+			maxy = y + r;
+			empty = false;
+		} else {
+			minx = Math.min(minx, x - r);
+			miny = Math.min(miny, y - r);
+			maxx = Math.max(maxx, x + r);
+			maxy = Math.max(maxy, y + r);
+		}
+	}
+
+	/**
+	 * The whole frame has to be redrawn.
+	 */
+	public void addAll() {
+		all = true;
+	}
+
+	public boolean isAll() {
+		return all;
+	}
+
+	public boolean isEmpty() {
+		return empty && !all;
+	}
+
+	public Rectangle2D getBounds() {
+		return new Rectangle2D.Double(minx, miny, maxx - minx, maxy - miny);
+	}
+
+	public void reset() {
+		empty = true;
+		all = false;
+	}
+}
@@ -27,6 +27,7 @@ public class DoubleArrow extends VisualElement {
 
 	@Override
 	protected Rectangle2D getBoundingBox() {
-		return new Rectangle2D.Double(x1, y1, x2, y2);
+		return new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2),
+				Math.abs(x2 - x1), Math.abs(y2 - y1));
 	}
 }
\ No newline at end of file
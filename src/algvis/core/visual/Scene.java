@@ -25,14 +25,51 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
-import algvis.core.Node;
 import algvis.core.history.HashtableStoreSupport;
 import algvis.ui.view.View;
 
 public class Scene extends VisualElement {
 	public static final int MAXZ = 10, MIDZ = 5;
+	/** the length of one animation step in ns (see Node.STEPS) */
+	public static final long TICK = 50000000L;
+	// an idle screen resumes where it stopped rather than jumping
+	private static final double MAX_TICKS = 2;
 	private final List<HashSet<VisualElement>> elements = new ArrayList<HashSet<VisualElement>>();
-	private final RemoveManager removeManager = new RemoveManager();
+	/** elements waiting for the end of their animation; swept in move() */
+	private final Set<VisualElement> toRemove = new HashSet<VisualElement>();
+	private final String hash = Integer.toString(hashCode());
+
+	/*
+	 * Frames. An algorithm changes the scene only between two calls of pause()
+	 * and the renderer draws it only while no algorithm does so: version is
+	 * odd while an algorithm updates the scene (beginUpdate) and even once
+	 * the scene is consistent again (publish). A published frame fixes only
+	 * which elements are drawn; the elements themselves are read live, so a
+	 * frame is only an optimistic read: the renderer notes the version before
+	 * drawing and keeps the frame only if it is still the same after (see
+	 * Screen). Whatever the renderer meets in a half-changed structure must
+	 * end its frame rather than hang it, so walks over trees are bounded (see
+	 * algvis.core.TreeWalk). Neither side ever waits for the other; while an
+	 * algorithm runs without pauses, the renderer may not get a complete frame
+	 * until it stops.
+	 */
+	private volatile int version = 0;
+	/** the layers as last published; drawn without locking */
+	private volatile VisualElement[][] frame = new VisualElement[MAXZ][0];
+	private volatile boolean changed = false, removing = false;
+
+	/*
+	 * The animation clock: the time of the current frame (System.nanoTime)
+	 * and the number of ticks since the previous frame, sampled once per
+	 * frame by move(), so that the speed of animations does not depend on the
+	 * frame rate.
+	 */
+	private long time = System.nanoTime();
+	private double ticks = 0;
+	// has anything reported that it is still on its way (see stillMoving)?
+	private volatile boolean moving = false;
+	/** what has moved since the last frame (see Screen) */
+	public final DirtyRegion dirty = new DirtyRegion();
 
 	public Scene() {
 		super(0);
@@ -46,16 +83,31 @@ public class Scene extends VisualElement {
 	}
 
 	public synchronized void add(VisualElement element, int zDepth) {
-		removeManager.add(element, zDepth);
+		toRemove.remove(element);
+		if (zDepth < 0) {
+			zDepth = 0;
+		}
+		if (zDepth >= MAXZ) {
+			zDepth = MAXZ - 1;
+		}
+		elements.get(zDepth).add(element);
+		changed = true;
 	}
 
 	/**
-	 * Element is removed after it ends its animation.
+	 * Element is removed after it ends its animation, i.e. on the first call
+	 * of move() (or endAnimation()) which finds it done. An element that is
+	 * not animated is removed immediately.
 	 * 
 	 * @param element
 	 */
 	public synchronized void remove(VisualElement element) {
-		removeManager.remove(element);
+		if (element.isAnimationDone()) {
+			removeNow(element);
+		} else {
+			toRemove.add(element);
+			removing = true;
+		}
 	}
 
 	/**
@@ -65,9 +117,111 @@ public class Scene extends VisualElement {
 	 */
 	public synchronized void removeNow(VisualElement element) {
 		elements.get(element.getZDepth()).remove(element);
-		if (removeManager.toRemove.contains(element)) {
-			removeManager.toRemove.remove(element);
+		toRemove.remove(element);
+		changed = true;
+	}
+
+	/**
+	 * Removes elements whose animation has finished. Called with the monitor
+	 * already held.
+	 */
+	private void sweep() {
+		if (toRemove.isEmpty()) {
+			return;
+		}
+		final Iterator<VisualElement> iterator = toRemove.iterator();
+		while (iterator.hasNext()) {
+			final VisualElement element = iterator.next();
+			if (element.isAnimationDone()) {
+				iterator.remove();
+				elements.get(element.getZDepth()).remove(element);
+				changed = true;
+				dirty.addAll();
+			}
+		}
+		removing = !toRemove.isEmpty();
+	}
+
+	/**
+	 * @return the layers to draw; rebuilt only if the scene has changed since
+	 *         the last call
+	 */
+	private VisualElement[][] getFrame() {
+		if (changed) {
+			synchronized (this) {
+				rebuild();
+			}
+		}
+		return frame;
+	}
+
+	private void rebuild() {
+		if (!changed) {
+			return;
+		}
+		final VisualElement[][] f = new VisualElement[MAXZ][];
+		for (int i = 0; i < MAXZ; ++i) {
+			f[i] = elements.get(i).toArray(new VisualElement[0]);
+		}
+		changed = false;
+		frame = f;
+	}
+
+	/**
+	 * Called by an algorithm before it starts changing the scene.
+	 */
+	public void beginUpdate() {
+		if ((version & 1) == 0) {
+			++version;
+		}
+	}
+
+	/**
+	 * Called by an algorithm when the scene is consistent again (i.e., at
+	 * each pause and at the end).
+	 */
+	public void publish() {
+		if ((version & 1) == 0) {
+			return;
+		}
+		synchronized (this) {
+			rebuild();
+		}
+		++version;
+	}
+
+	/**
+	 * @return the current version; the scene may be drawn only if it is even
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public static boolean isConsistent(int version) {
+		return (version & 1) == 0;
+	}
+
+	/**
+	 * @return the number of elements in each layer (by z-depth) as last
+	 *         published
+	 */
+	public int[] getLayerSizes() {
+		final VisualElement[][] f = frame;
+		final int[] sizes = new int[MAXZ];
+		for (int i = 0; i < MAXZ; ++i) {
+			sizes[i] = f[i].length;
 		}
+		return sizes;
+	}
+
+	/**
+	 * Called by the renderer after drawing the scene as of the given version.
+	 * 
+	 * @return whether the frame is complete, i.e., no algorithm has touched
+	 *         the scene meanwhile
+	 */
+	public boolean frameDrawn(int drawn) {
+		return drawn == version;
 	}
 
 	// public synchronized void changeZDepth(VisualElement element, int from,
@@ -81,27 +235,35 @@ public class Scene extends VisualElement {
 
 	@Override
 	public void draw(View V) {
+		final VisualElement[][] f = getFrame();
 		for (int i = MAXZ - 1; i >= 0; --i) {
-			synchronized (this) {
-				for (final VisualElement e : elements.get(i)) {
-					e.draw(V);
-					// Rectangle2D r = e.getBoundingBox();
-					// if (r != null) {
-					// V.setColor(Color.RED);
-					// V.drawRectangle(r);
-					// }
-				}
+			for (final VisualElement e : f[i]) {
+				e.draw(V);
+				// Rectangle2D r = e.getBoundingBox();
+				// if (r != null) {
+				// V.setColor(Color.RED);
+				// V.drawRectangle(r);
+				// }
 			}
 		}
 	}
 
 	@Override
-	public synchronized void move() {
-		for (final Set<VisualElement> set : elements) {
-			for (final VisualElement e : set) {
+	public void move() {
+		final long now = System.nanoTime();
+		ticks = Math.min((now - time) / (double) TICK, MAX_TICKS);
+		time = now;
+		moving = false;
+		for (final VisualElement[] layer : getFrame()) {
+			for (final VisualElement e : layer) {
 				e.move();
 			}
 		}
+		if (removing) {
+			synchronized (this) {
+				sweep();
+			}
+		}
 	}
 
 	@Override
@@ -110,10 +272,15 @@ public class Scene extends VisualElement {
 		for (final Set<VisualElement> set : elements) {
 			for (final VisualElement e : set) {
 				final Rectangle2D eBB = e.getBoundingBox();
+				if (eBB == null) {
+					continue;
+				}
 				if (retVal == null) {
-					retVal = eBB;
-				} else if (eBB != null) {
-					retVal = retVal.createUnion(eBB);
+					// a copy, the elements may keep their boxes
+					retVal = new Rectangle2D.Double();
+					retVal.setRect(eBB);
+				} else {
+					retVal.add(eBB);
 				}
 			}
 		}
@@ -127,17 +294,47 @@ public class Scene extends VisualElement {
 				e.endAnimation();
 			}
 		}
+		sweep();
+		dirty.addAll();
+	}
+
+	/**
+	 * Called from move() by anything that has not arrived yet, e.g., the
+	 * nodes of a tree, which are not elements of the scene themselves and
+	 * need not be checked by the isAnimationDone of their data structure.
+	 */
+	public void stillMoving() {
+		moving = true;
 	}
 
 	@Override
-	public synchronized boolean isAnimationDone() {
-		boolean retVal = true;
-		for (final Set<VisualElement> set : elements) {
-			for (final VisualElement e : set) {
-				retVal &= e.isAnimationDone();
+	public boolean isAnimationDone() {
+		if (moving) {
+			return false;
+		}
+		for (final VisualElement[] layer : getFrame()) {
+			for (final VisualElement e : layer) {
+				if (!e.isAnimationDone()) {
+					return false;
+				}
 			}
 		}
-		return retVal;
+		return true;
+	}
+
+	/**
+	 * @return the time of the current frame (see move)
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the number of ticks (possibly fractional) since the previous
+	 *         frame
+	 */
+	public double getTicks() {
+		return ticks;
 	}
 
 	@Override
@@ -146,7 +343,7 @@ public class Scene extends VisualElement {
 		for (final HashSet<VisualElement> set : elements) {
 			elementsClone.add((Set<VisualElement>) set.clone());
 		}
-		for (final VisualElement element : removeManager.toRemove) {
+		for (final VisualElement element : toRemove) {
 			elementsClone.get(element.getZDepth()).remove(element);
 		}
 		for (int i = 0; i < MAXZ; ++i) {
@@ -168,11 +365,11 @@ public class Scene extends VisualElement {
 					+ "elements" + i);
 			if (setI != null) {
 				for (final VisualElement e : elements.get(i)) {
-					if (setI.contains(e) && removeManager.toRemove.contains(e)) {
-						removeManager.toRemove.remove(e);
-					} else if (!setI.contains(e)
-							&& !removeManager.toRemove.contains(e)) {
-						remove(e);
+					if (setI.contains(e) && toRemove.contains(e)) {
+						toRemove.remove(e);
+					} else if (!setI.contains(e)) {
+						toRemove.add(e);
+						removing = true;
 					}
 				}
 
@@ -193,83 +390,15 @@ public class Scene extends VisualElement {
 				e.restoreState(state);
 			}
 		}
+		dirty.addAll();
 	}
 
 	public synchronized void clear() {
-		for (final VisualElement e : removeManager.toRemove) {
-			removeManager.toRemove.remove(e);
-		}
+		toRemove.clear();
 		for (final Set<VisualElement> set : elements) {
 			set.clear();
 		}
-	}
-
-	private class RemoveManager {
-		public final Set<VisualElement> toRemove = new HashSet<VisualElement>();
-
-		private RemoveManager() {
-			// this thread wait until element ends its animation and then
-			// removes it from scene
-			new Thread(new Runnable() {
-				@Override
-				public void run() {
-					while (true) {
-						synchronized (Scene.this) {
-							// int poc = 0;
-							// for(Set<VisualElement> set : elements) poc +=
-							// set.size();
-							// System.out.println(toRemove.size());
-							// System.out.println("elemSIZE: " + poc);
-							// System.out.println("elemSIZE2: " +
-							// elements.get(5).size());
-							final Iterator<VisualElement> iterator = toRemove
-									.iterator();
-							while (iterator.hasNext()) {
-								final VisualElement element = iterator.next();
-								if (element.isAnimationDone()) {
-									iterator.remove();
-									if (element instanceof Node) {
-										// System.out.println("removed: " +
-										// ((Node) element).getKey());
-										// System.out.println("removed: " +
-										// element.getZDepth());
-										// System.out.println("removed: " +
-										// ((Node) element).state);
-									}
-									final Set<VisualElement> set = elements
-											.get(element.getZDepth());
-									set.remove(element);
-								}
-							}
-						}
-						synchronized (this) {
-							try {
-								wait(500);
-							} catch (final InterruptedException e) {
-								e.printStackTrace();
-							}
-						}
-					}
-				}
-			}).start();
-		}
-
-		public void add(VisualElement element, int zDepth) {
-			if (toRemove.contains(element)) {
-				toRemove.remove(element);
-			}
-			if (zDepth < 0) {
-				zDepth = 0;
-			}
-			if (zDepth >= MAXZ) {
-				zDepth = MAXZ - 1;
-			}
-			final Set<VisualElement> set = elements.get(zDepth);
-			set.add(element);
-		}
-
-		public void remove(VisualElement element) {
-			toRemove.add(element);
-		}
+		changed = true;
+		removing = false;
 	}
 }
@@ -68,6 +68,10 @@ public class ShadeSubtree extends VisualElement {
 
 	@Override
 	protected void move() {
+		// the shade follows the subtree and may cover any part of the screen
+		if (u.isMoving()) {
+			u.D.panel.scene.dirty.addAll();
+		}
 	}
 
 	@Override
@@ -27,7 +27,6 @@ import algvis.ui.view.View;
 
 public abstract class VisualElement implements StateEditable {
 	protected int zDepth;
-	protected final String hash = Integer.toString(hashCode());
 
 	protected VisualElement(int zDepth) {
 		this.zDepth = zDepth;
@@ -16,6 +16,9 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.aatree;
 
+import java.util.Stack;
+
+import algvis.core.visual.ZDepth;
 import algvis.ds.dictionaries.bst.BST;
 import algvis.ds.dictionaries.bst.BSTFind;
 import algvis.ds.dictionaries.bst.BSTNode;
@@ -51,6 +54,31 @@ public class AA extends BST {
 		start(new AADelete(this, x));
 	}
 
+	@Override
+	protected BSTNode newNode(int key) {
+		return new AANode(this, key, ZDepth.NODE);
+	}
+
+	@Override
+	protected void buildFrom(int[] sorted) {
+		super.buildFrom(sorted);
+		if (getRoot() == null) {
+			return;
+		}
+		final Stack<BSTNode> stack = new Stack<BSTNode>();
+		stack.push(getRoot());
+		while (!stack.isEmpty()) {
+			final BSTNode v = stack.pop();
+			v.setLevel(buildLevel(v));
+			if (v.getLeft() != null) {
+				stack.push(v.getLeft());
+			}
+			if (v.getRight() != null) {
+				stack.push(v.getRight());
+			}
+		}
+	}
+
 	public void setMode23(boolean set) {
 		mode23 = set;
 		// TODO reposition pokazi historiu (je to vobec potrebne?)
@@ -85,7 +113,7 @@ public class AA extends BST {
 	}
 
 	@Override
-	public Layout getLayout() {
+	public Layout getDefaultLayout() {
 		return Layout.COMPACT;
 	}
 }
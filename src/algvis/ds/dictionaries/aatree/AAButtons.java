@@ -28,6 +28,8 @@ import algvis.ui.VisPanel;
 
 public class AAButtons extends DictButtons implements ActionListener {
 	private static final long serialVersionUID = 5326663225787843118L;
+	/** option: 1 to show the tree as a 2-3 tree */
+	public static final int MODE23 = 1;
 	private ICheckBox B23;
 
 	public AAButtons(VisPanel M) {
@@ -46,7 +48,17 @@ public class AAButtons extends DictButtons implements ActionListener {
 	public void actionPerformed(ActionEvent evt) {
 		super.actionPerformed(evt);
 		if (evt.getSource() == B23) {
-			((AA) panel.D).setMode23(B23.isSelected());
+			changeOption(MODE23, B23.isSelected() ? 1 : 0);
+		}
+	}
+
+	@Override
+	public void setOption(int option, int value) {
+		if (option == MODE23) {
+			B23.setSelected(value != 0);
+			((AA) panel.D).setMode23(value != 0);
+		} else {
+			super.setOption(option, value);
 		}
 	}
 }
@@ -49,7 +49,7 @@ public class AANode extends BSTNode {
 
 	@Override
 	public void draw(View v) {
-		if (state == Node.INVISIBLE || getKey() == NULL) {
+		if (state == Node.INVISIBLE || getKey() == NULL || cull(v)) {
 			return;
 		}
 		drawBg(v);
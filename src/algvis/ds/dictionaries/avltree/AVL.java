@@ -16,8 +16,10 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.avltree;
 
+import algvis.core.visual.ZDepth;
 import algvis.ds.dictionaries.bst.BST;
 import algvis.ds.dictionaries.bst.BSTFind;
+import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ui.VisPanel;
 import algvis.ui.view.Layout;
 
@@ -49,7 +51,12 @@ public class AVL extends BST {
 	}
 
 	@Override
-	public Layout getLayout() {
+	protected BSTNode newNode(int key) {
+		return new AVLNode(this, key, ZDepth.NODE);
+	}
+
+	@Override
+	public Layout getDefaultLayout() {
 		return Layout.SIMPLE;
 	}
 }
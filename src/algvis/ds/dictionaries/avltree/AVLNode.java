@@ -17,12 +17,11 @@
 package algvis.ds.dictionaries.avltree;
 
 import java.awt.Color;
-import java.util.Hashtable;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ui.Fonts;
 import algvis.ui.view.View;
@@ -58,6 +57,7 @@ public class AVLNode extends BSTNode {
 
 	void setBalance(int bal) {
 		this.bal = bal;
+		changed();
 	}
 
 	@Override
@@ -68,7 +68,7 @@ public class AVLNode extends BSTNode {
 
 	@Override
 	public void draw(View V) {
-		if (state == Node.INVISIBLE || getKey() == NULL) {
+		if (state == Node.INVISIBLE || getKey() == NULL || cull(V)) {
 			return;
 		}
 		drawBg(V);
@@ -117,17 +117,14 @@ public class AVLNode extends BSTNode {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "bal", bal);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putInt(bal);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object bal = state.get(hash + "bal");
-		if (bal != null) {
-			this.bal = (Integer) HashtableStoreSupport.restore(bal);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		bal = r.getInt();
 	}
 }
@@ -16,6 +16,10 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.bst;
 
+import java.util.ArrayList;
+import java.util.Stack;
+
+import algvis.core.AlgorithmAdapter;
 import algvis.core.Dictionary;
 import algvis.core.StringUtils;
 import algvis.core.visual.ZDepth;
@@ -65,6 +69,71 @@ public class BST extends Dictionary implements LayoutListener, ClickListener {
 		start(new BSTDelete(this, x));
 	}
 
+	/**
+	 * A new node of the type used in this tree (used by buildFrom).
+	 */
+	protected BSTNode newNode(int key) {
+		return new BSTNode(this, key, ZDepth.NODE);
+	}
+
+	@Override
+	protected int[] keys() {
+		final ArrayList<Integer> r = new ArrayList<Integer>();
+		final Stack<BSTNode> stack = new Stack<BSTNode>();
+		BSTNode v = getRoot();
+		while (v != null || !stack.isEmpty()) {
+			while (v != null) {
+				stack.push(v);
+				v = v.getLeft();
+			}
+			v = stack.pop();
+			r.add(v.getKey());
+			v = v.getRight();
+		}
+		final int[] keys = new int[r.size()];
+		for (int i = 0; i < keys.length; ++i) {
+			keys[i] = r.get(i);
+		}
+		return keys;
+	}
+
+	/**
+	 * Build a perfectly balanced tree: the middle key goes to the root, the
+	 * halves are built recursively. All levels except the last one are full.
+	 */
+	@Override
+	protected void buildFrom(int[] sorted) {
+		if (sorted.length == 0) {
+			setRoot(null);
+		} else {
+			setRoot(build(sorted, 0, sorted.length - 1));
+			getRoot().calcTree();
+		}
+		reposition();
+	}
+
+	private BSTNode build(int[] sorted, int lo, int hi) {
+		final int mid = (lo + hi) / 2;
+		final BSTNode v = newNode(sorted[mid]);
+		if (lo < mid) {
+			v.linkLeft(build(sorted, lo, mid - 1));
+		}
+		if (mid < hi) {
+			v.linkRight(build(sorted, mid + 1, hi));
+		}
+		return v;
+	}
+
+	/**
+	 * The level of a node in a tree built by buildFrom, i.e., the number of
+	 * full levels of its subtree: floor(lg(size+1)). The right child has the
+	 * same level only if the parent's subtree is perfect plus one node, so
+	 * these levels make a valid AA-tree (and red-black tree).
+	 */
+	protected static int buildLevel(BSTNode v) {
+		return 31 - Integer.numberOfLeadingZeros(v.size + 1);
+	}
+
 	@Override
 	public void clear() {
 		if (getRoot() != null) {
@@ -85,7 +154,7 @@ public class BST extends Dictionary implements LayoutListener, ClickListener {
 					+ Languages.getString("opt") + ";   "
 					+ Languages.getString("avedepth") + ": 0";
 		} else {
-			getRoot().calcTree();
+			getRoot().calcChanged();
 			return Languages.getString("size")
 					+ ": "
 					+ getRoot().size
@@ -196,9 +265,18 @@ public class BST extends Dictionary implements LayoutListener, ClickListener {
 		panel.screen.V.setBounds(x1, y1, x2, y2);
 	}
 
+	/**
+	 * Lay the tree out again as an operation of its own, so that it does not
+	 * run concurrently with algorithms and can be undone.
+	 */
 	@Override
 	public void changeLayout() {
-		reposition();
+		start(new AlgorithmAdapter(panel) {
+			@Override
+			public void runAlgorithm() throws InterruptedException {
+				reposition();
+			}
+		});
 	}
 
 	@Override
@@ -213,7 +291,7 @@ public class BST extends Dictionary implements LayoutListener, ClickListener {
 	}
 
 	@Override
-	public Layout getLayout() {
+	public Layout getDefaultLayout() {
 		return Layout.SIMPLE;
 	}
 }
@@ -27,6 +27,8 @@ import algvis.ui.VisPanel;
 
 public class BSTButtons extends DictButtons {
 	private static final long serialVersionUID = -6884955717665753504L;
+	/** option: 1 to show the order of the nodes */
+	public static final int SHOW_ORDER = 1;
 	private ICheckBox order;
 
 	public BSTButtons(VisPanel M) {
@@ -45,7 +47,17 @@ public class BSTButtons extends DictButtons {
 	public void actionPerformed(ActionEvent evt) {
 		super.actionPerformed(evt);
 		if (evt.getSource() == order) {
-			((BST) panel.D).order = order.isSelected();
+			changeOption(SHOW_ORDER, order.isSelected() ? 1 : 0);
+		}
+	}
+
+	@Override
+	public void setOption(int option, int value) {
+		if (option == SHOW_ORDER) {
+			order.setSelected(value != 0);
+			((BST) panel.D).order = value != 0;
+		} else {
+			super.setOption(option, value);
 		}
 	}
 }
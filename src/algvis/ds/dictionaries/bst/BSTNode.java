@@ -18,13 +18,18 @@ package algvis.ds.dictionaries.bst;
 
 import java.awt.Color;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.Hashtable;
+import java.util.List;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
-import algvis.core.NodePair;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.Tile;
+import algvis.core.TreeWalk;
+import algvis.core.history.StateRecord;
+import algvis.core.visual.DirtyRegion;
 import algvis.ui.Fonts;
 import algvis.ui.view.Layout;
 import algvis.ui.view.View;
@@ -33,13 +38,35 @@ public class BSTNode extends Node {
 	private BSTNode left = null, right = null, parent = null;
 	public int leftw, rightw;
 
-	// variables for the Reingold-Tilford layout
-	private int offset = 0; // offset from parent node
 	private int level; // distance to root
-	private boolean thread = false; // is this node threaded?
+
+	/*
+	 * The layout, kept between calls of reposition(): relx is the
+	 * x-coordinate relative to the parent and lheight is the height of the
+	 * subtree. In the compact layout, lspan/rspan are the distances to the
+	 * leftmost/rightmost node of the subtree, lext/rext (lextx/rextx to the
+	 * right of this node) are the leftmost/rightmost nodes on its lowest
+	 * level, and the threads lthr/rthr (lthrDx/rthrDx to the right of this
+	 * node) continue the left/right contour of some subtree below this leaf.
+	 * A subtree is laid out again only if it is dirty (some link in it has
+	 * changed), and its nodes are sent to their places again only if it is
+	 * not placed (some node in it has been sent elsewhere).
+	 */
+	private int relx = 0, lheight = 1, lspan = 0, rspan = 0;
+	private BSTNode lext = this, rext = this, lthr = null, rthr = null;
+	private int lextx = 0, rextx = 0, lthrDx = 0, rthrDx = 0;
+	private Layout laidOut = null;
+	private boolean dirty = true, placed = false;
 
 	// statistics
 	public int size = 1, height = 1, sumh = 1;
+	private boolean stale = true; // some link in the subtree has changed
+
+	// the box of the subtree with the nodes at their targets (tox, toy); it
+	// is valid if boxed, i.e., no node in the subtree has been sent elsewhere
+	// and no link in it has changed since it was computed
+	private final Rectangle2D box = new Rectangle2D.Double();
+	private boolean boxed = false;
 
 	protected BSTNode(DataStructure D, int key, int x, int y) {
 		super(D, key, x, y);
@@ -54,33 +81,23 @@ public class BSTNode extends Node {
 	}
 
 	public BSTNode getLeft() {
-		if (thread) {
-			return null;
-		} else {
-			return left;
-		}
+		return left;
 	}
 
 	public void setLeft(BSTNode left) {
-		if (thread) {
-			thread = false;
-			right = null;
+		if (this.left != left) {
+			invalidate();
 		}
 		this.left = left;
 	}
 
 	public BSTNode getRight() {
-		if (thread) {
-			return null;
-		} else {
-			return right;
-		}
+		return right;
 	}
 
 	public BSTNode setRight(BSTNode right) {
-		if (thread) {
-			thread = false;
-			left = null;
+		if (this.right != right) {
+			invalidate();
 		}
 		this.right = right;
 		return right;
@@ -91,11 +108,63 @@ public class BSTNode extends Node {
 	}
 
 	public BSTNode setParent(BSTNode parent) {
+		if (parent != null && this.parent != parent) {
+			parent.invalidate();
+		}
 		return this.parent = parent;
 	}
 
+	/**
+	 * Mark this node and its ancestors as dirty, not placed, stale, and not
+	 * boxed: the subtrees have to be laid out and their statistics and boxes
+	 * calculated again (and checked for cached images, see changed).
+	 */
+	private void invalidate() {
+		changed();
+		BSTNode w = this;
+		while (w != null && (!w.dirty || w.placed || !w.stale || w.boxed)) {
+			w.dirty = true;
+			w.placed = false;
+			w.stale = true;
+			w.boxed = false;
+			w = w.parent;
+		}
+	}
+
+	/**
+	 * Mark this node and its ancestors as not placed and not boxed: the
+	 * layout has not changed, but some node has been sent elsewhere.
+	 */
+	private void unplace() {
+		BSTNode w = this;
+		while (w != null && (w.placed || w.boxed)) {
+			w.placed = false;
+			w.boxed = false;
+			w = w.parent;
+		}
+	}
+
+	/**
+	 * Mark this node and its ancestors as not boxed; the ancestors are being
+	 * placed, so their layout is kept (see placeNode).
+	 */
+	private void unbox() {
+		BSTNode w = this;
+		while (w != null && w.boxed) {
+			w.boxed = false;
+			w = w.parent;
+		}
+	}
+
+	@Override
+	public void goTo(int tox, int toy) {
+		super.goTo(tox, toy);
+		unplace();
+	}
+
 	public void setLevel(int level) {
 		this.level = level;
+		changed();
 	}
 
 	public int getLevel() {
@@ -207,18 +276,43 @@ public class BSTNode extends Node {
 		sumh = lsh + rsh + size;
 	}
 
+	/**
+	 * Calculate the height, size, and sum of heights of the nodes whose
+	 * subtrees have changed since the last call. These are the ancestors of
+	 * the changed links, so after an operation this takes time proportional
+	 * to the height of the tree (and needs no recursion).
+	 */
+	public void calcChanged() {
+		final List<BSTNode> changed = new ArrayList<BSTNode>();
+		if (stale) {
+			changed.add(this);
+		}
+		for (int i = 0; i < changed.size(); ++i) {
+			final BSTNode w = changed.get(i);
+			if (w.left != null && w.left.stale) {
+				changed.add(w.left);
+			}
+			if (w.right != null && w.right.stale) {
+				changed.add(w.right);
+			}
+		}
+		// children come after their parents in the list
+		for (int i = changed.size() - 1; i >= 0; --i) {
+			final BSTNode w = changed.get(i);
+			w.calc();
+			w.stale = false;
+		}
+	}
+
 	/**
 	 * Calculate the height, size, and sum of heights for all the nodes in this
-	 * subtree (recursively bottom-up).
+	 * subtree (bottom-up).
 	 */
 	public void calcTree() {
-		if (getLeft() != null) {
-			getLeft().calcTree();
+		final List<BSTNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).calc();
 		}
-		if (getRight() != null) {
-			getRight().calcTree();
-		}
-		calc();
 	}
 
 	public void setArc() {
@@ -229,90 +323,264 @@ public class BSTNode extends Node {
 
 	public void drawTree(View v) {
 		i = 0;
-		drawTree2(v);
+		Tile.update(this);
+		drawTree2(v, true);
 	}
 
-	private void drawTree2(View v) {
-		if (state != INVISIBLE && parent != null) {
-			v.setColor(Color.black);
-			v.drawLine(x, y, parent.x, parent.y);
-		}
-		if (getLeft() != null) {
-			// System.out.println("kreslim lavy " + getLeft().key + " " +
-			// this.key);
-			getLeft().drawTree2(v);
-		}
-		if (D instanceof BST && ((BST) D).order) { // && D.panel.S.layout ==
-													// Layout.SIMPLE
-			v.setColor(Color.LIGHT_GRAY);
-			++i;
-			if (i % 10 == 0) {
-				v.drawLine(x, y, x, -22);
+	@Override
+	protected void drawSubtree(View v) {
+		drawTree2(v, false);
+	}
+
+	// what to do with a node on the stack of drawTree2
+	private static final int ENTER = 0, EXPAND = 1, RULER = 2, DRAW = 3;
+
+	/**
+	 * Draw the edges of the subtree first (see drawEdges) and then the nodes
+	 * in order: the left subtree, the ruler, the right subtree, and the node
+	 * itself. A subtree is drawn from a cached image if there is one. The
+	 * recursion is replaced by a stack, so that degenerate trees do not
+	 * overflow the call stack.
+	 * 
+	 * @param enter
+	 *            whether to enter this subtree (or only expand it)
+	 */
+	private void drawTree2(View v, boolean enter) {
+		// the ruler counts the nodes, so it is drawn node by node
+		final boolean ruler = D instanceof BST && ((BST) D).order;
+		drawEdges(v, enter, ruler);
+		final List<BSTNode> nodes = new ArrayList<BSTNode>();
+		final List<Integer> todo = new ArrayList<Integer>();
+		nodes.add(this);
+		todo.add(enter ? ENTER : EXPAND);
+		while (!nodes.isEmpty()) {
+			final BSTNode w = nodes.remove(nodes.size() - 1);
+			final int what = todo.remove(todo.size() - 1);
+			if (what == ENTER) {
+				if (ruler || !Tile.draw(w, v)) {
+					nodes.add(w);
+					todo.add(EXPAND);
+				}
+			} else if (what == EXPAND) {
+				// pushed in the reverse order
+				nodes.add(w);
+				todo.add(DRAW);
+				if (w.getRight() != null) {
+					nodes.add(w.getRight());
+					todo.add(ENTER);
+				}
+				if (ruler) {
+					nodes.add(w);
+					todo.add(RULER);
+				}
+				if (w.getLeft() != null) {
+					nodes.add(w.getLeft());
+					todo.add(ENTER);
+				}
+			} else if (what == RULER) {
+				w.drawRuler(v);
 			} else {
-				v.drawLine(x, y, x, -20);
+				w.draw(v);
 			}
-			if (i % 10 == 0) {
-				v.drawString("" + i, x, -29, Fonts.NORMAL);
-			} else if (i % 10 == 5) {
-				v.drawString("5", x, -27, Fonts.NORMAL);
-			} else {
-				v.drawString("" + i % 10, x, -27, Fonts.SMALL);
+		}
+	}
+
+	/**
+	 * Draw the edges of the subtree (and the edge to the parent if entering
+	 * it) before any node, so that they are drawn in one color and batched
+	 * (see View.drawLine); the nodes drawn later cover their ends. The
+	 * subtrees drawn from cached images are skipped.
+	 */
+	private void drawEdges(View v, boolean enter, boolean ruler) {
+		v.setColor(Color.black);
+		if (enter) {
+			if (state != INVISIBLE && parent != null) {
+				v.drawLine(x, y, parent.x, parent.y);
+			}
+			if (!ruler && Tile.isCached(this, v)) {
+				return;
 			}
 		}
-		if (getRight() != null) {
-			getRight().drawTree2(v);
+		final List<BSTNode> stack = new ArrayList<BSTNode>();
+		stack.add(this);
+		while (!stack.isEmpty()) {
+			final BSTNode w = stack.remove(stack.size() - 1);
+			for (int i = 0; i < 2; ++i) {
+				final BSTNode c = i == 0 ? w.getLeft() : w.getRight();
+				if (c == null) {
+					continue;
+				}
+				if (c.state != INVISIBLE) {
+					v.drawLine(c.x, c.y, w.x, w.y);
+				}
+				if (ruler || !Tile.isCached(c, v)) {
+					stack.add(c);
+				}
+			}
 		}
-		draw(v);
 	}
 
-	public void moveTree() {
+	/**
+	 * Draw the mark of this node (the i-th one in order) on the ruler.
+	 */
+	private void drawRuler(View v) {
+		v.setColor(Color.LIGHT_GRAY);
+		++i;
+		if (i % 10 == 0) {
+			v.drawLine(x, y, x, -22);
+		} else {
+			v.drawLine(x, y, x, -20);
+		}
+		if (i % 10 == 0) {
+			v.drawNumber(i, x, -29, Fonts.NORMAL);
+		} else if (i % 10 == 5) {
+			v.drawString("5", x, -27, Fonts.NORMAL);
+		} else {
+			v.drawNumber(i % 10, x, -27, Fonts.SMALL);
+		}
+	}
+
+	@Override
+	protected void getChildren(List<Node> list) {
 		if (getLeft() != null) {
-			getLeft().moveTree();
+			list.add(getLeft());
 		}
 		if (getRight() != null) {
-			getRight().moveTree();
+			list.add(getRight());
 		}
-		move();
 	}
 
-	public void shiftTree(int dx, int dy) {
+	@Override
+	protected void markEdges(DirtyRegion dirty) {
+		if (getParent() != null) {
+			dirty.add(getParent().x, getParent().y, 2);
+		}
 		if (getLeft() != null) {
-			getLeft().shiftTree(dx, dy);
+			dirty.add(getLeft().x, getLeft().y, 2);
 		}
 		if (getRight() != null) {
-			getRight().shiftTree(dx, dy);
+			dirty.add(getRight().x, getRight().y, 2);
+		}
+		if (D instanceof BST && ((BST) D).order) {
+			// the ruler (see drawRuler)
+			dirty.add(x, -29, Node.RADIUS);
 		}
-		goTo(tox + dx, toy + dy);
 	}
 
+	public void moveTree() {
+		final List<BSTNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).move();
+		}
+	}
+
+	public void shiftTree(int dx, int dy) {
+		for (final BSTNode w : TreeWalk.topDown(this)) {
+			w.goTo(w.tox + dx, w.toy + dy);
+		}
+	}
+
+	/**
+	 * The box of the subtree with the nodes at their targets. Only the boxes
+	 * of the ancestors of the nodes which have been sent elsewhere or got new
+	 * children since the last call are computed again.
+	 */
 	@Override
 	public Rectangle2D getBoundingBox() {
-		Rectangle2D retVal = super.getBoundingBox();
+		final List<BSTNode> changed = new ArrayList<BSTNode>();
+		if (!boxed) {
+			changed.add(this);
+		}
+		for (int i = 0; i < changed.size(); ++i) {
+			final BSTNode w = changed.get(i);
+			if (w.left != null && !w.left.boxed) {
+				changed.add(w.left);
+			}
+			if (w.right != null && !w.right.boxed) {
+				changed.add(w.right);
+			}
+		}
+		// children come after their parents in the list
+		for (int i = changed.size() - 1; i >= 0; --i) {
+			changed.get(i).rebound();
+		}
+		return (Rectangle2D) box.clone();
+	}
+
+	/**
+	 * Compute the box of the subtree assuming the boxes of the children are
+	 * valid.
+	 */
+	private void rebound() {
+		final int r = Node.RADIUS + 1;
+		box.setRect(tox - r, toy - r, 2 * r, 2 * r);
 		if (left != null) {
-			retVal = retVal.createUnion(left.getBoundingBox());
+			box.add(left.box);
 		}
 		if (right != null) {
-			retVal = retVal.createUnion(right.getBoundingBox());
+			box.add(right.box);
 		}
-		return retVal;
+		boxed = true;
 	}
 
+	/**
+	 * End the animation of every node of the subtree. The screen asks for
+	 * this (and isAnimationDone) every frame, so the subtree is walked depth
+	 * first with a stack of the children still to visit rather than listed
+	 * first, and the walk is bounded as in TreeWalk.
+	 */
 	@Override
 	public void endAnimation() {
-		super.endAnimation();
-		if (left != null) {
-			left.endAnimation();
-		}
-		if (right != null) {
-			right.endAnimation();
+		final int limit = TreeWalk.limit(this);
+		final List<BSTNode> stack = new ArrayList<BSTNode>();
+		stack.add(this);
+		for (int n = 1; !stack.isEmpty(); ++n) {
+			if (n > limit) {
+				throw new ConcurrentModificationException();
+			}
+			final BSTNode w = stack.remove(stack.size() - 1);
+			w.endNodeAnimation();
+			pushChildren(stack, w);
 		}
 	}
 
+	private void endNodeAnimation() {
+		super.endAnimation();
+	}
+
+	/**
+	 * @return whether no node of the subtree moves any more; the walk stops
+	 *         at the first one that does
+	 */
 	@Override
 	public boolean isAnimationDone() {
-		return super.isAnimationDone()
-				&& (left == null || left.isAnimationDone())
-				&& (right == null || right.isAnimationDone());
+		final int limit = TreeWalk.limit(this);
+		final List<BSTNode> stack = new ArrayList<BSTNode>();
+		stack.add(this);
+		for (int n = 1; !stack.isEmpty(); ++n) {
+			if (n > limit) {
+				throw new ConcurrentModificationException();
+			}
+			final BSTNode w = stack.remove(stack.size() - 1);
+			if (!w.isNodeAnimationDone()) {
+				return false;
+			}
+			pushChildren(stack, w);
+		}
+		return true;
+	}
+
+	private static void pushChildren(List<BSTNode> stack, BSTNode w) {
+		if (w.getRight() != null) {
+			stack.add(w.getRight());
+		}
+		if (w.getLeft() != null) {
+			stack.add(w.getLeft());
+		}
+	}
+
+	private boolean isNodeAnimationDone() {
+		return super.isAnimationDone();
 	}
 
 	/**
@@ -335,53 +603,30 @@ public class BSTNode extends Node {
 	}
 
 	/**
-	 * Rebox the whole subtree calculating the widths recursively bottom-up.
+	 * Rebox the whole subtree calculating the widths bottom-up.
 	 */
 	public void reboxTree() {
-		if (getLeft() != null) {
-			getLeft().reboxTree();
-		}
-		if (getRight() != null) {
-			getRight().reboxTree();
-		}
-		rebox();
-	}
-
-	/**
-	 * Calculate the coordinates of each node from the widths of boxes around
-	 * them and direct the nodes to their new positions.
-	 */
-	private void repos() {
-		if (isRoot()) {
-			goToRoot();
-			D.x1 = -leftw;
-			D.x2 = rightw;
-			D.y2 = this.toy;
-		}
-		if (this.toy > D.y2) {
-			D.y2 = this.toy;
-		}
-		if (getLeft() != null) {
-			getLeft().goTo(this.tox - getLeft().rightw,
-					this.toy + DataStructure.minsepy);
-			getLeft().repos();
-		}
-		if (getRight() != null) {
-			getRight().goTo(this.tox + getRight().leftw,
-					this.toy + DataStructure.minsepy);
-			getRight().repos();
+		final List<BSTNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).rebox();
 		}
 	}
 
 	public void repos(int x, int y) {
 		goTo(x, y);
-		if (getLeft() != null) {
-			getLeft().repos(this.tox - getLeft().rightw,
-					this.toy + DataStructure.minsepy);
-		}
-		if (getRight() != null) {
-			getRight().repos(this.tox + getRight().leftw,
-					this.toy + DataStructure.minsepy);
+		// parents come before their children
+		for (final BSTNode w : TreeWalk.topDown(this)) {
+			if (w.getLeft() != null) {
+				w.getLeft().goTo(w.tox - w.getLeft().rightw,
+						w.toy + DataStructure.minsepy);
+			}
+			if (w.getRight() != null) {
+				w.getRight().goTo(w.tox + w.getRight().leftw,
+						w.toy + DataStructure.minsepy);
+			}
+			if (w != this && w.toy > D.y2) {
+				D.y2 = w.toy;
+			}
 		}
 		if (isRoot()) {
 			D.x1 = x - leftw;
@@ -393,237 +638,252 @@ public class BSTNode extends Node {
 		}
 	}
 
+	/**
+	 * Lay out the subtree rooted at this node and direct the nodes to their
+	 * new positions. Only the subtrees in which some link has changed since
+	 * the last call are laid out again, and only the subtrees in which some
+	 * node is not at its place are visited, so after a rotation this takes
+	 * time proportional to the height of the tree and the number of nodes
+	 * that move.
+	 */
 	public void reposition() {
-		if (D.getLayout() == Layout.SIMPLE) { // simple layout
-			reboxTree();
-			repos();
+		final Layout layout = D.getLayout();
+		layout(layout);
+		if (layout == Layout.SIMPLE) { // simple layout
+			if (isRoot()) {
+				place(DataStructure.rootx, DataStructure.rooty);
+				D.x1 = -leftw;
+				D.x2 = rightw;
+				D.y2 = this.toy;
+			} else {
+				place(tox, toy);
+			}
 		} else { // Reingold-Tilford layout
-			RTThreads();
-			RTPreposition();
-			RTPetrification(0, 0);
-			reboxTree();
+			place(0, 0);
+			if (-lspan < D.x1) {
+				D.x1 = -lspan;
+			}
+			if (rspan > D.x2) {
+				D.x2 = rspan;
+			}
+			if (toy < D.y1) {
+				// this case should be always false
+				D.y1 = toy;
+			}
+		}
+		final int bottom = toy + (lheight - 1) * DataStructure.minsepy;
+		if (bottom > D.y2) {
+			D.y2 = bottom;
 		}
 	}
 
-	private void RTThreads() {
-		if (thread) {
-			thread = false;
-			left = null;
-			right = null;
-		}
-		if (getLeft() != null) {
-			left.RTThreads();
+	/**
+	 * Calculate the widths of the boxes (see rebox) and the coordinates of
+	 * the children relative to their parents in the subtrees that are dirty
+	 * or were laid out differently.
+	 */
+	private void layout(Layout layout) {
+		final List<BSTNode> changed = new ArrayList<BSTNode>();
+		if (dirty || laidOut != layout) {
+			changed.add(this);
+		}
+		for (int k = 0; k < changed.size(); ++k) {
+			final BSTNode w = changed.get(k);
+			if (w.left != null && (w.left.dirty || w.left.laidOut != layout)) {
+				changed.add(w.left);
+			}
+			if (w.right != null
+					&& (w.right.dirty || w.right.laidOut != layout)) {
+				changed.add(w.right);
+			}
 		}
-		if (getRight() != null) {
-			right.RTThreads();
+		// children come after their parents in the list
+		for (int k = changed.size() - 1; k >= 0; --k) {
+			changed.get(k).layoutNode(layout);
 		}
 	}
 
 	/**
-	 * Find the node at coordinates (x,y). This is used to identify the node
-	 * that has been clicked by user.
+	 * Lay out this node assuming its children have been laid out.
 	 */
-	public BSTNode find(int x, int y) {
-		if (inside(x, y)) {
-			return this;
-		}
-		if (getLeft() != null) {
-			final BSTNode tmp = getLeft().find(x, y);
-			if (tmp != null) {
-				return tmp;
+	private void layoutNode(Layout layout) {
+		rebox();
+		if (layout == Layout.SIMPLE) {
+			lheight = 1;
+			if (left != null) {
+				left.relx = -left.rightw;
+				lheight = left.lheight + 1;
 			}
+			if (right != null) {
+				right.relx = right.leftw;
+				lheight = Math.max(lheight, right.lheight + 1);
+			}
+		} else {
+			RTMerge();
 		}
-		if (getRight() != null) {
-			return getRight().find(x, y);
-		}
-		return null;
+		laidOut = layout;
+		dirty = false;
+		placed = false;
 	}
 
 	/**
-	 * Set up the threads with the help of extreme nodes. A node is "extreme"
-	 * when it is the leftmost/rightmost in the lowest level.
-	 * 
-	 * 1. work out left and right subtree 2. get extreme nodes from the left and
-	 * right subtree 3. calculate the offset from parent & set a new thread if
-	 * required
-	 * 
-	 * @return the leftmost and the rightmost node on the deepest level of the
-	 *         subtree rooted at this node
+	 * The Reingold-Tilford step: put the subtrees of the children as close to
+	 * each other as their contours allow, and thread the contour of the lower
+	 * subtree into the contour of the deeper one.
 	 */
-	private NodePair<BSTNode> RTPreposition() {
-		final NodePair<BSTNode> result = new NodePair<BSTNode>();
-		NodePair<BSTNode> fromLeftSubtree = null, fromRightSubtree = null;
-		offset = 0;
-
-		// 1. & 2. work out left & right subtree
-		if (getLeft() != null) {
-			fromLeftSubtree = getLeft().RTPreposition();
-		}
-		if (getRight() != null) {
-			fromRightSubtree = getRight().RTPreposition();
-		}
-		// 3. examine this node
-		if (isLeaf()) {
-			if (!isRoot()) {
-				offset = isLeft() ? -DataStructure.minsepx / 2
-						: +DataStructure.minsepx / 2;
-			}
-			result.left = this;
-			result.right = this;
-		} else { // This is not a leaf; at least one subtree is non-empty.
-			/*
-			 * If one subtree is empty, it is not necessary to make a new
-			 * thread. A proper offset must be set.
-			 */
-			if (getLeft() == null) {
-				getRight().offset = DataStructure.minsepx / 2;
-				result.left = fromRightSubtree.left;
-				result.right = fromRightSubtree.right;
-				return result;
-			}
-
-			if (getRight() == null) {
-				getLeft().offset = -DataStructure.minsepx / 2;
-				result.left = fromLeftSubtree.left;
-				result.right = fromLeftSubtree.right;
-				return result;
-			}
-
-			// Calculate offsets for the left and the right son.
-			int loffset = 0; // offset of this node from the right contour of
-								// the left subtree.
-			int roffset = 0; // offset of this node from the left contour of the
-								// right subtree.
-			BSTNode L = getLeft();
-			BSTNode R = getRight();
+	private void RTMerge() {
+		final int sep = DataStructure.minsepx;
+		if (left != null && right != null) {
 			/*
-			 * First, left.offset is 0 and only right.offset accumulates. The
-			 * offsets are corrected afterwards (this way is easier to
-			 * generalize to m-ary trees). Note that offsets can be negative.
+			 * traverse the right contour of the left subtree and the left
+			 * contour of the right subtree; lx and rx are the distances of L
+			 * and R from the left and the right son
 			 */
-			getLeft().offset = 0;
-			getRight().offset = 0;
-
-			// traverse the right contour of the left subtree and the left
-			// counour of the right subtree
-			while ((L != null) && (R != null)) {
-				/*
-				 * left.offset + loffset is the horizontal distance from L to
-				 * this node. Similarly, right.offset + roffset is the
-				 * horizontal distance from R to this node.
-				 */
-				final int distance = (loffset + DataStructure.minsepx - roffset);
-				if (distance > 0) {
-					getRight().offset += distance;
-					roffset += distance;
-				}
-				/*
-				 * When passes through thread there will be for sure incorrect
-				 * offset! So Elevator calculate this new offset. In algorithm
-				 * TR published by Reingold this value is already calculated.
-				 */
-				boolean LwasThread = L.thread;
-				final boolean RwasThread = R.thread;
-				L = (L.right != null) ? L.right : L.left;
-				if (L != null) {
-					loffset += L.offset;
-				}
-				R = (R.left != null) ? R.left : R.right;
-				if (R != null) {
-					roffset += R.offset;
-				}
+			final int lh = left.lheight, rh = right.lheight;
+			BSTNode L = left, R = right;
+			int lx = 0, rx = 0, distance = sep;
+			for (int d = 1; d < Math.min(lh, rh); ++d) {
+				lx += L.nextRightDx();
+				L = L.nextRight();
+				rx += R.nextLeftDx();
+				R = R.nextLeft();
+				distance = Math.max(distance, lx + sep - rx);
+			}
+			right.relx = distance / 2;
+			left.relx = -right.relx;
+
+			// make a new thread iff one subtree is deeper than the other
+			if (rh > lh) {
+				rx += R.nextLeftDx();
+				R = R.nextLeft();
+				left.lext.lthr = R;
+				left.lext.lthrDx = right.relx + rx
+						- (left.relx + left.lextx);
+			} else if (lh > rh) {
+				lx += L.nextRightDx();
+				L = L.nextRight();
+				right.rext.rthr = L;
+				right.rext.rthrDx = left.relx + lx
+						- (right.relx + right.rextx);
+			}
+		} else if (left != null) {
+			left.relx = -sep / 2;
+		} else if (right != null) {
+			right.relx = sep / 2;
+		}
 
-				BSTNode Elevator = null;
-				if (LwasThread) {
-					LwasThread = false;
-					loffset = 0;
-					Elevator = L;
-					while (Elevator != this) {
-						loffset += Elevator.offset;
-						Elevator = Elevator.getParent();
-					}
-				}
-				if (RwasThread) {
-					roffset = 0;
-					Elevator = R;
-					while (Elevator != this) {
-						roffset += Elevator.offset;
-						Elevator = Elevator.getParent();
-					}
-				}
+		lheight = 1;
+		lspan = rspan = 0;
+		lext = rext = this;
+		lextx = rextx = 0;
+		if (left != null) {
+			lheight = left.lheight + 1;
+			lspan = Math.max(0, left.lspan - left.relx);
+			rspan = Math.max(0, left.relx + left.rspan);
+			lext = left.lext;
+			lextx = left.relx + left.lextx;
+			rext = left.rext;
+			rextx = left.relx + left.rextx;
+		}
+		if (right != null) {
+			lspan = Math.max(lspan, right.lspan - right.relx);
+			rspan = Math.max(rspan, right.relx + right.rspan);
+			if (right.lheight + 1 > lheight) {
+				lext = right.lext;
+				lextx = right.relx + right.lextx;
+			}
+			if (right.lheight + 1 >= lheight) {
+				rext = right.rext;
+				rextx = right.relx + right.rextx;
 			}
+			lheight = Math.max(lheight, right.lheight + 1);
+		}
+	}
 
-			/*
-			 * Now, distances should be 0 for left and some value for right.. So
-			 * lets change it
-			 */
+	/**
+	 * @return the next node on the left contour below this node
+	 */
+	private BSTNode nextLeft() {
+		return left != null ? left : right != null ? right : lthr;
+	}
 
-			getRight().offset /= 2;
-			getLeft().offset = -getRight().offset;
+	private int nextLeftDx() {
+		return left != null ? left.relx : right != null ? right.relx : lthrDx;
+	}
 
-			/*
-			 * General switch of making a new thread: we want to make a thread
-			 * iff one pair of extremes is deeper than others. We assume that
-			 * threads from subtrees are set properly.
-			 */
+	/**
+	 * @return the next node on the right contour below this node
+	 */
+	private BSTNode nextRight() {
+		return right != null ? right : left != null ? left : rthr;
+	}
 
-			if ((R != null) && (L == null)) { // the right subtree is deeper
-												// than the left subtree
-				fromLeftSubtree.left.thread = true;
-				fromLeftSubtree.left.right = R;
-				result.left = fromRightSubtree.left;
-				result.right = fromRightSubtree.right;
-			} else if ((L != null) && (R == null)) { // the left subtree is
-														// deeper than the right
-														// subtree
-				fromRightSubtree.right.thread = true;
-				fromRightSubtree.right.left = L;
-				result.left = fromLeftSubtree.left;
-				result.right = fromLeftSubtree.right;
-			} else if ((L == null) && (R == null)) { // both subtrees have the
-														// same height
-				result.left = fromLeftSubtree.left;
-				result.right = fromRightSubtree.right;
-			}
+	private int nextRightDx() {
+		return right != null ? right.relx : left != null ? left.relx : rthrDx;
+	}
 
+	/**
+	 * Direct the nodes of the subtree to their positions, skipping the
+	 * subtrees that are already there.
+	 * 
+	 * @param px
+	 *            x-coordinate of this node
+	 * @param py
+	 *            y-coordinate of this node
+	 */
+	private void place(int px, int py) {
+		final List<BSTNode> stack = new ArrayList<BSTNode>();
+		if (placeNode(px, py)) {
+			stack.add(this);
+		}
+		while (!stack.isEmpty()) {
+			final BSTNode w = stack.remove(stack.size() - 1);
+			final int cy = w.toy + DataStructure.minsepy;
+			if (w.left != null && w.left.placeNode(w.tox + w.left.relx, cy)) {
+				stack.add(w.left);
+			}
+			if (w.right != null
+					&& w.right.placeNode(w.tox + w.right.relx, cy)) {
+				stack.add(w.right);
+			}
 		}
-		return result;
 	}
 
 	/**
-	 * Calculate the absolute coordinates from the relative ones and dispose the
-	 * threads.
+	 * Direct this node to [px,py] unless its whole subtree is there.
 	 * 
-	 * @param x
-	 *            real x coordinate of parent node
+	 * @return whether the children have to be placed too
 	 */
-	private void RTPetrification(int x, int y) {
-		goTo(x + offset, y);
-		if (tox < D.x1) {
-			D.x1 = tox;
+	private boolean placeNode(int px, int py) {
+		if (placed && tox == px && toy == py) {
+			return false;
 		}
-		if (tox > D.x2) {
-			D.x2 = tox;
-		}
-		if (toy < D.y1) {
-			// this case should be always false
-			D.y1 = toy;
-		}
-		if (toy > D.y2) {
-			D.y2 = toy;
+		if (tox != px || toy != py || (steps == 0 && (x != px || y != py))) {
+			super.goTo(px, py);
+			unbox();
 		}
+		placed = true;
+		return true;
+	}
 
-		if (thread) {
-			// thread = false;
-			// setLeft(null);
-			// setRight(null);
-		}
-		if (getLeft() != null) {
-			getLeft().RTPetrification(tox, y + DataStructure.minsepy);
-		}
-		if (getRight() != null) {
-			getRight().RTPetrification(tox, y + DataStructure.minsepy);
+	/**
+	 * Find the node at coordinates (x,y). This is used to identify the node
+	 * that has been clicked by user.
+	 */
+	public BSTNode find(int x, int y) {
+		// only the nodes near the point are candidates (see NodeGrid)
+		for (final Node w : D.grid.at(x, y)) {
+			if (w instanceof BSTNode) {
+				BSTNode u = (BSTNode) w;
+				while (u != null && u != this) {
+					u = u.getParent();
+				}
+				if (u == this) {
+					return (BSTNode) w;
+				}
+			}
 		}
+		return null;
 	}
 
 	/**
@@ -632,70 +892,47 @@ public class BSTNode extends Node {
 	 * @param color
 	 */
 	public void subtreeColor(NodeColor color) {
-		setColor(color);
-		if (getLeft() != null) {
-			getLeft().subtreeColor(color);
-		}
-		if (getRight() != null) {
-			getRight().subtreeColor(color);
+		for (final BSTNode w : TreeWalk.topDown(this)) {
+			w.setColor(color);
 		}
 	}
 
+	/**
+	 * Store the state of the whole subtree (see TreeWalk).
+	 */
 	@Override
 	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "left", left);
-		HashtableStoreSupport.store(state, hash + "right", right);
-		HashtableStoreSupport.store(state, hash + "parent", parent);
-		HashtableStoreSupport.store(state, hash + "level", level);
-		HashtableStoreSupport.store(state, hash + "thread", thread);
-		HashtableStoreSupport.store(state, hash + "leftw", leftw);
-		HashtableStoreSupport.store(state, hash + "rightw", rightw);
-		if (left != null) {
-			left.storeState(state);
-		}
-		if (right != null) {
-			right.storeState(state);
-		}
+		TreeWalk.storeState(this, state);
 	}
 
 	@Override
 	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object left = state.get(hash + "left");
-		if (left != null) {
-			this.left = (BSTNode) HashtableStoreSupport.restore(left);
-		}
-		final Object right = state.get(hash + "right");
-		if (right != null) {
-			this.right = (BSTNode) HashtableStoreSupport.restore(right);
-		}
-		final Object parent = state.get(hash + "parent");
-		if (parent != null) {
-			this.parent = (BSTNode) HashtableStoreSupport.restore(parent);
-		}
-		final Object level = state.get(hash + "level");
-		if (level != null) {
-			this.level = (Integer) HashtableStoreSupport.restore(level);
-		}
-		final Object thread = state.get(hash + "thread");
-		if (thread != null) {
-			this.thread = (Boolean) HashtableStoreSupport.restore(thread);
-		}
-		final Object leftw = state.get(hash + "leftw");
-		if (leftw != null) {
-			this.leftw = (Integer) HashtableStoreSupport.restore(leftw);
-		}
-		final Object rightw = state.get(hash + "rightw");
-		if (rightw != null) {
-			this.rightw = (Integer) HashtableStoreSupport.restore(rightw);
-		}
+		TreeWalk.restoreState(this, state);
+	}
 
-		if (this.left != null) {
-			this.left.restoreState(state);
-		}
-		if (this.right != null) {
-			this.right.restoreState(state);
+	@Override
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(left);
+		r.putRef(right);
+		r.putRef(parent);
+		r.putInt(level);
+		r.putInt(leftw);
+		r.putInt(rightw);
+	}
+
+	@Override
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		left = (BSTNode) r.getRef();
+		right = (BSTNode) r.getRef();
+		parent = (BSTNode) r.getRef();
+		level = r.getInt();
+		leftw = r.getInt();
+		rightw = r.getInt();
+		invalidate();
+		if (parent != null) {
+			parent.invalidate();
 		}
 	}
 }
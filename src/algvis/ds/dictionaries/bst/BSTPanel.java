@@ -19,7 +19,6 @@ package algvis.ds.dictionaries.bst;
 import algvis.core.DataStructure;
 import algvis.core.Settings;
 import algvis.ui.VisPanel;
-import algvis.ui.view.LayoutListener;
 
 public class BSTPanel extends VisPanel {
 	private static final long serialVersionUID = 2619694930536571557L;
@@ -34,7 +33,6 @@ public class BSTPanel extends VisPanel {
 		D = new BST(this);
 		scene.add(D);
 		buttons = new BSTButtons(this);
-		S.addLayoutListener((LayoutListener) D);
 	}
 
 	@Override
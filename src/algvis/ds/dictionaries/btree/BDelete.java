@@ -157,6 +157,7 @@ public class BDelete extends Algorithm {
 					pause();
 					final int pkey = p.keys[k];
 					p.keys[k] = v.keys[0];
+					p.changed();
 					removeFromScene(v);
 					v = new BNode(T, pkey, p.tox, p.toy);
 					addToScene(v);
@@ -185,6 +186,7 @@ public class BDelete extends Algorithm {
 						v = new BNode(T.getRoot());
 						addToScene(v);
 						T.getRoot().keys[0] = Node.NOKEY;
+						T.getRoot().changed();
 						v.goTo((d.tox + s.tox) / 2, d.y);
 						pause();
 						if (lefts) {
@@ -207,6 +209,7 @@ public class BDelete extends Algorithm {
 						--p.numChildren;
 						System.arraycopy(p.c, k + 1 + 1, p.c, k + 1,
 								p.numChildren - (k + 1));
+						p.changed();
 						d = p;
 					}
 				}
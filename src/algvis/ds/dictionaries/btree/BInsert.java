@@ -87,6 +87,7 @@ public class BInsert extends Algorithm {
 					break;
 				}
 				w.parent.c[o] = w;
+				w.parent.changed();
 				pause();
 				w.goBelow(w.parent);
 				pause();
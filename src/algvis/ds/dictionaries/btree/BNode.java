@@ -17,18 +17,25 @@
 package algvis.ds.dictionaries.btree;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.Tile;
+import algvis.core.TreeWalk;
+import algvis.core.history.StateRecord;
+import algvis.core.visual.DirtyRegion;
 import algvis.ui.Fonts;
+import algvis.ui.view.Layout;
 import algvis.ui.view.View;
 
 public class BNode extends Node {
 	private int width;
 	private int leftw;
 	private int rightw;
+	private int relx = 0; // x relative to the parent in the compact layout
 	BNode parent = null;
 	int numKeys = 1, numChildren = 0;
 	int[] keys;
@@ -37,6 +44,7 @@ public class BNode extends Node {
 
 	// statistics
 	int nkeys = 1, nnodes = 1, height = 1;
+	private boolean stale = true; // the subtree has changed
 
 	public BNode(DataStructure D, int key, int x, int y) {
 		super(D, key, x, y);
@@ -76,6 +84,11 @@ public class BNode extends Node {
 		width = _width();
 	}
 
+	@Override
+	protected BNode getParent() {
+		return parent;
+	}
+
 	public boolean isRoot() {
 		return parent == null;
 	}
@@ -91,17 +104,82 @@ public class BNode extends Node {
 	 * isolate() { left = right = parent = null; }
 	 */
 
-	public void calcTree() {
+	/**
+	 * Calculate the number of keys, nodes, and the height of this subtree,
+	 * assuming that this was already calculated for the children.
+	 */
+	void calc() {
 		nkeys = numKeys;
 		nnodes = 1;
 		for (int i = 0; i < numChildren; ++i) {
-			c[i].calcTree();
 			nkeys += c[i].nkeys;
 			nnodes += c[i].nnodes;
 		}
 		height = 1 + (isLeaf() ? 0 : c[0].height);
 	}
 
+	public void calcTree() {
+		final List<BNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).calc();
+		}
+	}
+
+	/**
+	 * Calculate the statistics of the nodes whose subtrees have changed
+	 * since the last call (the ancestors of the nodes that were split,
+	 * merged, or got or lost a key or a child).
+	 */
+	public void calcChanged() {
+		final List<BNode> changed = new ArrayList<BNode>();
+		if (stale) {
+			changed.add(this);
+		}
+		for (int i = 0; i < changed.size(); ++i) {
+			final BNode w = changed.get(i);
+			for (int j = 0; j < w.numChildren; ++j) {
+				if (w.c[j].stale) {
+					changed.add(w.c[j]);
+				}
+			}
+		}
+		// children come after their parents in the list
+		for (int i = changed.size() - 1; i >= 0; --i) {
+			final BNode w = changed.get(i);
+			w.calc();
+			w.stale = false;
+		}
+	}
+
+	/**
+	 * Mark this node and its ancestors as stale: their statistics have to be
+	 * calculated again (and the subtrees checked for cached images, see
+	 * changed).
+	 */
+	private void invalidate() {
+		changed();
+		BNode w = this;
+		while (w != null && !w.stale) {
+			w.stale = true;
+			w = w.parent;
+		}
+	}
+
+	/**
+	 * Append the keys of this subtree to r in increasing order.
+	 */
+	void keys(List<Integer> r) {
+		for (int i = 0; i < numKeys; ++i) {
+			if (i < numChildren) {
+				c[i].keys(r);
+			}
+			r.add(keys[i]);
+		}
+		if (numChildren > numKeys) {
+			c[numKeys].keys(r);
+		}
+	}
+
 	public void addLeaf(int x) {
 		keys[numKeys++] = x;
 		for (int i = numKeys - 1; i > 0; --i) {
@@ -112,6 +190,7 @@ public class BNode extends Node {
 			}
 		}
 		width = _width();
+		invalidate();
 	}
 
 	public int order() {
@@ -136,6 +215,7 @@ public class BNode extends Node {
 		c[k + 1] = v.c[1];
 		c[k + 1].parent = this;
 		width = _width();
+		invalidate();
 	}
 
 	public boolean isIn(int x) {
@@ -204,6 +284,8 @@ public class BNode extends Node {
 		w.width = w._width();
 		u.x = u.tox = tox - u.width / 2 - Node.RADIUS;
 		w.x = w.tox = tox + w.width / 2 + Node.RADIUS;
+		D.grid.file(u);
+		D.grid.file(w);
 		return v;
 	}
 
@@ -216,6 +298,7 @@ public class BNode extends Node {
 			keys[i] = keys[i + 1];
 		}
 		width = _width();
+		invalidate();
 		return new BNode(D, k, tox - (numKeys + 1 - 2 * p) * Node.RADIUS, toy);
 	}
 
@@ -224,6 +307,7 @@ public class BNode extends Node {
 		--numKeys;
 		System.arraycopy(keys, 1, keys, 0, numKeys);
 		width = _width();
+		invalidate();
 		return new BNode(D, r, tox - (numKeys - 1) * Node.RADIUS, toy);
 	}
 
@@ -232,6 +316,7 @@ public class BNode extends Node {
 		--numChildren;
 		System.arraycopy(c, 1, c, 0, numChildren);
 		width = _width();
+		invalidate();
 		return r;
 	}
 
@@ -239,12 +324,14 @@ public class BNode extends Node {
 		final BNode r = new BNode(D, keys[--numKeys], tox + (numKeys - 1)
 				* Node.RADIUS, toy);
 		width = _width();
+		invalidate();
 		return r;
 	}
 
 	public BNode delMaxCh() {
 		final BNode r = c[--numChildren];
 		width = _width();
+		invalidate();
 		return r;
 	}
 
@@ -252,22 +339,26 @@ public class BNode extends Node {
 		System.arraycopy(keys, 0, keys, 1, numKeys++);
 		keys[0] = k;
 		width = _width();
+		invalidate();
 	}
 
 	public void insMinCh(BNode v) {
 		System.arraycopy(c, 0, c, 1, numChildren++);
 		c[0] = v;
 		width = _width();
+		invalidate();
 	}
 
 	public void insMax(int k) {
 		keys[numKeys++] = k;
 		width = _width();
+		invalidate();
 	}
 
 	public void insMaxCh(BNode v) {
 		c[numChildren++] = v;
 		width = _width();
+		invalidate();
 	}
 
 	public void replace(int x, int y) {
@@ -276,6 +367,7 @@ public class BNode extends Node {
 		}
 		keys[i] = y;
 		width = _width();
+		changed();
 	}
 
 	String toString(int max) {
@@ -352,24 +444,75 @@ public class BNode extends Node {
 		}
 	}
 
+	@Override
+	protected void markEdges(DirtyRegion dirty) {
+		if (parent != null) {
+			dirty.add(parent.x, parent.y, 2);
+		}
+		for (int i = 0; i < numChildren; ++i) {
+			dirty.add(c[i].x, c[i].y - Node.RADIUS, 2);
+		}
+	}
+
+	@Override
+	protected int getExtent() {
+		return width / 2 + Node.RADIUS;
+	}
+
 	public void drawTree(View v) {
+		if (parent == null) {
+			Tile.update(this);
+		}
+		if (!Tile.draw(this, v)) {
+			drawSubtree(v);
+		}
+	}
+
+	@Override
+	protected void getChildren(List<Node> list) {
 		for (int i = 0; i < numChildren; ++i) {
-			v.setColor(Color.black);
-			/*
-			 * int xx, yy; if (i==0 || i==numChildren-1) { xx = x; yy = y; }
-			 * else { xx = (pos(i-1)+pos(i))/2; yy = y+D.RADIUS; }
-			 */
-			v.drawLine(x, y, c[i].x, c[i].y - Node.RADIUS);
-			c[i].drawTree(v);
+			list.add(c[i]);
+		}
+	}
+
+	/**
+	 * Draw the edges first, so that they are drawn in one color and batched
+	 * (see View.drawLine), and then the nodes, the children before their
+	 * parent. The subtrees drawn from cached images are skipped.
+	 */
+	@Override
+	protected void drawSubtree(View v) {
+		final List<BNode> stack = new ArrayList<BNode>();
+		final List<BNode> order = new ArrayList<BNode>();
+		v.setColor(Color.black);
+		stack.add(this);
+		while (!stack.isEmpty()) {
+			final BNode u = stack.remove(stack.size() - 1);
+			order.add(u);
+			for (int i = 0; i < u.numChildren; ++i) {
+				/*
+				 * int xx, yy; if (i==0 || i==numChildren-1) { xx = x; yy = y;
+				 * } else { xx = (pos(i-1)+pos(i))/2; yy = y+D.RADIUS; }
+				 */
+				v.drawLine(u.x, u.y, u.c[i].x, u.c[i].y - Node.RADIUS);
+				if (!Tile.isCached(u.c[i], v)) {
+					stack.add(u.c[i]);
+				}
+			}
+		}
+		for (int k = order.size() - 1; k >= 0; --k) {
+			final BNode u = order.get(k);
+			if (u == this || !Tile.draw(u, v)) {
+				u.draw(v);
+			}
 		}
-		draw(v);
 	}
 
 	public void moveTree() {
-		for (int i = 0; i < numChildren; ++i) {
-			c[i].moveTree();
+		final List<BNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).move();
 		}
-		move();
 	}
 
 	void rebox() {
@@ -443,8 +586,103 @@ public class BNode extends Node {
 	}
 
 	public void _reposition() {
-		reboxTree();
-		repos();
+		if (D.getLayout() == Layout.COMPACT) {
+			layout();
+			place();
+		} else {
+			reboxTree();
+			repos();
+		}
+	}
+
+	/**
+	 * @return half of the width of this node with the space around it
+	 */
+	private int halfw() {
+		return width / 2 + ((BTree) D).xspan;
+	}
+
+	/**
+	 * Compact layout: lay out the subtrees bottom-up, each of them as narrow
+	 * as possible (see merge).
+	 */
+	private void layout() {
+		final List<BNode> all = TreeWalk.topDown(this);
+		for (int k = all.size() - 1; k >= 0; --k) {
+			all.get(k).merge();
+		}
+	}
+
+	/**
+	 * Place the children (already laid out) from left to right as close as
+	 * the right contour of the subforest allows, and this node above the
+	 * middle child (or between the two middle children). All the leaves of a
+	 * B-tree are at the same depth, so the left (right) contour of a subtree
+	 * is the path along the first (last) children and this takes time
+	 * proportional to the heights of the children; the whole layout takes
+	 * linear time.
+	 */
+	private void merge() {
+		if (numChildren == 0) {
+			return;
+		}
+		final int[] pos = new int[numChildren];
+		// the right contour of the subforest placed so far, one x per level
+		final List<Integer> contour = new ArrayList<Integer>();
+		for (int i = 0; i < numChildren; ++i) {
+			BNode w = c[i];
+			int wx = 0;
+			if (i > 0) {
+				pos[i] = Integer.MIN_VALUE;
+				for (int d = 0; d < contour.size() && w != null; ++d) {
+					pos[i] = Math.max(pos[i], contour.get(d) - wx + w.halfw());
+					w = w.numChildren > 0 ? w.c[0] : null;
+					wx += w != null ? w.relx : 0;
+				}
+			}
+			w = c[i];
+			wx = pos[i];
+			for (int d = 0; w != null; ++d) {
+				if (d < contour.size()) {
+					contour.set(d, Math.max(contour.get(d), wx + w.halfw()));
+				} else {
+					contour.add(wx + w.halfw());
+				}
+				w = w.numChildren > 0 ? w.c[w.numChildren - 1] : null;
+				wx += w != null ? w.relx : 0;
+			}
+		}
+		final int k = numChildren / 2, mid;
+		if (numChildren % 2 == 0) {
+			// the middle of the gap between the two middle children
+			mid = (pos[k - 1] + c[k - 1].halfw() + pos[k] - c[k].halfw()) / 2;
+		} else {
+			mid = pos[k];
+		}
+		for (int i = 0; i < numChildren; ++i) {
+			c[i].relx = pos[i] - mid;
+		}
+	}
+
+	/**
+	 * Compact layout: send the nodes to their places top-down and compute
+	 * the boundary of the tree.
+	 */
+	private void place() {
+		if (isRoot()) {
+			goToRoot();
+			D.x1 = D.x2 = tox;
+			D.y2 = toy;
+		}
+		final int yspan = 2 * Node.RADIUS + ((BTree) D).yspan;
+		for (final BNode u : TreeWalk.topDown(this)) {
+			D.x1 = Math.min(D.x1, u.tox - u.halfw());
+			D.x2 = Math.max(D.x2, u.tox + u.halfw());
+			D.y2 = Math.max(D.y2, u.toy);
+			for (int i = 0; i < u.numChildren; ++i) {
+				u.c[i].goTo(u.tox + u.c[i].relx, u.toy + yspan);
+			}
+		}
 	}
 
 	int _goToX(BNode v) {
@@ -482,78 +720,67 @@ public class BNode extends Node {
 	@Override
 	public void storeState(Hashtable<Object, Object> state) {
 		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "parent", parent);
-		HashtableStoreSupport.store(state, hash + "c", c.clone());
-		for (final BNode node : c) {
-			if (node != null) {
-				node.storeState(state);
+		for (int i = 0; i < numChildren; ++i) {
+			if (c[i] != null) {
+				c[i].storeState(state);
 			}
 		}
-		HashtableStoreSupport.store(state, hash + "numKeys", numKeys);
-		HashtableStoreSupport.store(state, hash + "numChildren", numChildren);
-		HashtableStoreSupport.store(state, hash + "keys", keys.clone());
-		HashtableStoreSupport.store(state, hash + "leftw", leftw);
-		HashtableStoreSupport.store(state, hash + "rightw", rightw);
-		HashtableStoreSupport.store(state, hash + "width", width);
-		HashtableStoreSupport.store(state, hash + "nkeys", nkeys);
-		HashtableStoreSupport.store(state, hash + "nnodes", nnodes);
-		HashtableStoreSupport.store(state, hash + "height", height);
 	}
 
 	@Override
 	public void restoreState(Hashtable<?, ?> state) {
 		super.restoreState(state);
-		final Object parent = state.get(hash + "parent");
-		if (parent != null) {
-			this.parent = (BNode) HashtableStoreSupport.restore(parent);
-		}
-
-		final Object c = state.get(hash + "c");
-		if (c != null) {
-			this.c = (BNode[]) HashtableStoreSupport.restore(c);
-		}
-		for (final BNode node : this.c) {
-			if (node != null) {
-				node.restoreState(state);
+		for (int i = 0; i < numChildren; ++i) {
+			if (c[i] != null) {
+				c[i].restoreState(state);
 			}
 		}
+	}
 
-		final Object numKeys = state.get(hash + "numKeys");
-		if (numKeys != null) {
-			this.numKeys = (Integer) HashtableStoreSupport.restore(numKeys);
-		}
-		final Object numChildren = state.get(hash + "numChildren");
-		if (numChildren != null) {
-			this.numChildren = (Integer) HashtableStoreSupport
-					.restore(numChildren);
-		}
-		final Object keys = state.get(hash + "keys");
-		if (keys != null) {
-			this.keys = (int[]) HashtableStoreSupport.restore(keys);
-		}
-		final Object leftw = state.get(hash + "leftw");
-		if (leftw != null) {
-			this.leftw = (Integer) HashtableStoreSupport.restore(leftw);
-		}
-		final Object rightw = state.get(hash + "rightw");
-		if (rightw != null) {
-			this.rightw = (Integer) HashtableStoreSupport.restore(rightw);
-		}
-		final Object width = state.get(hash + "width");
-		if (width != null) {
-			this.width = (Integer) HashtableStoreSupport.restore(width);
+	@Override
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(parent);
+		r.putInt(numKeys);
+		for (int i = 0; i < numKeys; ++i) {
+			r.putInt(keys[i]);
 		}
-		final Object nkeys = state.get(hash + "nkeys");
-		if (nkeys != null) {
-			this.nkeys = (Integer) HashtableStoreSupport.restore(nkeys);
+		r.putInt(numChildren);
+		for (int i = 0; i < numChildren; ++i) {
+			r.putRef(c[i]);
 		}
-		final Object height = state.get(hash + "height");
-		if (height != null) {
-			this.height = (Integer) HashtableStoreSupport.restore(height);
+		r.putInt(leftw);
+		r.putInt(rightw);
+		r.putInt(width);
+		r.putInt(nkeys);
+		r.putInt(nnodes);
+		r.putInt(height);
+	}
+
+	@Override
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		parent = (BNode) r.getRef();
+		numKeys = r.getInt();
+		for (int i = 0; i < numKeys; ++i) {
+			keys[i] = r.getInt();
 		}
-		final Object nnodes = state.get(hash + "nnodes");
-		if (nnodes != null) {
-			this.nnodes = (Integer) HashtableStoreSupport.restore(nnodes);
+		numChildren = r.getInt();
+		for (int i = 0; i < numChildren; ++i) {
+			c[i] = (BNode) r.getRef();
+		}
+		for (int i = numChildren; i < c.length; ++i) {
+			c[i] = null;
+		}
+		leftw = r.getInt();
+		rightw = r.getInt();
+		width = r.getInt();
+		nkeys = r.getInt();
+		nnodes = r.getInt();
+		height = r.getInt();
+		invalidate();
+		if (parent != null) {
+			parent.invalidate();
 		}
 	}
 }
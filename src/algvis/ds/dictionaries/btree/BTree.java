@@ -16,6 +16,7 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.btree;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 
 import algvis.core.AlgorithmAdapter;
@@ -23,9 +24,11 @@ import algvis.core.Dictionary;
 import algvis.core.history.HashtableStoreSupport;
 import algvis.internationalization.Languages;
 import algvis.ui.VisPanel;
+import algvis.ui.view.Layout;
+import algvis.ui.view.LayoutListener;
 import algvis.ui.view.View;
 
-public class BTree extends Dictionary {
+public class BTree extends Dictionary implements LayoutListener {
 	public static String dsName = "btree";
 	int order = 5;
 	final int xspan = 5;
@@ -61,6 +64,81 @@ public class BTree extends Dictionary {
 		setStats();
 	}
 
+	@Override
+	protected int[] keys() {
+		final ArrayList<Integer> r = new ArrayList<Integer>();
+		if (root != null) {
+			getRoot().keys(r);
+		}
+		final int[] keys = new int[r.size()];
+		for (int i = 0; i < keys.length; ++i) {
+			keys[i] = r.get(i);
+		}
+		return keys;
+	}
+
+	/**
+	 * Build the B-tree bottom-up: the height is the smallest one that can hold
+	 * all the keys; then each node takes as few children as possible and the
+	 * keys are spread evenly among them, so every node except the root is at
+	 * least half full and all the leaves are at the same depth.
+	 */
+	@Override
+	protected void buildFrom(int[] sorted) {
+		root = null;
+		if (sorted.length > 0) {
+			// a subtree of height h holds at most order^h - 1 keys
+			long cap = order;
+			int h = 1;
+			while (cap - 1 < sorted.length) {
+				cap *= order;
+				++h;
+			}
+			root = build(sorted, 0, sorted.length, h, cap / order);
+		}
+		reposition();
+	}
+
+	/**
+	 * Build a subtree of height h from the keys sorted[from..to); each child
+	 * subtree holds at most childCap - 1 keys.
+	 */
+	private BNode build(int[] sorted, int from, int to, int h, long childCap) {
+		final BNode v;
+		if (h == 1) {
+			v = new BNode(this, sorted[from]);
+			for (int i = from + 1; i < to; ++i) {
+				v.insMax(sorted[i]);
+			}
+			return v;
+		}
+		final int k = to - from;
+		final int c = Math.max(2, (int) ((k + childCap) / childCap));
+		final int inChildren = k - (c - 1), base = inChildren / c, extra = inChildren
+				% c;
+		final BNode[] ch = new BNode[c];
+		final int[] sep = new int[c - 1];
+		int pos = from;
+		for (int i = 0; i < c; ++i) {
+			final int cnt = base + (i < extra ? 1 : 0);
+			ch[i] = build(sorted, pos, pos + cnt, h - 1, childCap / order);
+			pos += cnt;
+			if (i < c - 1) {
+				sep[i] = sorted[pos++];
+			}
+		}
+		v = new BNode(this, sep[0]);
+		for (int i = 1; i < c - 1; ++i) {
+			v.insMax(sep[i]);
+		}
+		for (int i = 0; i < c; ++i) {
+			v.c[i] = ch[i];
+			ch[i].parent = v;
+		}
+		v.numChildren = c;
+		return v;
+	}
+
 	@Override
 	public BNode getRoot() {
 		return (BNode) root;
@@ -74,7 +152,7 @@ public class BTree extends Dictionary {
 					+ Languages.getString("full") + ";   "
 					+ Languages.getString("height") + ": 0";
 		} else {
-			getRoot().calcTree();
+			getRoot().calcChanged();
 			return "#" + Languages.getString("nodes") + ": " + getRoot().nnodes
 					+ ";   " + "#" + Languages.getString("keys") + ": "
 					+ getRoot().nkeys + " = " + (100 * getRoot().nkeys)
@@ -105,6 +183,25 @@ public class BTree extends Dictionary {
 		}
 	}
 
+	/**
+	 * Lay the tree out again as an operation of its own, so that it does not
+	 * run concurrently with algorithms and can be undone.
+	 */
+	@Override
+	public void changeLayout() {
+		start(new AlgorithmAdapter(panel) {
+			@Override
+			public void runAlgorithm() throws InterruptedException {
+				reposition();
+			}
+		});
+	}
+
+	@Override
+	public Layout getDefaultLayout() {
+		return Layout.SIMPLE;
+	}
+
 	public void setOrder(final Integer order) {
 		if (root != null || this.order != order) {
 			start(new AlgorithmAdapter(panel) {
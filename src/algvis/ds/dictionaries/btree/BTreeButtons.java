@@ -28,6 +28,8 @@ import algvis.ui.VisPanel;
 
 public class BTreeButtons extends DictButtons implements ChangeListener {
 	private static final long serialVersionUID = -4573594717377516312L;
+	/** option: the order of the B-tree */
+	public static final int ORDER = 1;
 	JSpinner OS;
 	private ILabel orderLabel;
 
@@ -50,7 +52,19 @@ public class BTreeButtons extends DictButtons implements ChangeListener {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
-			((BTree) D).setOrder((Integer) OS.getValue());
+			changeOption(ORDER, (Integer) OS.getValue());
+		}
+	}
+
+	@Override
+	public void setOption(int option, int value) {
+		if (option == ORDER) {
+			OS.removeChangeListener(this);
+			OS.setValue(value);
+			OS.addChangeListener(this);
+			((BTree) D).setOrder(value);
+		} else {
+			super.setOption(option, value);
 		}
 	}
 
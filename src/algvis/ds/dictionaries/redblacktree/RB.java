@@ -16,9 +16,12 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.redblacktree;
 
+import java.util.Stack;
+
 import algvis.core.Node;
 import algvis.core.visual.ZDepth;
 import algvis.ds.dictionaries.bst.BST;
+import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ui.VisPanel;
 import algvis.ui.view.Layout;
 import algvis.ui.view.View;
@@ -54,6 +57,37 @@ public class RB extends BST {
 		start(new RBDelete(this, x));
 	}
 
+	@Override
+	protected BSTNode newNode(int key) {
+		return new RBNode(this, key, ZDepth.NODE);
+	}
+
+	/**
+	 * A node of the balanced tree is red iff it has the same level (see
+	 * BST.buildLevel) as its parent; all root-to-leaf paths then have the
+	 * same number of black nodes.
+	 */
+	@Override
+	protected void buildFrom(int[] sorted) {
+		super.buildFrom(sorted);
+		if (getRoot() == null) {
+			return;
+		}
+		final Stack<RBNode> stack = new Stack<RBNode>();
+		stack.push((RBNode) getRoot());
+		while (!stack.isEmpty()) {
+			final RBNode v = stack.pop();
+			v.setRed(!v.isRoot()
+					&& buildLevel(v) == buildLevel(v.getParent()));
+			if (v.getLeft() != null) {
+				stack.push(v.getLeft());
+			}
+			if (v.getRight() != null) {
+				stack.push(v.getRight());
+			}
+		}
+	}
+
 	@Override
 	public void draw(View V) {
 		if (getRoot() != null) {
@@ -62,7 +96,7 @@ public class RB extends BST {
 	}
 
 	@Override
-	public Layout getLayout() {
+	public Layout getDefaultLayout() {
 		return Layout.COMPACT;
 	}
 }
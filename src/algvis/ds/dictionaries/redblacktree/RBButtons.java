@@ -28,6 +28,8 @@ import algvis.ui.VisPanel;
 
 public class RBButtons extends DictButtons implements ActionListener {
 	private static final long serialVersionUID = 5601437441473816995L;
+	/** option: 1 to show the tree as a 2-3-4 tree */
+	public static final int MODE234 = 1;
 	private ICheckBox B24;
 
 	public RBButtons(VisPanel M) {
@@ -46,10 +48,20 @@ public class RBButtons extends DictButtons implements ActionListener {
 	public void actionPerformed(ActionEvent evt) {
 		super.actionPerformed(evt);
 		if (evt.getSource() == B24) {
-			((RB) panel.D).mode24 = B24.isSelected();
+			changeOption(MODE234, B24.isSelected() ? 1 : 0);
+		}
+	}
+
+	@Override
+	public void setOption(int option, int value) {
+		if (option == MODE234) {
+			B24.setSelected(value != 0);
+			((RB) panel.D).mode24 = value != 0;
 			// TODO reposition mimo algoritmu kazi historiu a asi ani nie je
 			// potrebny
 			// ((RB) panel.D).reposition();
+		} else {
+			super.setOption(option, value);
 		}
 	}
 }
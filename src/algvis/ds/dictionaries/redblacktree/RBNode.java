@@ -16,12 +16,11 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.redblacktree;
 
-import java.util.Hashtable;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ui.view.View;
 
@@ -42,6 +41,7 @@ public class RBNode extends BSTNode {
 
 	public void setRed(boolean red) {
 		this.red = red;
+		changed();
 	}
 
 	@Override
@@ -121,17 +121,14 @@ public class RBNode extends BSTNode {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "red", red);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putBoolean(red);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object red = state.get(hash + "red");
-		if (red != null) {
-			this.red = (Boolean) HashtableStoreSupport.restore(red);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		red = r.getBoolean();
 	}
 }
@@ -28,6 +28,8 @@ import algvis.ui.VisPanel;
 
 public class GBButtons extends DictButtons implements ChangeListener {
 	private static final long serialVersionUID = -4200856610929537432L;
+	/** option: alpha in hundredths */
+	public static final int ALPHA = 1;
 	private JSpinner AS;
 	private JLabel alpha;
 
@@ -47,7 +49,19 @@ public class GBButtons extends DictButtons implements ChangeListener {
 	@Override
 	public void stateChanged(ChangeEvent evt) {
 		if (evt.getSource() == AS) {
-			((GBTree) D).alpha = (Double) AS.getValue();
+			changeOption(ALPHA, (int) Math.round((Double) AS.getValue() * 100));
+		}
+	}
+
+	@Override
+	public void setOption(int option, int value) {
+		if (option == ALPHA) {
+			((GBTree) D).alpha = value / 100.0;
+			AS.removeChangeListener(this);
+			AS.setValue(value / 100.0);
+			AS.addChangeListener(this);
+		} else {
+			super.setOption(option, value);
 		}
 	}
 }
@@ -16,10 +16,9 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.scapegoattree;
 
-import java.util.Hashtable;
 
 import algvis.core.DataStructure;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.ds.dictionaries.bst.BSTNode;
 
 public class GBNode extends BSTNode {
@@ -35,6 +34,7 @@ public class GBNode extends BSTNode {
 
 	public void setDeleted(boolean deleted) {
 		this.deleted = deleted;
+		changed();
 	}
 
 	@Override
@@ -53,17 +53,14 @@ public class GBNode extends BSTNode {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "deleted", deleted);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putBoolean(deleted);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object deleted = state.get(hash + "deleted");
-		if (deleted != null) {
-			this.deleted = (Boolean) HashtableStoreSupport.restore(deleted);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		deleted = r.getBoolean();
 	}
 }
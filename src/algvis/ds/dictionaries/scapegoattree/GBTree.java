@@ -20,7 +20,9 @@ import java.util.Hashtable;
 
 import algvis.core.StringUtils;
 import algvis.core.history.HashtableStoreSupport;
+import algvis.core.visual.ZDepth;
 import algvis.ds.dictionaries.bst.BST;
+import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.internationalization.Languages;
 import algvis.ui.VisPanel;
 import algvis.ui.view.Layout;
@@ -48,6 +50,17 @@ public class GBTree extends BST {
 		this.del = del;
 	}
 
+	@Override
+	protected BSTNode newNode(int key) {
+		return new GBNode(this, key, ZDepth.NODE);
+	}
+
+	@Override
+	protected void buildFrom(int[] sorted) {
+		super.buildFrom(sorted);
+		setDel(0);
+	}
+
 	@Override
 	public void insert(int x) {
 		start(new GBInsert(this, x));
@@ -78,7 +91,7 @@ public class GBTree extends BST {
 					+ Languages.getString("opt") + ";   "
 					+ Languages.getString("avedepth") + ": 0";
 		} else {
-			getRoot().calcTree();
+			getRoot().calcChanged();
 			return "#"
 					+ Languages.getString("nodes")
 					+ ": "
@@ -107,7 +120,7 @@ public class GBTree extends BST {
 	}
 
 	@Override
-	public Layout getLayout() {
+	public Layout getDefaultLayout() {
 		return Layout.COMPACT;
 	}
 
@@ -16,7 +16,6 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.skiplist;
 
-import algvis.core.MyRandom;
 import algvis.core.Node;
 import algvis.core.NodeColor;
 import algvis.core.visual.ZDepth;
@@ -86,7 +85,7 @@ public class SkipInsert extends SkipAlg {
 			}
 			removeFromScene(oldv);
 			pause();
-		} while (MyRandom.heads());
+		} while (L.panel.random.toss());
 
 		addStep("skiplist-tail", i);
 		pause();
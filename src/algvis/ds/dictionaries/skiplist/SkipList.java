@@ -16,6 +16,7 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.skiplist;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 
 import algvis.core.Dictionary;
@@ -61,6 +62,76 @@ public class SkipList extends Dictionary implements ClickListener {
 		start(new SkipDelete(this, x));
 	}
 
+	@Override
+	protected int[] keys() {
+		SkipNode w = getRoot();
+		while (w.getDown() != null) {
+			w = w.getDown();
+		}
+		final ArrayList<Integer> r = new ArrayList<Integer>();
+		for (w = w.getRight(); w != null && w.getRight() != null; w = w
+				.getRight()) {
+			r.add(w.getKey());
+		}
+		final int[] keys = new int[r.size()];
+		for (int i = 0; i < keys.length; ++i) {
+			keys[i] = r.get(i);
+		}
+		return keys;
+	}
+
+	/**
+	 * Build the skip list level by level from the left: the height of each
+	 * tower is tossed in advance (as in SkipInsert) and every new node is
+	 * appended after the last node of its level, so this takes time linear in
+	 * the number of nodes.
+	 */
+	@Override
+	protected void buildFrom(int[] sorted) {
+		final int[] tower = new int[sorted.length];
+		int h = 1;
+		e = 0;
+		for (int i = 0; i < sorted.length; ++i) {
+			tower[i] = 1;
+			while (panel.random.toss()) {
+				++tower[i];
+			}
+			h = Math.max(h, tower[i]);
+			e += tower[i] - 1;
+		}
+		final SkipNode[] last = new SkipNode[h];
+		for (int l = 0; l < h; ++l) {
+			last[l] = new SkipNode(this, -Node.INF, zDepth);
+			if (l > 0) {
+				last[l].linkdown(last[l - 1]);
+			}
+		}
+		root = last[h - 1];
+		for (int i = 0; i < sorted.length; ++i) {
+			for (int l = 0; l < tower[i]; ++l) {
+				final SkipNode v = new SkipNode(this, sorted[i], zDepth);
+				last[l].linkright(v);
+				if (l > 0) {
+					v.linkdown(last[l - 1]);
+				}
+				last[l] = v;
+			}
+		}
+		SkipNode s = null;
+		for (int l = 0; l < h; ++l) {
+			final SkipNode t = new SkipNode(this, Node.INF, zDepth);
+			last[l].linkright(t);
+			if (s != null) {
+				t.linkdown(s);
+			}
+			s = t;
+		}
+		sent = s;
+		height = h;
+		n = sorted.length;
+		reposition();
+	}
+
 	@Override
 	public void clear() {
 		if (n != 0) {
@@ -22,7 +22,7 @@ import java.util.Hashtable;
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.core.visual.ZDepth;
 import algvis.ui.view.View;
 
@@ -212,10 +212,6 @@ public class SkipNode extends Node {
 	@Override
 	public void storeState(Hashtable<Object, Object> state) {
 		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "down", down);
-		HashtableStoreSupport.store(state, hash + "left", left);
-		HashtableStoreSupport.store(state, hash + "right", right);
-		HashtableStoreSupport.store(state, hash + "up", up);
 		if (right != null) {
 			right.storeState(state);
 		}
@@ -227,23 +223,6 @@ public class SkipNode extends Node {
 	@Override
 	public void restoreState(Hashtable<?, ?> state) {
 		super.restoreState(state);
-		final Object down = state.get(hash + "down");
-		if (down != null) {
-			this.down = (SkipNode) HashtableStoreSupport.restore(down);
-		}
-		final Object left = state.get(hash + "left");
-		if (left != null) {
-			this.left = (SkipNode) HashtableStoreSupport.restore(left);
-		}
-		final Object right = state.get(hash + "right");
-		if (right != null) {
-			this.right = (SkipNode) HashtableStoreSupport.restore(right);
-		}
-		final Object up = state.get(hash + "up");
-		if (up != null) {
-			this.up = (SkipNode) HashtableStoreSupport.restore(up);
-		}
-
 		if (this.right != null) {
 			this.right.restoreState(state);
 		}
@@ -251,4 +230,22 @@ public class SkipNode extends Node {
 			this.down.restoreState(state);
 		}
 	}
+
+	@Override
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(down);
+		r.putRef(left);
+		r.putRef(right);
+		r.putRef(up);
+	}
+
+	@Override
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		down = (SkipNode) r.getRef();
+		left = (SkipNode) r.getRef();
+		right = (SkipNode) r.getRef();
+		up = (SkipNode) r.getRef();
+	}
 }
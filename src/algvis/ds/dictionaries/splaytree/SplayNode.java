@@ -53,15 +53,4 @@ public class SplayNode extends BSTNode {
 		}
 		pot = (int) Math.floor(D.lg(size)) + lp + rp;
 	}
-
-	@Override
-	public void calcTree() {
-		if (getLeft() != null) {
-			getLeft().calcTree();
-		}
-		if (getRight() != null) {
-			getRight().calcTree();
-		}
-		calc();
-	}
 }
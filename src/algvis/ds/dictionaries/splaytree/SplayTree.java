@@ -19,7 +19,9 @@ package algvis.ds.dictionaries.splaytree;
 import java.util.Hashtable;
 
 import algvis.core.history.HashtableStoreSupport;
+import algvis.core.visual.ZDepth;
 import algvis.ds.dictionaries.bst.BST;
+import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ui.VisPanel;
 import algvis.ui.view.Layout;
 import algvis.ui.view.View;
@@ -37,6 +39,11 @@ public class SplayTree extends BST {
 		super(M);
 	}
 
+	@Override
+	protected BSTNode newNode(int key) {
+		return new SplayNode(this, key, ZDepth.NODE);
+	}
+
 	public SplayNode getRoot2() {
 		return root2;
 	}
@@ -121,7 +128,7 @@ public class SplayTree extends BST {
 	}
 
 	@Override
-	public Layout getLayout() {
+	public Layout getDefaultLayout() {
 		return Layout.COMPACT;
 	}
 
@@ -16,8 +16,10 @@
  ******************************************************************************/
 package algvis.ds.dictionaries.treap;
 
+import algvis.core.visual.ZDepth;
 import algvis.ds.dictionaries.bst.BST;
 import algvis.ds.dictionaries.bst.BSTFind;
+import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ui.VisPanel;
 import algvis.ui.view.Layout;
 
@@ -51,7 +53,45 @@ public class Treap extends BST {
 	}
 
 	@Override
-	public Layout getLayout() {
+	protected BSTNode newNode(int key) {
+		return new TreapNode(this, key, ZDepth.NODE);
+	}
+
+	/**
+	 * Build the treap as a Cartesian tree of the sorted keys and their random
+	 * priorities: the right spine is kept on a stack; a new (largest) key pops
+	 * the nodes with smaller priorities, takes them as its left subtree and
+	 * becomes the right child of the top of the stack. Each node is pushed and
+	 * popped at most once, so this takes linear time and gives the same shape
+	 * as inserting the keys one by one.
+	 */
+	@Override
+	protected void buildFrom(int[] sorted) {
+		final TreapNode[] stack = new TreapNode[sorted.length];
+		int top = 0;
+		for (final int key : sorted) {
+			final TreapNode v = (TreapNode) newNode(key);
+			TreapNode last = null;
+			while (top > 0 && stack[top - 1].p < v.p) {
+				last = stack[--top];
+			}
+			if (last != null) {
+				v.linkLeft(last);
+			}
+			if (top > 0) {
+				stack[top - 1].linkRight(v);
+			}
+			stack[top++] = v;
+		}
+		setRoot(top == 0 ? null : stack[0]);
+		if (getRoot() != null) {
+			getRoot().calcTree();
+		}
+		reposition();
+	}
+
+	@Override
+	public Layout getDefaultLayout() {
 		return Layout.COMPACT;
 	}
 }
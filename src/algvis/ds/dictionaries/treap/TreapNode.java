@@ -28,7 +28,7 @@ public class TreapNode extends BSTNode {
 
 	private TreapNode(DataStructure D, int key, int x, int y, int zDepth) {
 		super(D, key, x, y, zDepth);
-		p = Math.random();
+		p = D.panel.random.uniform();
 		bgPColor();
 	}
 
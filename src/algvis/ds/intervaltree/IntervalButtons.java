@@ -13,11 +13,14 @@ import algvis.ds.intervaltree.IntervalTrees.mimasuType;
 import algvis.internationalization.IButton;
 import algvis.internationalization.IRadioButton;
 import algvis.ui.Buttons;
+import algvis.ui.Session;
 import algvis.ui.VisPanel;
 
 public class IntervalButtons extends Buttons {
 
 	private static final long serialVersionUID = 6383200811481633404L;
+	/** option: the kind of the tree (see mimasuType) */
+	public static final int TREE_TYPE = 1;
 	private IButton insertB;
 	private IButton findsumB;
 	private IButton changeKeyB;
@@ -93,6 +96,7 @@ public class IntervalButtons extends Buttons {
 			}
 			final Vector<Integer> args = I.getNonEmptyVI();
 			for (final int x : args) {
+				panel.session.record(Session.INSERT, x);
 				D.insert(x);
 			}
 		} else if (evt.getSource() == findsumB) {
@@ -100,55 +104,41 @@ public class IntervalButtons extends Buttons {
 				panel.newAlgorithmPool();
 			}
 			final Vector<Integer> args = I.getVI();
-			if (args.size() > 1) {
-				((IntervalTrees) D).ofinterval(args.elementAt(0),
-						args.elementAt(1));
-			} else {
-				((IntervalTrees) D).ofinterval(1, ((IntervalTree) D).numLeafs);
+			if (args.size() < 2) {
+				args.insertElementAt(1, 0);
+				args.insertElementAt(((IntervalTree) D).numLeafs, 1);
 			}
+			panel.session.record(Session.OFINTERVAL, args.elementAt(0),
+					args.elementAt(1));
+			((IntervalTrees) D).ofinterval(args.elementAt(0), args.elementAt(1));
 		} else if (evt.getSource() == changeKeyB) {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
 			final int delta = Math.abs(I.getInt(1));
 			final BSTNode w = ((BSTNode) ((IntervalTrees) D).chosen);
+			if (w != null) {
+				panel.session.record(Session.CHANGE_KEY, w.tox, w.toy, delta);
+			}
 			((IntervalTrees) D).changeKey(w, delta);
 		} else if (evt.getSource() == minB
 				&& ((IntervalTrees) D).minTree != mimasuType.MIN) {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
-			D.start(new AlgorithmAdapter(panel) {
-				@Override
-				public void runAlgorithm() throws InterruptedException {
-					D.clear();
-					((IntervalTrees) D).minTree = mimasuType.MIN;
-				}
-			});
+			changeOption(TREE_TYPE, mimasuType.MIN.ordinal());
 		} else if (evt.getSource() == maxB
 				&& ((IntervalTrees) D).minTree != mimasuType.MAX) {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
-			D.start(new AlgorithmAdapter(panel) {
-				@Override
-				public void runAlgorithm() throws InterruptedException {
-					D.clear();
-					((IntervalTrees) D).minTree = mimasuType.MAX;
-				}
-			});
+			changeOption(TREE_TYPE, mimasuType.MAX.ordinal());
 		} else if (evt.getSource() == sumB
 				&& ((IntervalTrees) D).minTree != mimasuType.SUM) {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
-			D.start(new AlgorithmAdapter(panel) {
-				@Override
-				public void runAlgorithm() throws InterruptedException {
-					D.clear();
-					((IntervalTrees) D).minTree = mimasuType.SUM;
-				}
-			});
+			changeOption(TREE_TYPE, mimasuType.SUM.ordinal());
 		}
 	}
 
@@ -161,6 +151,22 @@ public class IntervalButtons extends Buttons {
 		changeKeyB.setEnabled(enabled);
 	}
 
+	@Override
+	public void setOption(int option, int value) {
+		if (option == TREE_TYPE) {
+			final mimasuType type = mimasuType.values()[value];
+			D.start(new AlgorithmAdapter(panel) {
+				@Override
+				public void runAlgorithm() throws InterruptedException {
+					D.clear();
+					((IntervalTrees) D).minTree = type;
+				}
+			});
+		} else {
+			super.setOption(option, value);
+		}
+	}
+
 	@Override
 	public void refresh() {
 		super.refresh();
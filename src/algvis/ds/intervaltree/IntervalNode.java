@@ -1,12 +1,11 @@
 package algvis.ds.intervaltree;
 
 import java.awt.Color;
-import java.util.Hashtable;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.ds.dictionaries.bst.BST;
 import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ds.intervaltree.IntervalTrees.mimasuType;
@@ -54,8 +53,7 @@ public class IntervalNode extends BSTNode {
 			v.drawStringRight(Integer.toString(e), x + Node.RADIUS, y
 					- Node.RADIUS, Fonts.SMALL);
 		} else {
-			v.drawString(Integer.toString(e), x, y + Node.RADIUS + 5,
-					Fonts.SMALL);
+			v.drawNumber(e, x, y + Node.RADIUS + 5, Fonts.SMALL);
 		}
 	}
 
@@ -171,11 +169,11 @@ public class IntervalNode extends BSTNode {
 				v.drawLine(x, y, x, -20);
 			}
 			if (i % 10 == 0) {
-				v.drawString("" + i, x, -29, Fonts.NORMAL);
+				v.drawNumber(i, x, -29, Fonts.NORMAL);
 			} else if (i % 10 == 5) {
 				v.drawString("5", x, -27, Fonts.NORMAL);
 			} else {
-				v.drawString("" + i % 10, x, -27, Fonts.SMALL);
+				v.drawNumber(i % 10, x, -27, Fonts.SMALL);
 			}
 		}
 		if (getRight() != null) {
@@ -259,49 +257,24 @@ public class IntervalNode extends BSTNode {
 
 	@Override
 	public IntervalNode find(int x, int y) {
-		if (inside(x, y)) {
-			return this;
-		}
-		if (getLeft() != null) {
-			final IntervalNode tmp = getLeft().find(x, y);
-			if (tmp != null) {
-				return tmp;
-			}
-		}
-		if (getRight() != null) {
-			return getRight().find(x, y);
-		}
-		return null;
+		return (IntervalNode) super.find(x, y);
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "b", b);
-		HashtableStoreSupport.store(state, hash + "e", e);
-		HashtableStoreSupport.store(state, hash + "focused", focused);
-		HashtableStoreSupport.store(state, hash + "markedColor", markedColor);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putInt(b);
+		r.putInt(e);
+		r.putRef(focused);
+		r.putBoolean(markedColor);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object b = state.get(hash + "b");
-		if (b != null) {
-			this.b = (Integer) HashtableStoreSupport.restore(b);
-		}
-		final Object e = state.get(hash + "e");
-		if (e != null) {
-			this.e = (Integer) HashtableStoreSupport.restore(e);
-		}
-		final Object focused = state.get(hash + "focused");
-		if (focused != null) {
-			this.focused = (focusType) HashtableStoreSupport.restore(focused);
-		}
-		final Object markedColor = state.get(hash + "markedColor");
-		if (markedColor != null) {
-			this.markedColor = (Boolean) HashtableStoreSupport
-					.restore(markedColor);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		b = r.getInt();
+		e = r.getInt();
+		focused = (focusType) r.getRef();
+		markedColor = r.getBoolean();
 	}
 }
@@ -29,13 +29,18 @@ import javax.swing.event.ChangeListener;
 import algvis.core.AlgorithmAdapter;
 import algvis.internationalization.IButton;
 import algvis.internationalization.ILabel;
+import algvis.ui.Session;
 import algvis.ui.VisPanel;
 
 public class MeldablePQButtons extends PQButtons implements ChangeListener {
 	private static final long serialVersionUID = 1242711038059609653L;
+	/** option: the active heap */
+	public static final int ACTIVE_HEAP = 2;
 	private IButton meldB;
 	public JSpinner activeHeap;
 	private ILabel activeLabel;
+	// the active heap is being switched by a meld, which is recorded itself
+	private boolean melding = false;
 
 	public MeldablePQButtons(VisPanel M) {
 		super(M);
@@ -69,7 +74,13 @@ public class MeldablePQButtons extends PQButtons implements ChangeListener {
 			final Vector<Integer> args = I.getVI();
 			args.add(-1);
 			args.add(-1);
-			((MeldablePQ) D).meld(args.get(0), args.get(1));
+			panel.session.record(Session.MELD, args.get(0), args.get(1));
+			melding = true;
+			try {
+				((MeldablePQ) D).meld(args.get(0), args.get(1));
+			} finally {
+				melding = false;
+			}
 		}
 	}
 
@@ -80,6 +91,16 @@ public class MeldablePQButtons extends PQButtons implements ChangeListener {
 		activeHeap.setEnabled(enabled);
 	}
 
+	@Override
+	public void setOption(int option, int value) {
+		if (option == ACTIVE_HEAP) {
+			// stateChanged switches to the heap
+			activeHeap.setValue(value);
+		} else {
+			super.setOption(option, value);
+		}
+	}
+
 	@Override
 	public void stateChanged(ChangeEvent evt) {
 		if (evt.getSource() == activeHeap) {
@@ -90,6 +111,10 @@ public class MeldablePQButtons extends PQButtons implements ChangeListener {
 				if (panel.history.canRedo()) {
 					panel.newAlgorithmPool();
 				}
+				if (!melding) {
+					panel.session.record(Session.OPTION, ACTIVE_HEAP,
+							(Integer) activeHeap.getValue());
+				}
 				D.start(new AlgorithmAdapter(panel) {
 					@Override
 					public void runAlgorithm() throws InterruptedException {
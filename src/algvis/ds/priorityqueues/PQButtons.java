@@ -28,6 +28,7 @@ import algvis.core.Node;
 import algvis.internationalization.IButton;
 import algvis.internationalization.IRadioButton;
 import algvis.ui.Buttons;
+import algvis.ui.Session;
 import algvis.ui.VisPanel;
 
 /**
@@ -37,6 +38,8 @@ import algvis.ui.VisPanel;
  */
 public class PQButtons extends Buttons {
 	private static final long serialVersionUID = 5632185496171660196L;
+	/** option: 1 for a min-heap, 0 for a max-heap */
+	public static final int MIN_HEAP = 1;
 	private IButton insertB;
 	private IButton deleteB;
 	protected IButton decrKeyB;
@@ -97,12 +100,14 @@ public class PQButtons extends Buttons {
 			}
 			final Vector<Integer> args = I.getNonEmptyVI();
 			for (final int x : args) {
+				panel.session.record(Session.INSERT, x);
 				D.insert(x);
 			}
 		} else if (evt.getSource() == deleteB) {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
+			panel.session.record(Session.DELETE_MIN);
 			((PriorityQueue) D).delete();
 		} else if (evt.getSource() == decrKeyB) {
 			if (panel.history.canRedo()) {
@@ -113,30 +118,34 @@ public class PQButtons extends Buttons {
 			if (w != null) {
 				// TODO vypisat, ze ziadny vrchol nie je vybraty
 				// nesedi hlaska "using the default value 1"
+				panel.session.record(Session.CHANGE_KEY, w.tox, w.toy, delta);
 				((PriorityQueue) D).decreaseKey(w, delta);
 			}
 		} else if (evt.getSource() == minB && !((PriorityQueue) D).minHeap) {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
-			D.start(new AlgorithmAdapter(panel) {
-				@Override
-				public void runAlgorithm() throws InterruptedException {
-					D.clear();
-					((PriorityQueue) D).minHeap = true;
-				}
-			});
+			changeOption(MIN_HEAP, 1);
 		} else if (evt.getSource() == maxB && ((PriorityQueue) D).minHeap) {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
+			changeOption(MIN_HEAP, 0);
+		}
+	}
+
+	@Override
+	public void setOption(int option, final int value) {
+		if (option == MIN_HEAP) {
 			D.start(new AlgorithmAdapter(panel) {
 				@Override
 				public void runAlgorithm() throws InterruptedException {
 					D.clear();
-					((PriorityQueue) D).minHeap = false;
+					((PriorityQueue) D).minHeap = value != 0;
 				}
 			});
+		} else {
+			super.setOption(option, value);
 		}
 	}
 
@@ -22,7 +22,7 @@ import java.util.Hashtable;
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.core.visual.ZDepth;
 import algvis.ds.priorityqueues.MeldablePQ;
 import algvis.ui.Fonts;
@@ -247,14 +247,14 @@ public class BinHeapNode extends Node {
 
 	@Override
 	public void draw(View v) {
-		if (state == Node.INVISIBLE || getKey() == NULL) {
+		if (state == Node.INVISIBLE || getKey() == NULL || cull(v)) {
 			return;
 		}
 		drawBg(v);
 		drawKey(v);
 		if (parent == null) {
 			v.setColor(Color.black);
-			v.drawString("" + rank, x + Node.RADIUS, y - Node.RADIUS,
+			v.drawNumber(rank, x + Node.RADIUS, y - Node.RADIUS,
 					Fonts.SMALL);
 		}
 	}
@@ -286,18 +286,6 @@ public class BinHeapNode extends Node {
 		fgColor(Color.black);
 	}
 
-	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "left", left);
-		HashtableStoreSupport.store(state, hash + "right", right);
-		HashtableStoreSupport.store(state, hash + "parent", parent);
-		HashtableStoreSupport.store(state, hash + "child", child);
-		HashtableStoreSupport.store(state, hash + "leftw", leftw);
-		HashtableStoreSupport.store(state, hash + "height", height);
-		HashtableStoreSupport.store(state, hash + "rank", rank);
-	}
-
 	public void storeTreeState(Hashtable<Object, Object> state) {
 		storeTreeState(state, this);
 	}
@@ -314,36 +302,27 @@ public class BinHeapNode extends Node {
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object left = state.get(hash + "left");
-		if (left != null) {
-			this.left = (BinHeapNode) HashtableStoreSupport.restore(left);
-		}
-		final Object right = state.get(hash + "right");
-		if (right != null) {
-			this.right = (BinHeapNode) HashtableStoreSupport.restore(right);
-		}
-		final Object parent = state.get(hash + "parent");
-		if (parent != null) {
-			this.parent = (BinHeapNode) HashtableStoreSupport.restore(parent);
-		}
-		final Object child = state.get(hash + "child");
-		if (child != null) {
-			this.child = (BinHeapNode) HashtableStoreSupport.restore(child);
-		}
-		final Object leftw = state.get(hash + "leftw");
-		if (leftw != null) {
-			this.leftw = (Integer) HashtableStoreSupport.restore(leftw);
-		}
-		final Object height = state.get(hash + "height");
-		if (height != null) {
-			this.height = (Integer) HashtableStoreSupport.restore(height);
-		}
-		final Object rank = state.get(hash + "rank");
-		if (rank != null) {
-			this.rank = (Integer) HashtableStoreSupport.restore(rank);
-		}
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(left);
+		r.putRef(right);
+		r.putRef(parent);
+		r.putRef(child);
+		r.putInt(leftw);
+		r.putInt(height);
+		r.putInt(rank);
+	}
+
+	@Override
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		left = (BinHeapNode) r.getRef();
+		right = (BinHeapNode) r.getRef();
+		parent = (BinHeapNode) r.getRef();
+		child = (BinHeapNode) r.getRef();
+		leftw = r.getInt();
+		height = r.getInt();
+		rank = r.getInt();
 	}
 
 	public void restoreTreeState(Hashtable<?, ?> state) {
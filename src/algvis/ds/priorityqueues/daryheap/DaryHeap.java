@@ -142,12 +142,14 @@ public class DaryHeap extends PriorityQueue implements ClickListener {
 
 	@Override
 	protected void endAnimation() {
-		root.endAnimation();
+		if (root != null) {
+			root.endAnimation();
+		}
 	}
 
 	@Override
 	protected boolean isAnimationDone() {
-		return root.isAnimationDone();
+		return root == null || root.isAnimationDone();
 	}
 
 	public void reposition() {
@@ -28,6 +28,8 @@ import algvis.ui.VisPanel;
 
 public class DaryHeapButtons extends PQButtons implements ChangeListener {
 	private static final long serialVersionUID = -2783154701649865993L;
+	/** option: the order of the heap */
+	public static final int ORDER = 2;
 	JSpinner OS;
 	private ILabel orderLabel;
 
@@ -52,7 +54,19 @@ public class DaryHeapButtons extends PQButtons implements ChangeListener {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
-			((DaryHeap) D).setOrder((Integer) OS.getValue());
+			changeOption(ORDER, (Integer) OS.getValue());
+		}
+	}
+
+	@Override
+	public void setOption(int option, int value) {
+		if (option == ORDER) {
+			OS.removeChangeListener(this);
+			OS.setValue(value);
+			OS.addChangeListener(this);
+			((DaryHeap) D).setOrder(value);
+		} else {
+			super.setOption(option, value);
 		}
 	}
 
@@ -22,7 +22,8 @@ import java.util.Vector;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
+import algvis.core.visual.DirtyRegion;
 import algvis.core.visual.ZDepth;
 import algvis.ds.priorityqueues.PriorityQueue;
 import algvis.ds.priorityqueues.heap.HeapNode;
@@ -105,6 +106,16 @@ public class DaryHeapNode extends HeapNode {
 	 * 2*Node.radius; } }
 	 */
 
+	@Override
+	protected void markEdges(DirtyRegion dirty) {
+		if (parent != null) {
+			dirty.add(parent.x, parent.y, 2);
+		}
+		for (final DaryHeapNode node : c) {
+			dirty.add(node.x, node.y, 2);
+		}
+	}
+
 	@Override
 	public void drawTree(View v) {
 		drawTree2(v);
@@ -343,17 +354,7 @@ public class DaryHeapNode extends HeapNode {
 
 	@Override
 	public DaryHeapNode find(int x, int y) {
-		if (inside(x, y)) {
-			return this;
-		}
-
-		for (final DaryHeapNode node : c) {
-			final DaryHeapNode tmp = node.find(x, y);
-			if (tmp != null) {
-				return tmp;
-			}
-		}
-		return null;
+		return (DaryHeapNode) super.find(x, y);
 	}
 
 	public DaryHeapNode findMaxSon() {
@@ -370,33 +371,38 @@ public class DaryHeapNode extends HeapNode {
 	@Override
 	public void storeState(Hashtable<Object, Object> state) {
 		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "parent", parent);
-		HashtableStoreSupport.store(state, hash + "c", c.clone());
 		for (final DaryHeapNode node : c) {
 			node.storeState(state);
 		}
-		HashtableStoreSupport.store(state, hash + "nson", nson);
 	}
 
 	@Override
 	public void restoreState(Hashtable<?, ?> state) {
 		super.restoreState(state);
-		final Object parent = state.get(hash + "parent");
-		if (parent != null) {
-			this.parent = (DaryHeapNode) HashtableStoreSupport.restore(parent);
+		for (final DaryHeapNode node : c) {
+			node.restoreState(state);
 		}
+	}
 
-		final Object c = state.get(hash + "c");
-		if (c != null) {
-			this.c = (Vector<DaryHeapNode>) HashtableStoreSupport.restore(c);
-		}
-		for (final DaryHeapNode node : this.c) {
-			node.restoreState(state);
+	@Override
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(parent);
+		r.putInt(nson);
+		r.putInt(c.size());
+		for (final DaryHeapNode node : c) {
+			r.putRef(node);
 		}
+	}
 
-		final Object nson = state.get(hash + "nson");
-		if (nson != null) {
-			this.nson = (Integer) HashtableStoreSupport.restore(nson);
+	@Override
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		parent = (DaryHeapNode) r.getRef();
+		nson = r.getInt();
+		c.clear();
+		for (int i = r.getInt(); i > 0; --i) {
+			c.add((DaryHeapNode) r.getRef());
 		}
 	}
 }
\ No newline at end of file
@@ -107,13 +107,15 @@ public class Heap extends PriorityQueue implements ClickListener {
 	protected void endAnimation() {
 		// TODO radsej asi nejak preliezt strom, root.endAnimation by sa malo
 		// tykat len roota
-		root.endAnimation();
+		if (root != null) {
+			root.endAnimation();
+		}
 	}
 
 	@Override
 	protected boolean isAnimationDone() {
 		// TODO takisto (alebo este sa uvidi)
-		return root.isAnimationDone();
+		return root == null || root.isAnimationDone();
 	}
 
 	public void reposition() {
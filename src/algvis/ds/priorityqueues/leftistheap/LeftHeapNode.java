@@ -17,11 +17,13 @@
 package algvis.ds.priorityqueues.leftistheap;
 
 import java.awt.Color;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.List;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.TreeWalk;
+import algvis.core.history.StateRecord;
 import algvis.ds.dictionaries.bst.BSTNode;
 import algvis.ds.priorityqueues.MeldablePQ;
 import algvis.ui.Fonts;
@@ -99,6 +101,14 @@ public class LeftHeapNode extends BSTNode {
 		doubleArrow = false;
 	}
 
+	@Override
+	protected Node getPointee() {
+		if (doubleArrow && dir != null) {
+			return dir;
+		}
+		return super.getPointee();
+	}
+
 	private void drawDoubleArrow(View v) {
 		if (!doubleArrow || dir == null) {
 			return;
@@ -135,17 +145,16 @@ public class LeftHeapNode extends BSTNode {
 	@Override
 	public void repos(int px, int py) {
 		this.goTo(px, py);
-
-		if (this.getRight() != null) {
-			this.getRight().repos(px + getRight().leftw,
-					py + (DataStructure.minsepy));// + 2 * LeftHeapNode.RADIUS));
-		}
-		if (this.getLeft() != null) {
-			this.getLeft().repos(px - getLeft().rightw,
-					py + (DataStructure.minsepy));// +
-			// 2
-			// *
-			// LeftHeapNode.RADIUS));
+		// parents come before their children
+		for (final LeftHeapNode w : TreeWalk.topDown(this)) {
+			if (w.getRight() != null) {
+				w.getRight().goTo(w.tox + w.getRight().leftw,
+						w.toy + DataStructure.minsepy);
+			}
+			if (w.getLeft() != null) {
+				w.getLeft().goTo(w.tox - w.getLeft().rightw,
+						w.toy + DataStructure.minsepy);
+			}
 		}
 	}
 
@@ -158,28 +167,50 @@ public class LeftHeapNode extends BSTNode {
 	}
 
 	public void lowlightTree() {
-		lowlight();
-		if (getLeft() != null) {
-			getLeft().lowlightTree();
-		}
-		if (getRight() != null) {
-			getRight().lowlightTree();
+		for (final LeftHeapNode w : TreeWalk.topDown(this)) {
+			w.lowlight();
 		}
 	}
 
 	public void highlightTree() {
-		highlight();
-		if (getLeft() != null) {
-			getLeft().highlightTree();
-		}
-		if (getRight() != null) {
-			getRight().highlightTree();
+		for (final LeftHeapNode w : TreeWalk.topDown(this)) {
+			w.highlight();
 		}
 	}
 
+	/**
+	 * Draw each node after the edges to its children and its subtrees. The
+	 * recursion is replaced by a stack, so that degenerate trees do not
+	 * overflow the call stack.
+	 */
 	@Override
 	public void drawTree(View v) {
+		final List<LeftHeapNode> nodes = new ArrayList<LeftHeapNode>();
+		final List<Boolean> expanded = new ArrayList<Boolean>();
+		nodes.add(this);
+		expanded.add(false);
+		while (!nodes.isEmpty()) {
+			final LeftHeapNode w = nodes.remove(nodes.size() - 1);
+			if (expanded.remove(expanded.size() - 1)) {
+				w.draw(v);
+				continue;
+			}
+			w.drawEdges(v);
+			// pushed in the reverse order
+			nodes.add(w);
+			expanded.add(true);
+			if (w.getRight() != null) {
+				nodes.add(w.getRight());
+				expanded.add(false);
+			}
+			if (w.getLeft() != null) {
+				nodes.add(w.getLeft());
+				expanded.add(false);
+			}
+		}
+	}
 
+	private void drawEdges(View v) {
 		if (this.state != INVISIBLE) {
 
 			/*
@@ -203,13 +234,6 @@ public class LeftHeapNode extends BSTNode {
 				}
 			}
 		}
-		if (getLeft() != null) {
-			getLeft().drawTree(v);
-		}
-		if (getRight() != null) {
-			getRight().drawTree(v);
-		}
-		draw(v);
 	}
 
 	@Override
@@ -240,37 +264,20 @@ public class LeftHeapNode extends BSTNode {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "rank", rank);
-		HashtableStoreSupport.store(state, hash + "doubleArrow", doubleArrow);
-		HashtableStoreSupport.store(state, hash + "dashedRightLine",
-				dashedRightLine);
-		HashtableStoreSupport.store(state, hash + "dashedLeftLine",
-				dashedLeftLine);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putInt(rank);
+		r.putBoolean(doubleArrow);
+		r.putBoolean(dashedRightLine);
+		r.putBoolean(dashedLeftLine);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object rank = state.get(hash + "rank");
-		if (rank != null) {
-			this.rank = (Integer) HashtableStoreSupport.restore(rank);
-		}
-		final Object doubleArrow = state.get(hash + "doubleArrow");
-		if (doubleArrow != null) {
-			this.doubleArrow = (Boolean) HashtableStoreSupport
-					.restore(doubleArrow);
-		}
-		final Object dashedRightLine = state.get(hash + "dashedRightLine");
-		if (dashedRightLine != null) {
-			this.dashedRightLine = (Boolean) HashtableStoreSupport
-					.restore(dashedRightLine);
-		}
-		final Object dashedLeftLine = state.get(hash + "dashedLeftLine");
-		if (dashedLeftLine != null) {
-			this.dashedLeftLine = (Boolean) HashtableStoreSupport
-					.restore(dashedLeftLine);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		rank = r.getInt();
+		doubleArrow = r.getBoolean();
+		dashedRightLine = r.getBoolean();
+		dashedLeftLine = r.getBoolean();
 	}
 }
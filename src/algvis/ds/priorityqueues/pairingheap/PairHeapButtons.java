@@ -29,6 +29,8 @@ import algvis.ui.VisPanel;
 public class PairHeapButtons extends MeldablePQButtons implements
 		ChangeListener {
 	private static final long serialVersionUID = -5692673269308125662L;
+	/** option: the variant of pairing (see PairHeapAlg.Pairing) */
+	public static final int PAIRING = 3;
 	public IComboBox pairVariant;
 
 	public PairHeapButtons(VisPanel M) {
@@ -58,8 +60,20 @@ public class PairHeapButtons extends MeldablePQButtons implements
 			final int i = pairVariant.getSelectedIndex();
 
 			if ((i >= 0) && (i < 2)) { // (i < 6)){
-				((PairingHeap) D).pairState = PairHeapDelete.Pairing.values()[i];
+				changeOption(PAIRING, i);
 			}
 		}
 	}
+
+	@Override
+	public void setOption(int option, int value) {
+		if (option == PAIRING) {
+			((PairingHeap) D).pairState = PairHeapDelete.Pairing.values()[value];
+			pairVariant.removeActionListener(this);
+			pairVariant.setSelectedIndex(value);
+			pairVariant.addActionListener(this);
+		} else {
+			super.setOption(option, value);
+		}
+	}
 }
@@ -17,8 +17,11 @@
 package algvis.ds.priorityqueues.pairingheap;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
 
 import algvis.core.DataStructure;
+import algvis.core.Tile;
 import algvis.core.TreeNode;
 import algvis.ds.priorityqueues.MeldablePQ;
 import algvis.ui.view.View;
@@ -144,24 +147,20 @@ public class PairHeapNode extends TreeNode {
 
 	@Override
 	public void drawEdges(View v) {
-		if (thread) {
-			v.setColor(Color.red);
-			if (getChild() != null) {
-				if ((state != INVISIBLE) && (getChild().state != INVISIBLE)) {
-					v.drawLine(x, y, getChild().x, getChild().y);
-				}
-			} else {
-				System.out.println("child: " + getChild());
+		final List<TreeNode> stack = new ArrayList<TreeNode>();
+		stack.add(this);
+		while (!stack.isEmpty()) {
+			final TreeNode u = stack.remove(stack.size() - 1);
+			if (Tile.isCached(u, v)) {
+				continue;
 			}
-			v.setColor(Color.black);
-		} else {
-			TreeNode w = getChild();
+			TreeNode w = u.getChild();
 			while (w != null) {
-				if ((state != INVISIBLE) && (w.state != INVISIBLE)) {
+				if ((u.state != INVISIBLE) && (w.state != INVISIBLE)) {
 					v.setColor(Color.black);
-					v.drawLine(x, y, w.x, w.y);
+					v.drawLine(u.x, u.y, w.x, w.y);
 				}
-				w.drawEdges(v);
+				stack.add(w);
 				w = w.getRight();
 			}
 		}
@@ -156,7 +156,7 @@ public class SkewHeap extends MeldablePQ implements ClickListener {
 					+ Languages.getString("opt") + ";   "
 					+ Languages.getString("avedepth") + ": 0";
 		} else {
-			root[active].calcTree();
+			root[active].calcChanged();
 			return Languages.getString("size")
 					+ ": "
 					+ root[active].size
@@ -25,10 +25,13 @@ import javax.swing.JPanel;
 import algvis.internationalization.IButton;
 import algvis.internationalization.ICheckBox;
 import algvis.ui.Buttons;
+import algvis.ui.Session;
 import algvis.ui.VisPanel;
 
 public class RotButtons extends Buttons {
 	private static final long serialVersionUID = 3851020370059429766L;
+	/** options: 1 to show the order of the nodes, or the subtrees */
+	public static final int SHOW_ORDER = 1, SUBTREES = 2;
 	private IButton rotB;
 	private ICheckBox order;
 	private ICheckBox subtrees;
@@ -72,12 +75,27 @@ public class RotButtons extends Buttons {
 			}
 			final Vector<Integer> args = I.getNonEmptyVI();
 			for (final int x : args) {
+				panel.session.record(Session.ROTATE, x);
 				R.rotate(x);
 			}
 		} else if (evt.getSource() == order) {
-			R.T.order = order.isSelected();
+			changeOption(SHOW_ORDER, order.isSelected() ? 1 : 0);
 		} else if (evt.getSource() == subtrees) {
-			R.subtrees = subtrees.isSelected();
+			changeOption(SUBTREES, subtrees.isSelected() ? 1 : 0);
+		}
+	}
+
+	@Override
+	public void setOption(int option, int value) {
+		final Rotations R = (Rotations) D;
+		if (option == SHOW_ORDER) {
+			order.setSelected(value != 0);
+			R.T.order = value != 0;
+		} else if (option == SUBTREES) {
+			subtrees.setSelected(value != 0);
+			R.subtrees = value != 0;
+		} else {
+			super.setOption(option, value);
 		}
 	}
 
@@ -20,7 +20,6 @@ import java.awt.geom.Rectangle2D;
 import java.util.Hashtable;
 
 import algvis.core.DataStructure;
-import algvis.core.MyRandom;
 import algvis.core.visual.ZDepth;
 import algvis.ds.dictionaries.bst.BST;
 import algvis.ds.dictionaries.bst.BSTNode;
@@ -148,7 +147,7 @@ public class Rotations extends DataStructure implements ClickListener {
 	public void random(int n) {
 		final boolean p = panel.pauses;
 		for (int i = 0; i < n; ++i) {
-			insert(MyRandom.Int(InputField.MAX + 1));
+			insert(panel.random.Int(InputField.MAX + 1));
 		}
 		start(new Runnable() {
 			@Override
@@ -184,7 +183,7 @@ public class Rotations extends DataStructure implements ClickListener {
 	}
 
 	@Override
-	public Layout getLayout() {
+	public Layout getDefaultLayout() {
 		return Layout.SIMPLE;
 	}
 
@@ -25,10 +25,13 @@ import javax.swing.JPanel;
 import algvis.internationalization.IButton;
 import algvis.internationalization.ICheckBox;
 import algvis.ui.Buttons;
+import algvis.ui.Session;
 import algvis.ui.VisPanel;
 
 public class SuffixTreeButtons extends Buttons {
 	private static final long serialVersionUID = -368670840648549217L;
+	/** option: 1 to show the implicit nodes */
+	public static final int IMPLICIT = 1;
 	private IButton insertB;
 	private IButton findB;
 	private ICheckBox implicitB;
@@ -68,6 +71,7 @@ public class SuffixTreeButtons extends Buttons {
 			}
 			final Vector<String> args = I.getVABS();
 			for (final String s : args) {
+				panel.session.record(Session.INSERT_WORD, s);
 				((SuffixTree) D).insert(s);
 			}
 		} else if (evt.getSource() == findB) {
@@ -77,15 +81,26 @@ public class SuffixTreeButtons extends Buttons {
 			final Vector<String> args = I.getVS();
 			if (args.size() > 0) {
 				for (final String s : args) {
+					panel.session.record(Session.FIND_WORD, s);
 					((SuffixTree) D).find(s);
 				}
 			}
 		} else if (evt.getSource() == implicitB) {
-			SuffixTreeNode.implicitNodes = implicitB.isSelected();
+			changeOption(IMPLICIT, implicitB.isSelected() ? 1 : 0);
 		}
 
 	}
 
+	@Override
+	public void setOption(int option, int value) {
+		if (option == IMPLICIT) {
+			implicitB.setSelected(value != 0);
+			SuffixTreeNode.implicitNodes = value != 0;
+		} else {
+			super.setOption(option, value);
+		}
+	}
+
 	@Override
 	public void setOtherEnabled(boolean enabled) {
 		super.setOtherEnabled(enabled);
@@ -18,12 +18,11 @@ package algvis.ds.suffixtree;
 
 import java.awt.Color;
 import java.awt.geom.Point2D;
-import java.util.Hashtable;
 import java.util.Stack;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.ds.trie.TrieNode;
 import algvis.ui.Fonts;
 import algvis.ui.view.View;
@@ -94,6 +93,7 @@ public class SuffixTreeNode extends TrieNode {
 
 	public void setPacked(boolean packed) {
 		this.packed = packed;
+		changed();
 	}
 
 	@Override
@@ -162,11 +162,12 @@ public class SuffixTreeNode extends TrieNode {
 
 	public void setSuffixLink(SuffixTreeNode suffixLink) {
 		this.suffixLink = suffixLink;
+		changed();
 	}
 
 	@Override
 	public void draw(View v) {
-		if (state == Node.INVISIBLE || getKey() == NULL) {
+		if (state == Node.INVISIBLE || getKey() == NULL || cull(v)) {
 			return;
 		}
 		drawBg(v);
@@ -180,10 +181,16 @@ public class SuffixTreeNode extends TrieNode {
 			if (marked) {
 				v.drawCircle(x, y + 11, 7);
 			}
-			v.drawString(String.valueOf(getKey()), x, y + 10, Fonts.TYPEWRITER);
+			v.drawNumber(getKey(), x, y + 10, Fonts.TYPEWRITER);
 		}
 	}
 
+	@Override
+	protected void markPointers() {
+		super.markPointers();
+		markPointer(getSuffixLink());
+	}
+
 	void drawSuffixLinks(View v) {
 		SuffixTreeNode child = getChild();
 		while (child != null) {
@@ -282,23 +289,16 @@ public class SuffixTreeNode extends TrieNode {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "suffixLink", suffixLink);
-		HashtableStoreSupport.store(state, hash + "packed", packed);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(suffixLink);
+		r.putBoolean(packed);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object suffixLink = state.get(hash + "suffixLink");
-		if (suffixLink != null) {
-			this.suffixLink = (SuffixTreeNode) HashtableStoreSupport
-					.restore(suffixLink);
-		}
-		final Object packed = state.get(hash + "packed");
-		if (packed != null) {
-			this.packed = (Boolean) HashtableStoreSupport.restore(packed);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		suffixLink = (SuffixTreeNode) r.getRef();
+		packed = r.getBoolean();
 	}
 }
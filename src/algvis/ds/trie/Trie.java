@@ -107,9 +107,9 @@ public class Trie extends DataStructure {
 		panel.pauses = false;
 		for (int i = 0; i < n; i++) {
 			if (panel.S == null) {
-				insert(WordGenerator.getSkWord());
+				insert(WordGenerator.getSkWord(panel.random));
 			} else {
-				insert(WordGenerator.getWord(panel.S));
+				insert(WordGenerator.getWord(panel.S, panel.random));
 			}
 		}
 		start(new Runnable() {
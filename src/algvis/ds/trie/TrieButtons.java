@@ -24,6 +24,7 @@ import javax.swing.JPanel;
 
 import algvis.internationalization.IButton;
 import algvis.ui.Buttons;
+import algvis.ui.Session;
 import algvis.ui.VisPanel;
 
 public class TrieButtons extends Buttons {
@@ -64,6 +65,7 @@ public class TrieButtons extends Buttons {
 			}
 			final Vector<String> args = I.getVS();
 			for (final String s : args) {
+				panel.session.record(Session.INSERT_WORD, s);
 				((Trie) D).insert(s);
 			}
 		} else if (evt.getSource() == findB) {
@@ -73,6 +75,7 @@ public class TrieButtons extends Buttons {
 			final Vector<String> args = I.getVS();
 			if (args.size() > 0) {
 				for (final String s : args) {
+					panel.session.record(Session.FIND_WORD, s);
 					((Trie) D).find(s);
 				}
 			}
@@ -83,6 +86,7 @@ public class TrieButtons extends Buttons {
 			final Vector<String> args = I.getVS();
 			if (args.size() > 0) {
 				for (final String s : args) {
+					panel.session.record(Session.DELETE_WORD, s);
 					((Trie) D).delete(s);
 				}
 			}
@@ -17,13 +17,12 @@
 package algvis.ds.trie;
 
 import java.awt.Color;
-import java.util.Hashtable;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
 import algvis.core.TreeNode;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.core.visual.ZDepth;
 import algvis.ui.Fonts;
 import algvis.ui.view.View;
@@ -103,21 +102,13 @@ public class TrieNode extends TreeNode {
 	@Override
 	public void drawEdges(View v) {
 		if (state != INVISIBLE) {
-			if (thread) {
-				v.setColor(Color.red);
-				if (getChild() != null) {
-					v.drawFancyArc(x, y, getChild().x, getChild().y);
-				}
+			TreeNode w = getChild();
+			while (w != null) {
+				v.setColor(Color.DARK_GRAY);
+				v.drawFancyArc(x, y, w.x, w.y);
+				w.drawEdges(v);
+				w = w.getRight();
 				v.setColor(Color.black);
-			} else {
-				TreeNode w = getChild();
-				while (w != null) {
-					v.setColor(Color.DARK_GRAY);
-					v.drawFancyArc(x, y, w.x, w.y);
-					w.drawEdges(v);
-					w = w.getRight();
-					v.setColor(Color.black);
-				}
 			}
 		}
 	}
@@ -134,7 +125,7 @@ public class TrieNode extends TreeNode {
 
 	@Override
 	public void draw(View v) {
-		if (state == Node.INVISIBLE || getKey() == NULL) {
+		if (state == Node.INVISIBLE || getKey() == NULL || cull(v)) {
 			return;
 		}
 
@@ -164,7 +155,7 @@ public class TrieNode extends TreeNode {
 				// }
 
 				v.setColor(Color.BLACK);
-				v.drawString("" + ch, midx, midy - 1, Fonts.TYPEWRITER);
+				v.drawChar(ch, midx, midy - 1, Fonts.TYPEWRITER);
 			} else {
 				midx = x - ((x - u.x) / 15);
 				midy = y - ((y - u.y) / 5 * 2) - 1;
@@ -177,7 +168,7 @@ public class TrieNode extends TreeNode {
 				v.drawRoundRectangle(midx, midy, w, h, 6, 10);
 
 				v.setColor(getFgColor());
-				v.drawString("" + ch, midx, midy - 1, Fonts.TYPEWRITER);
+				v.drawChar(ch, midx, midy - 1, Fonts.TYPEWRITER);
 			}
 		}
 	}
@@ -287,17 +278,14 @@ public class TrieNode extends TreeNode {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "ch", ch);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putInt(ch);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object ch = state.get(hash + "ch");
-		if (ch != null) {
-			this.ch = (Character) HashtableStoreSupport.restore(ch);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		ch = (char) r.getInt();
 	}
 }
@@ -18,12 +18,11 @@ package algvis.ds.trie;
 
 import java.awt.Color;
 import java.awt.FontMetrics;
-import java.util.Hashtable;
 
 import algvis.core.DataStructure;
 import algvis.core.Node;
 import algvis.core.NodeColor;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.ui.Fonts;
 import algvis.ui.view.View;
 
@@ -94,17 +93,14 @@ public class TrieWordNode extends Node {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "s", s);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putRef(s);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object s = state.get(hash + "s");
-		if (s != null) {
-			this.s = (String) HashtableStoreSupport.restore(s);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		s = (String) r.getRef();
 	}
 }
@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import java.util.Hashtable;
 
 import algvis.core.DataStructure;
-import algvis.core.MyRandom;
 import algvis.core.history.HashtableStoreSupport;
 import algvis.core.visual.ZDepth;
 import algvis.ds.unionfind.UnionFindFind.FindHeuristic;
@@ -97,7 +96,7 @@ public class UnionFind extends DataStructure implements ClickListener {
 		final boolean p = panel.pauses;
 		panel.pauses = false;
 		for (int i = 0; i < n; ++i) {
-			union(at(MyRandom.Int(count)), at(MyRandom.Int(count)));
+			union(at(panel.random.Int(count)), at(panel.random.Int(count)));
 		}
 		start(new Runnable() {
 			@Override
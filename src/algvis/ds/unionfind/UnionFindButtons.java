@@ -23,15 +23,17 @@ import java.util.Vector;
 import javax.swing.JPanel;
 
 import algvis.core.AlgorithmAdapter;
-import algvis.core.MyRandom;
 import algvis.internationalization.IButton;
 import algvis.internationalization.IComboBox;
 import algvis.internationalization.ILabel;
 import algvis.ui.Buttons;
+import algvis.ui.Session;
 import algvis.ui.VisPanel;
 
 public class UnionFindButtons extends Buttons {
 	private static final long serialVersionUID = 2683381160819263717L;
+	/** options: the union and the find heuristic */
+	public static final int UNION_HEURISTIC = 1, FIND_HEURISTIC = 2;
 	private IButton makesetB;
 	private IButton findB;
 	private IButton unionB;
@@ -98,10 +100,12 @@ public class UnionFindButtons extends Buttons {
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
+			final int n = I.getInt(10, 1, 1000);
+			panel.session.record(Session.MAKESET, n);
 			D.start(new AlgorithmAdapter(panel) {
 				@Override
 				public void runAlgorithm() throws InterruptedException {
-					D.makeSet(I.getInt(10, 1, 1000));
+					D.makeSet(n);
 				}
 			});
 		} else if (evt.getSource() == findB) {
@@ -120,8 +124,9 @@ public class UnionFindButtons extends Buttons {
 				D.secondSelected = null;
 			}
 			if (args.size() == 0) {
-				args.add(MyRandom.Int(count));
+				args.add(panel.random.Int(count));
 			}
+			panel.session.record(Session.FIND, args.elementAt(0));
 			D.find(D.at(args.elementAt(0)));
 		} else if (evt.getSource() == unionB) {
 			if (panel.history.canRedo()) {
@@ -141,29 +146,49 @@ public class UnionFindButtons extends Buttons {
 			}
 			switch (args.size()) {
 			case 0:
-				args.add(MyRandom.Int(count));
+				args.add(panel.random.Int(count));
 			case 1:
 				int i;
 				final int ii = args.elementAt(0);
 				do {
-					i = MyRandom.Int(count);
+					i = panel.random.Int(count);
 				} while (i == ii);
 				args.add(i);
 			}
+			panel.session.record(Session.UNION, args.elementAt(0),
+					args.elementAt(1));
 			D.union(D.at(args.elementAt(0)), D.at(args.elementAt(1)));
 		} else if (evt.getSource() == unionHeuristicCB) {
 			final int i = unionHeuristicCB.getSelectedIndex();
 			if (i == 0 || i == 1) {
-				D.unionState = UnionFindUnion.UnionHeuristic.values()[i];
+				changeOption(UNION_HEURISTIC, i);
 			}
 		} else if (evt.getSource() == findHeuristicCB) {
 			final int i = findHeuristicCB.getSelectedIndex();
 			if (0 <= i && i < 4) {
-				D.pathCompression = UnionFindFind.FindHeuristic.values()[i];
+				changeOption(FIND_HEURISTIC, i);
 			}
 		}
 	}
 
+	@Override
+	public void setOption(int option, int value) {
+		final UnionFind D = (UnionFind) this.D;
+		if (option == UNION_HEURISTIC) {
+			D.unionState = UnionFindUnion.UnionHeuristic.values()[value];
+			unionHeuristicCB.removeActionListener(this);
+			unionHeuristicCB.setSelectedIndex(value);
+			unionHeuristicCB.addActionListener(this);
+		} else if (option == FIND_HEURISTIC) {
+			D.pathCompression = UnionFindFind.FindHeuristic.values()[value];
+			findHeuristicCB.removeActionListener(this);
+			findHeuristicCB.setSelectedIndex(value);
+			findHeuristicCB.addActionListener(this);
+		} else {
+			super.setOption(option, value);
+		}
+	}
+
 	@Override
 	public void setOtherEnabled(boolean enabled) {
 		super.setOtherEnabled(enabled);
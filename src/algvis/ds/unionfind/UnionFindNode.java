@@ -16,11 +16,10 @@
  ******************************************************************************/
 package algvis.ds.unionfind;
 
-import java.util.Hashtable;
 
 import algvis.core.DataStructure;
 import algvis.core.TreeNode;
-import algvis.core.history.HashtableStoreSupport;
+import algvis.core.history.StateRecord;
 import algvis.ui.view.View;
 
 public class UnionFindNode extends TreeNode {
@@ -37,6 +36,7 @@ public class UnionFindNode extends TreeNode {
 
 	public void setRank(int rank) {
 		this.rank = rank;
+		changed();
 	}
 
 	@Override
@@ -67,6 +67,7 @@ public class UnionFindNode extends TreeNode {
 			}
 		}
 		this.grey = grey;
+		changed();
 	}
 
 	void drawGrey(View v) {
@@ -87,22 +88,16 @@ public class UnionFindNode extends TreeNode {
 	}
 
 	@Override
-	public void storeState(Hashtable<Object, Object> state) {
-		super.storeState(state);
-		HashtableStoreSupport.store(state, hash + "rank", rank);
-		HashtableStoreSupport.store(state, hash + "grey", grey);
+	public void storeFields(StateRecord r) {
+		super.storeFields(r);
+		r.putInt(rank);
+		r.putBoolean(grey);
 	}
 
 	@Override
-	public void restoreState(Hashtable<?, ?> state) {
-		super.restoreState(state);
-		final Object rank = state.get(hash + "rank");
-		if (rank != null) {
-			this.rank = (Integer) HashtableStoreSupport.restore(rank);
-		}
-		final Object grey = state.get(hash + "grey");
-		if (grey != null) {
-			this.grey = (Boolean) HashtableStoreSupport.restore(grey);
-		}
+	public void restoreFields(StateRecord r) {
+		super.restoreFields(r);
+		rank = r.getInt();
+		grey = r.getBoolean();
 	}
 }
@@ -29,6 +29,7 @@ import javax.swing.JPanel;
 import javax.swing.JRootPane;
 
 import algvis.core.ADTs;
+import algvis.core.AlgorithmRuntime;
 import algvis.core.DataStructures;
 import algvis.core.Settings;
 import algvis.internationalization.IMenu;
@@ -86,6 +87,8 @@ public class AlgVis extends JPanel implements ActionListener {
 		langMenu.setMnemonic(KeyEvent.VK_L);
 		final IMenu layoutMenu = new IMenu("layout");
 		layoutMenu.setMnemonic(KeyEvent.VK_Y);
+		final IMenu runtimeMenu = new IMenu("runtime");
+		runtimeMenu.setMnemonic(KeyEvent.VK_T);
 
 		// Data structures menu
 		// Dictionaries
@@ -128,16 +131,34 @@ public class AlgVis extends JPanel implements ActionListener {
 		langMenu.add(skItem);
 		menuBar.add(langMenu);
 
-		/*
-		 * // Layout menu IMenuItem sItem = new IMenuItem(L, "layout-simple",
-		 * KeyEvent.VK_S); IMenuItem cItem = new IMenuItem(L, "layout-compact",
-		 * KeyEvent.VK_C); sItem.setActionCommand("layout-simple");
-		 * cItem.setActionCommand("layout-compact");
-		 * sItem.addActionListener(this); cItem.addActionListener(this);
-		 * 
-		 * layoutMenu.add(sItem); layoutMenu.add(cItem);
-		 * menuBar.add(layoutMenu);
-		 */
+		// Layout menu
+		final IMenuItem sItem = new IMenuItem("layout-simple");
+		final IMenuItem cItem = new IMenuItem("layout-compact");
+		sItem.setMnemonic(KeyEvent.VK_S);
+		cItem.setMnemonic(KeyEvent.VK_C);
+		sItem.setActionCommand("layout-simple");
+		cItem.setActionCommand("layout-compact");
+		sItem.addActionListener(this);
+		cItem.addActionListener(this);
+
+		layoutMenu.add(sItem);
+		layoutMenu.add(cItem);
+		menuBar.add(layoutMenu);
+
+		// Runtime menu
+		final IMenuItem pItem = new IMenuItem("runtime-platform");
+		final IMenuItem vItem = new IMenuItem("runtime-virtual");
+		pItem.setMnemonic(KeyEvent.VK_P);
+		vItem.setMnemonic(KeyEvent.VK_V);
+		pItem.setActionCommand("runtime-platform");
+		vItem.setActionCommand("runtime-virtual");
+		pItem.addActionListener(this);
+		vItem.addActionListener(this);
+		vItem.setEnabled(AlgorithmRuntime.VIRTUAL.isSupported());
+
+		runtimeMenu.add(pItem);
+		runtimeMenu.add(vItem);
+		menuBar.add(runtimeMenu);
 
 		for (int i = 0; i < DataStructures.N; ++i) {
 			panels[i] = DataStructures.createPanel(i, S);
@@ -167,6 +188,11 @@ public class AlgVis extends JPanel implements ActionListener {
 			S.setLayout(cmd[1]);
 		}
 
+		// set runtime
+		if ("runtime".equals(cmd[0])) {
+			S.setRuntime(cmd[1]);
+		}
+
 		// set different data structure
 		if ("ds".equals(cmd[0])) {
 			for (int i = 0; i < DataStructures.N; ++i) {
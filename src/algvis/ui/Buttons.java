@@ -17,16 +17,20 @@
 package algvis.ui;
 
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
 import java.util.Hashtable;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JPanel;
 import javax.swing.undo.StateEditable;
 
@@ -56,6 +60,7 @@ abstract public class Buttons extends JPanel implements ActionListener,
 	private IButton clear;
 	protected IButton random;
 	private IButton save;
+	private IButton load;
 	private ICheckBox pause;
 	private ChLabel stats;
 	private String statsText;
@@ -95,7 +100,7 @@ abstract public class Buttons extends JPanel implements ActionListener,
 		final JPanel first = new JPanel();
 		first.setLayout(new FlowLayout());
 
-		I = new InputField(5, panel.statusBar, panel.S);
+		I = new InputField(5, panel.statusBar, panel.S, panel.random);
 		first.add(I);
 		actionButtons(first);
 		initPrevious();
@@ -112,7 +117,7 @@ abstract public class Buttons extends JPanel implements ActionListener,
 		initPause();
 		initClear();
 		initRandom();
-		// initSave();
+		initSave();
 		initZoom();
 		second.setLayout(new FlowLayout());
 		second.add(pause);
@@ -120,7 +125,8 @@ abstract public class Buttons extends JPanel implements ActionListener,
 		if (random != null) {
 			second.add(random);
 		}
-		// second.add(save);
+		second.add(save);
+		second.add(load);
 		// second.add(zoomLabel);
 		// second.add(zoomIn);
 		// second.add(zoomOut);
@@ -175,13 +181,14 @@ abstract public class Buttons extends JPanel implements ActionListener,
 		random.addActionListener(this);
 	}
 
-	// TODO
-	// public void initSave() {
-	// save = new IButton("button-save");
-	// save.setMnemonic(KeyEvent.VK_S);
-	// save.setEnabled(panel.scenario.isEnabled());
-	// save.addActionListener(this);
-	// }
+	void initSave() {
+		save = new IButton("button-save");
+		save.setMnemonic(KeyEvent.VK_S);
+		save.addActionListener(this);
+		load = new IButton("button-load");
+		load.setMnemonic(KeyEvent.VK_L);
+		load.addActionListener(this);
+	}
 
 	private JButton createButton(String alt, String path) {
 		final java.net.URL imgURL = getClass().getResource(path);
@@ -232,6 +239,7 @@ abstract public class Buttons extends JPanel implements ActionListener,
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
+			panel.session.record(Session.CLEAR);
 			D.start(new AlgorithmAdapter(panel) {
 				@Override
 				public void runAlgorithm() throws InterruptedException {
@@ -242,7 +250,9 @@ abstract public class Buttons extends JPanel implements ActionListener,
 			if (panel.history.canRedo()) {
 				panel.newAlgorithmPool();
 			}
-			D.random(I.getInt(10));
+			final int n = I.getInt(10);
+			panel.session.record(Session.RANDOM, n);
+			D.random(n);
 		} else if (evt.getSource() == pause) {
 			panel.pauses = pause.isSelected();
 		} else if (evt.getSource() == zoomIn) {
@@ -250,7 +260,36 @@ abstract public class Buttons extends JPanel implements ActionListener,
 		} else if (evt.getSource() == zoomOut) {
 			panel.screen.V.zoomOut();
 		} else if (evt.getSource() == save) {
-			// TODO
+			final JFileChooser fc = new JFileChooser();
+			if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+				try {
+					panel.saveSession(fc.getSelectedFile());
+				} catch (final IOException e) {
+					I.sb.setText(e.getMessage());
+				}
+			}
+		} else if (evt.getSource() == load) {
+			final JFileChooser fc = new JFileChooser();
+			if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+				final File file = fc.getSelectedFile();
+				// the replay blocks until it has been run
+				new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							panel.loadSession(file);
+						} catch (final IOException e) {
+							final String message = e.getMessage();
+							EventQueue.invokeLater(new Runnable() {
+								@Override
+								public void run() {
+									I.sb.setText(message);
+								}
+							});
+						}
+					}
+				}).start();
+			}
 		} else if (evt.getSource() == resetView) {
 			panel.screen.V.resetView();
 		}
@@ -260,6 +299,7 @@ abstract public class Buttons extends JPanel implements ActionListener,
 	public void setOtherEnabled(boolean enabled) {
 		clear.setEnabled(enabled);
 		random.setEnabled(enabled);
+		load.setEnabled(enabled);
 	}
 
 	public void refresh() {
@@ -284,6 +324,23 @@ abstract public class Buttons extends JPanel implements ActionListener,
 	protected void otherButtons(JPanel P) {
 	}
 
+	/**
+	 * Sets an option of the data structure, e.g., the order of a B-tree, and
+	 * shows it in the buttons. The options are numbered by the subclasses.
+	 * Called when the option is changed in the panel (see changeOption) and
+	 * when a session is replayed, possibly outside the event dispatch thread.
+	 */
+	public void setOption(int option, int value) {
+	}
+
+	/**
+	 * Records the change of an option in the session and sets it.
+	 */
+	protected void changeOption(int option, int value) {
+		panel.session.record(Session.OPTION, option, value);
+		setOption(option, value);
+	}
+
 	@Override
 	public Dimension getMaximumSize() {
 		return new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
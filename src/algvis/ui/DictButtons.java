@@ -67,6 +67,7 @@ public class DictButtons extends Buttons {
 			}
 			final Vector<Integer> args = I.getNonEmptyVI();
 			for (final int x : args) {
+				panel.session.record(Session.INSERT, x);
 				D.insert(x);
 			}
 		} else if (evt.getSource() == findB) {
@@ -75,6 +76,7 @@ public class DictButtons extends Buttons {
 			}
 			final Vector<Integer> args = I.getVI();
 			for (final int x : args) {
+				panel.session.record(Session.FIND, x);
 				((Dictionary) D).find(x);
 			}
 		} else if (evt.getSource() == deleteB) {
@@ -83,6 +85,7 @@ public class DictButtons extends Buttons {
 			}
 			final Vector<Integer> args = I.getVI();
 			for (final int x : args) {
+				panel.session.record(Session.DELETE, x);
 				((Dictionary) D).delete(x);
 			}
 		}
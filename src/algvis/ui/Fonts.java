@@ -19,6 +19,7 @@ package algvis.ui;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.image.BufferedImage;
 
 public enum Fonts {
 	NORMAL(new Font(Font.SANS_SERIF, Font.PLAIN, 9)), SMALL(new Font(
@@ -27,6 +28,10 @@ public enum Fonts {
 
 	public final Font font;
 	public FontMetrics fm;
+	// the advances of the ASCII characters and the height and ascent, as
+	// measured by init (labels are measured on every frame, see View)
+	private final int[] widths = new int[128];
+	public int height, ascent;
 
 	private Fonts(Font f) {
 		font = f;
@@ -47,6 +52,34 @@ public enum Fonts {
 	public static void init(Graphics g) {
 		for (final Fonts f : Fonts.values()) {
 			f.fm = g.getFontMetrics(f.font);
+			for (char c = 0; c < f.widths.length; ++c) {
+				f.widths[c] = f.fm.charWidth(c);
+			}
+			f.height = f.fm.getHeight();
+			f.ascent = f.fm.getAscent();
 		}
 	}
+
+	/**
+	 * @return the width of the given characters, like FontMetrics.charsWidth
+	 */
+	public int charsWidth(char[] data, int offset, int length) {
+		int w = 0;
+		for (int i = offset; i < offset + length; ++i) {
+			final char c = data[i];
+			w += c < widths.length ? widths[c] : fm.charWidth(c);
+		}
+		return w;
+	}
+
+	/**
+	 * Measures the fonts on an offscreen image, e.g., in a batch job without
+	 * a screen (see FrameExporter).
+	 */
+	public static void init() {
+		final Graphics g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)
+				.getGraphics();
+		init(g);
+		g.dispose();
+	}
 }
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import algvis.ui.view.View;
+
+/**
+ * Draws every step in the history of a panel into an offscreen image and
+ * writes the images as a sequence of PNG files or as an animated GIF. No
+ * screen is needed (the fonts can be measured by Fonts.init()), so this can
+ * run in a batch job with java.awt.headless=true, e.g.:
+ * 
+ * <pre>
+ * Fonts.init();
+ * VisPanel panel = new AVLPanel(new Settings());
+ * panel.pauses = false;
+ * panel.D.insert(...); ...
+ * // wait until panel.operations.isIdle()
+ * new FrameExporter(panel, 800, 600).writePNGs(dir, &quot;avl&quot;);
+ * </pre>
+ * 
+ * The frames are drawn one by one (the panel has one scene), but they are
+ * encoded by a pool of threads, one per processor by default. At most two
+ * frames per thread wait to be encoded, so the memory does not grow with the
+ * length of the history. The panel must not run an algorithm meanwhile;
+ * afterwards its history is back at the step where it was.
+ * 
+ * APNG is not written as javax.imageio has no writer for it.
+ */
+public class FrameExporter {
+	private final VisPanel panel;
+	private final int width, height;
+	private final View V = new View();
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	public FrameExporter(VisPanel panel, int width, int height) {
+		this.panel = panel;
+		this.width = width;
+		this.height = height;
+		if (Fonts.NORMAL.fm == null) {
+			Fonts.init();
+		}
+	}
+
+	/**
+	 * Sets the number of threads that encode the frames.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Writes the state before the first step and after each step into dir as
+	 * prefix00000.png, prefix00001.png, etc.
+	 * 
+	 * @return the number of files written
+	 */
+	public int writePNGs(final File dir, final String prefix)
+			throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("cannot create " + dir);
+		}
+		return export(new Encoder<Void>() {
+			@Override
+			public Void encode(int frame, BufferedImage img) throws IOException {
+				final File f = new File(dir, String.format("%s%05d.png", prefix,
+						frame));
+				if (!ImageIO.write(img, "png", f)) {
+					throw new IOException("no PNG writer");
+				}
+				return null;
+			}
+
+			@Override
+			public void write(Void v) {
+			}
+		});
+	}
+
+	/**
+	 * Writes the state before the first step and after each step as the
+	 * frames of an animated GIF, each shown for delay milliseconds, looping
+	 * forever.
+	 * 
+	 * @return the number of frames
+	 */
+	public int writeGIF(File file, final int delay) throws IOException {
+		final Iterator<ImageWriter> writers = ImageIO
+				.getImageWritersByFormatName("gif");
+		if (!writers.hasNext()) {
+			throw new IOException("no GIF writer");
+		}
+		final ImageWriter writer = writers.next();
+		file.delete();
+		final ImageOutputStream out = ImageIO.createImageOutputStream(file);
+		if (out == null) {
+			throw new IOException("cannot write " + file);
+		}
+		try {
+			writer.setOutput(out);
+			writer.prepareWriteSequence(null);
+			final int n = export(new Encoder<BufferedImage>() {
+				private boolean first = true;
+
+				/**
+				 * Reduces the frame to 256 colors, which is most of the work;
+				 * done by writing it as a GIF of its own and reading it back.
+				 */
+				@Override
+				public BufferedImage encode(int frame, BufferedImage img)
+						throws IOException {
+					final ByteArrayOutputStream b = new ByteArrayOutputStream();
+					if (!ImageIO.write(img, "gif", b)) {
+						throw new IOException("no GIF writer");
+					}
+					return ImageIO.read(new ByteArrayInputStream(b
+							.toByteArray()));
+				}
+
+				@Override
+				public void write(BufferedImage img) throws IOException {
+					final ImageWriteParam param = writer
+							.getDefaultWriteParam();
+					final IIOMetadata meta = writer.getDefaultImageMetadata(
+							new ImageTypeSpecifier(img), param);
+					frameMetadata(meta, delay, first);
+					first = false;
+					writer.writeToSequence(new IIOImage(img, null, meta), param);
+				}
+			});
+			writer.endWriteSequence();
+			return n;
+		} finally {
+			writer.dispose();
+			out.close();
+		}
+	}
+
+	private static void frameMetadata(IIOMetadata meta, int delay,
+			boolean first) throws IIOInvalidTreeException {
+		final String format = meta.getNativeMetadataFormatName();
+		final IIOMetadataNode root = (IIOMetadataNode) meta.getAsTree(format);
+		final IIOMetadataNode gce = new IIOMetadataNode(
+				"GraphicControlExtension");
+		gce.setAttribute("disposalMethod", "none");
+		gce.setAttribute("userInputFlag", "FALSE");
+		gce.setAttribute("transparentColorFlag", "FALSE");
+		gce.setAttribute("delayTime", Integer.toString(delay / 10));
+		gce.setAttribute("transparentColorIndex", "0");
+		root.appendChild(gce);
+		if (first) {
+			// loop forever
+			final IIOMetadataNode apps = new IIOMetadataNode(
+					"ApplicationExtensions");
+			final IIOMetadataNode app = new IIOMetadataNode(
+					"ApplicationExtension");
+			app.setAttribute("applicationID", "NETSCAPE");
+			app.setAttribute("authenticationCode", "2.0");
+			app.setUserObject(new byte[] { 1, 0, 0 });
+			apps.appendChild(app);
+			root.appendChild(apps);
+		}
+		meta.setFromTree(format, root);
+	}
+
+	/**
+	 * How the frames are saved: encode runs in the pool, write runs on the
+	 * calling thread, in the order of the frames.
+	 */
+	private interface Encoder<T> {
+		T encode(int frame, BufferedImage img) throws IOException;
+
+		void write(T encoded) throws IOException;
+	}
+
+	private <T> int export(final Encoder<T> encoder) throws IOException {
+		final ExecutorService pool = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread t = new Thread(r, "frame-encoder");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		final Deque<Future<T>> pending = new ArrayDeque<Future<T>>();
+		final int position = panel.history.getPosition();
+		final int n = panel.history.getLength();
+		try {
+			for (int i = 0; i <= n; ++i) {
+				final int frame = i;
+				final BufferedImage img = render(frame);
+				pending.add(pool.submit(new Callable<T>() {
+					@Override
+					public T call() throws IOException {
+						return encoder.encode(frame, img);
+					}
+				}));
+				while (pending.size() > 2 * threads) {
+					encoder.write(get(pending.poll()));
+				}
+			}
+			while (!pending.isEmpty()) {
+				encoder.write(get(pending.poll()));
+			}
+		} finally {
+			pool.shutdownNow();
+			panel.history.seek(position);
+			panel.scene.endAnimation();
+		}
+		return n + 1;
+	}
+
+	private static <T> T get(Future<T> f) throws IOException {
+		try {
+			return f.get();
+		} catch (final InterruptedException e) {
+			throw new IOException("interrupted");
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Draws the state after the first position steps, fitted to the image.
+	 */
+	private BufferedImage render(int position) {
+		panel.history.seek(position);
+		panel.scene.endAnimation();
+		final BufferedImage img = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g = img.createGraphics();
+		g.setColor(Color.white);
+		g.fillRect(0, 0, width, height);
+		final Rectangle2D r = panel.scene.getBoundingBox();
+		if (r != null) {
+			V.setBounds((int) r.getMinX(), (int) r.getMinY(),
+					(int) r.getMaxX(), (int) r.getMaxY());
+		}
+		V.setGraphics(g, width, height);
+		V.startDrawing();
+		try {
+			panel.scene.draw(V);
+		} finally {
+			V.endDrawing();
+			g.dispose();
+		}
+		return img;
+	}
+}
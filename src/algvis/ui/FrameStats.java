@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.ui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import algvis.core.visual.Scene;
+
+/**
+ * Where the time of the frames of a screen goes: histograms of the time of
+ * Scene.move, of drawing the scene, of copying the frame to the screen
+ * (blit) and of the whole frame, the number of dropped frames (see
+ * Scene.publish) and the number of elements in each layer of the scene.
+ * They are shown over the screen (toggled by F3, see Screen; initially
+ * shown if the system property algvis.stats is true) and published through
+ * JMX as algvis:type=FrameStats,name=screen-N while the screen is on air
+ * (see Screen.resume and Screen.suspend).
+ */
+public class FrameStats implements FrameStatsMBean {
+	private static int screens = 0;
+	private final Scene scene;
+	private final Histogram move = new Histogram(),
+			draw = new Histogram(), blit = new Histogram(),
+			frame = new Histogram();
+	private long frames = 0, dropped = 0;
+	private boolean shown = false;
+	// the name under which the statistics are registered, if they are
+	private ObjectName name = null;
+	private int id = 0;
+
+	/**
+	 * A histogram of times with 4 buckets per octave from 1 us to about
+	 * 1 s; the last bucket takes everything longer.
+	 */
+	static class Histogram {
+		private static final int PER_OCTAVE = 4, BUCKETS = 20 * PER_OCTAVE;
+		private final long[] counts = new long[BUCKETS];
+		private long n = 0;
+
+		void add(long ns) {
+			int b = 0;
+			if (ns >= 1000) {
+				b = (int) (PER_OCTAVE * Math.log(ns / 1000.0) / Math.log(2)) + 1;
+			}
+			++counts[Math.min(b, BUCKETS - 1)];
+			++n;
+		}
+
+		/**
+		 * @return the upper bound of the bucket of the p-th percentile in ms
+		 *         (0 if empty)
+		 */
+		double percentile(double p) {
+			if (n == 0) {
+				return 0;
+			}
+			final long rank = (long) Math.ceil(p / 100 * n);
+			long sum = 0;
+			int b = 0;
+			while (b < BUCKETS - 1 && (sum += counts[b]) < rank) {
+				++b;
+			}
+			return Math.pow(2, b / (double) PER_OCTAVE) / 1000;
+		}
+
+		void reset() {
+			for (int i = 0; i < BUCKETS; ++i) {
+				counts[i] = 0;
+			}
+			n = 0;
+		}
+	}
+
+	public FrameStats(Scene scene) {
+		this.scene = scene;
+	}
+
+	/**
+	 * Publishes the statistics through the platform MBean server, unless
+	 * they already are or that is not allowed (e.g., in an applet). The
+	 * screen keeps its number when registered again.
+	 */
+	public synchronized void register() {
+		if (name != null) {
+			return;
+		}
+		try {
+			if (id == 0) {
+				synchronized (FrameStats.class) {
+					id = ++screens;
+				}
+			}
+			final ObjectName n = new ObjectName(
+					"algvis:type=FrameStats,name=screen-" + id);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+			name = n;
+		} catch (final Exception e) {
+			// no JMX then
+		} catch (final Error e) {
+			// e.g., the management classes are missing
+		}
+	}
+
+	/**
+	 * Withdraws the statistics from the MBean server so that it does not
+	 * keep the scene of a screen that is off air or gone.
+	 */
+	public synchronized void unregister() {
+		if (name == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (final Exception e) {
+			// already gone
+		} catch (final Error e) {
+			// e.g., the management classes are missing
+		}
+		name = null;
+	}
+
+	/**
+	 * Notes a frame drawn in the given times (ns).
+	 */
+	public synchronized void frameDrawn(long moveTime, long drawTime,
+			long blitTime) {
+		++frames;
+		move.add(moveTime);
+		draw.add(drawTime);
+		blit.add(blitTime);
+		frame.add(moveTime + drawTime + blitTime);
+	}
+
+	public synchronized void frameDropped() {
+		++frames;
+		++dropped;
+	}
+
+	public boolean isShown() {
+		return shown;
+	}
+
+	public void setShown(boolean shown) {
+		this.shown = shown;
+	}
+
+	/**
+	 * Draws the summary in the top left corner of g.
+	 */
+	public void paint(Graphics g) {
+		final String[] lines = getSummary().split("\n");
+		g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+		final FontMetrics fm = g.getFontMetrics();
+		int w = 0;
+		for (final String s : lines) {
+			w = Math.max(w, fm.stringWidth(s));
+		}
+		g.setColor(new Color(255, 255, 255, 200));
+		g.fillRect(0, 0, w + 8, lines.length * fm.getHeight() + 6);
+		g.setColor(Color.black);
+		int y = 3 + fm.getAscent();
+		for (final String s : lines) {
+			g.drawString(s, 4, y);
+			y += fm.getHeight();
+		}
+	}
+
+	private static String line(String name, Histogram h) {
+		return String.format("%-6s%8.3f%8.3f%8.3f", name, h.percentile(50),
+				h.percentile(90), h.percentile(99));
+	}
+
+	@Override
+	public synchronized String getSummary() {
+		final StringBuilder s = new StringBuilder();
+		s.append(String.format("%-6s%8s%8s%8s", "ms", "p50", "p90", "p99"))
+				.append('\n');
+		s.append(line("move", move)).append('\n');
+		s.append(line("draw", draw)).append('\n');
+		s.append(line("blit", blit)).append('\n');
+		s.append(line("frame", frame)).append('\n');
+		s.append("frames ").append(frames).append(", dropped ")
+				.append(dropped).append('\n');
+		s.append("layers");
+		for (final int k : getLayerSizes()) {
+			s.append(' ').append(k);
+		}
+		return s.toString();
+	}
+
+	@Override
+	public synchronized long getFrames() {
+		return frames;
+	}
+
+	@Override
+	public synchronized long getDroppedFrames() {
+		return dropped;
+	}
+
+	@Override
+	public synchronized double getMoveP50() {
+		return move.percentile(50);
+	}
+
+	@Override
+	public synchronized double getMoveP90() {
+		return move.percentile(90);
+	}
+
+	@Override
+	public synchronized double getMoveP99() {
+		return move.percentile(99);
+	}
+
+	@Override
+	public synchronized double getDrawP50() {
+		return draw.percentile(50);
+	}
+
+	@Override
+	public synchronized double getDrawP90() {
+		return draw.percentile(90);
+	}
+
+	@Override
+	public synchronized double getDrawP99() {
+		return draw.percentile(99);
+	}
+
+	@Override
+	public synchronized double getBlitP50() {
+		return blit.percentile(50);
+	}
+
+	@Override
+	public synchronized double getBlitP90() {
+		return blit.percentile(90);
+	}
+
+	@Override
+	public synchronized double getBlitP99() {
+		return blit.percentile(99);
+	}
+
+	@Override
+	public synchronized double getFrameP50() {
+		return frame.percentile(50);
+	}
+
+	@Override
+	public synchronized double getFrameP90() {
+		return frame.percentile(90);
+	}
+
+	@Override
+	public synchronized double getFrameP99() {
+		return frame.percentile(99);
+	}
+
+	@Override
+	public int[] getLayerSizes() {
+		return scene.getLayerSizes();
+	}
+
+	@Override
+	public synchronized void reset() {
+		move.reset();
+		draw.reset();
+		blit.reset();
+		frame.reset();
+		frames = 0;
+		dropped = 0;
+	}
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.ui;
+
+/**
+ * The frame statistics of a screen as seen through JMX (see FrameStats).
+ * Times are in milliseconds; a percentile is the upper bound of the
+ * histogram bucket it falls into.
+ */
+public interface FrameStatsMBean {
+	long getFrames();
+
+	long getDroppedFrames();
+
+	double getMoveP50();
+
+	double getMoveP90();
+
+	double getMoveP99();
+
+	double getDrawP50();
+
+	double getDrawP90();
+
+	double getDrawP99();
+
+	double getBlitP50();
+
+	double getBlitP90();
+
+	double getBlitP99();
+
+	double getFrameP50();
+
+	double getFrameP90();
+
+	double getFrameP99();
+
+	/**
+	 * @return the number of elements in each layer of the scene, by z-depth
+	 */
+	int[] getLayerSizes();
+
+	/**
+	 * @return all of the above as text, as in the overlay
+	 */
+	String getSummary();
+
+	/**
+	 * Forgets all frames so far.
+	 */
+	void reset();
+}
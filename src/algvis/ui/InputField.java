@@ -36,11 +36,13 @@ public class InputField extends JTextField {
 	public final static int MAX = 999;
 	final ILabel sb; // status bar
 	private final Settings s;
+	private final MyRandom random;
 
-	public InputField(int cols, ILabel sb, Settings s) {
+	public InputField(int cols, ILabel sb, Settings s, MyRandom random) {
 		super(cols);
 		this.sb = sb;
 		this.s = s;
+		this.random = random;
 	}
 
 	/**
@@ -148,7 +150,7 @@ public class InputField extends JTextField {
 	Vector<Integer> getNonEmptyVI(int min, int max) {
 		final Vector<Integer> args = getVI();
 		if (args.size() == 0) {
-			args.add(MyRandom.Int(min, max));
+			args.add(random.Int(min, max));
 			sb.setText("no input; using random value");
 		}
 		return args;
@@ -162,7 +164,7 @@ public class InputField extends JTextField {
 		final String ss = getText();
 		Vector<String> result = new Vector<String>();
 		if (ss.compareTo("") == 0) {
-			result.add(WordGenerator.getWord(s));
+			result.add(WordGenerator.getWord(s, random));
 		} else {
 			result = WordGenerator.parseString(ss);
 		}
@@ -174,7 +176,7 @@ public class InputField extends JTextField {
 		final String ss = getText();
 		Vector<String> result = new Vector<String>();
 		if (ss.compareTo("") == 0) {
-			result.add(WordGenerator.getABWord(20));
+			result.add(WordGenerator.getABWord(20, random));
 		} else {
 			result = WordGenerator.parseString(ss);
 		}
@@ -18,41 +18,68 @@ package algvis.ui;
 
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ConcurrentModificationException;
+import java.awt.event.KeyEvent;
 
+import javax.swing.AbstractAction;
 import javax.swing.JPanel;
+import javax.swing.KeyStroke;
 import javax.swing.Timer;
 
 import algvis.core.DataStructure;
+import algvis.core.visual.Scene;
 import algvis.ui.view.View;
 
 public class Screen extends JPanel {
 	private static final long serialVersionUID = -8279768206774288161L;
-	// obrazovka (ak nie je suspendnuta) neustale vykresluje poziciu
+	private static final int FRAME = 16; // ms
+	// unless suspended, the screen is redrawn while anything moves; then the
+	// timer stops until the next repaint (see paintComponent)
 	private final Timer timer;
+	private boolean active = false;
 	private DataStructure D = null;
 	private final VisPanel panel;
 
-	private Image I;
-	private Graphics G;
+	// I (drawn by F) is on the screen, the next frame is drawn into B by G;
+	// drawn is the version of the scene in B (see Scene.getVersion)
+	private Image I, B;
+	private Graphics F, G;
 	private Dimension size;
+	private int drawn;
+	private boolean redrawAll = true;
+	// the times of the parts of the last frame in ns (see FrameStats)
+	private long moveTime, drawTime, blitTime;
 
 	public final View V;
+	public final FrameStats stats;
 
 	public Screen(VisPanel panel) {
 		this.panel = panel;
 		V = new View(this);
-		timer = new Timer(50, new ActionListener() {
+		timer = new Timer(FRAME, new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent evt) {
 				repaint();
 			}
 		});
+		stats = new FrameStats(panel.scene);
+		stats.setShown(panel.S.frameStats);
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(
+				KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "frameStats");
+		getActionMap().put("frameStats", new AbstractAction() {
+			private static final long serialVersionUID = -2791441629658371528L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				stats.setShown(!stats.isShown());
+				repaint();
+			}
+		});
 	}
 
 	public void setDS(DataStructure D) {
@@ -62,47 +89,139 @@ public class Screen extends JPanel {
 	void check_size() {
 		final Dimension d = getSize();
 		if (I == null || d.width != size.width || d.height != size.height) {
+			size = d;
 			I = createImage(d.width, d.height);
-			G = I.getGraphics();
+			F = I.getGraphics();
+			clear(F);
+			B = createImage(d.width, d.height);
+			G = B.getGraphics();
 			// V.setWH(d.width, d.height);
 			V.setGraphics((Graphics2D) G, d.width, d.height);
-			size = d;
+			redrawAll = true;
 		}
 	}
 
-	void clear() {
-		G.setColor(Color.white);
-		G.fillRect(0, 0, size.width, size.height);
+	void clear(Graphics g) {
+		g.setColor(Color.white);
+		g.fillRect(0, 0, size.width, size.height);
 	}
 
 	@Override
 	public void paintComponent(Graphics g) {
 		check_size();
-		clear();
+		boolean idle = true, drawnNow = false;
+		moveTime = drawTime = blitTime = 0;
 		if (D != null) {
-			V.startDrawing();
-			try {
-				panel.scene.move();
-				panel.scene.draw(V);
-			} catch (final ConcurrentModificationException ignored) {
-			}
-			V.endDrawing();
-			// V.resetView();
+			drawnNow = render();
+			idle = drawnNow && panel.scene.isAnimationDone();
 		} else {
 			System.err.println("[DS null !]");
 		}
+		final long t = System.nanoTime();
 		g.drawImage(I, 0, 0, null);
+		blitTime += System.nanoTime() - t;
+		if (drawnNow) {
+			stats.frameDrawn(moveTime, drawTime, blitTime);
+		} else {
+			stats.frameDropped();
+		}
+		if (stats.isShown()) {
+			stats.paint(g);
+		}
+		if (idle) {
+			timer.stop();
+		} else if (active && !timer.isRunning()) {
+			timer.start();
+		}
+	}
+
+	/**
+	 * Draws the next frame into the back buffer B and copies the redrawn part
+	 * to I. Only the part of the screen where something has moved since the
+	 * last frame is redrawn (see DirtyRegion); the whole screen is redrawn
+	 * after each step of an algorithm and whenever the view changes. If an
+	 * algorithm is changing the scene, or starts to do so before the frame is
+	 * finished, the frame is dropped and the last complete one stays on the
+	 * screen (see Scene.publish).
+	 * 
+	 * @return whether the frame was drawn
+	 */
+	private boolean render() {
+		final Scene scene = panel.scene;
+		final int version = scene.getVersion();
+		if (!Scene.isConsistent(version)) {
+			return false;
+		}
+		Rectangle clip = null;
+		try {
+			final long t0 = System.nanoTime();
+			scene.move();
+			final long t1 = System.nanoTime();
+			moveTime = t1 - t0;
+			if (redrawAll || version != drawn || V.isChanged()
+					|| scene.dirty.isAll()) {
+				clip = new Rectangle(size);
+			} else if (!scene.dirty.isEmpty()) {
+				clip = V.toScreen(scene.dirty.getBounds());
+			}
+			scene.dirty.reset();
+			if (clip != null && !clip.isEmpty()) {
+				G.setClip(clip);
+				clear(G);
+				V.startDrawing(clip);
+				try {
+					scene.draw(V);
+				} finally {
+					V.endDrawing();
+					G.setClip(null);
+				}
+			}
+			drawTime = System.nanoTime() - t1;
+		} catch (final RuntimeException e) {
+			// an algorithm has changed the elements while they were drawn
+			// (see Scene); the frame is dropped below. Otherwise it is a bug.
+			if (scene.getVersion() == version) {
+				throw e;
+			}
+		}
+		if (scene.frameDrawn(version)) {
+			if (clip != null && !clip.isEmpty()) {
+				final long t = System.nanoTime();
+				final int x2 = clip.x + clip.width, y2 = clip.y + clip.height;
+				F.drawImage(B, clip.x, clip.y, x2, y2, clip.x, clip.y, x2, y2,
+						null);
+				blitTime = System.nanoTime() - t;
+			}
+			drawn = version;
+			redrawAll = false;
+			return true;
+		}
+		// B may be damaged
+		redrawAll = true;
+		return false;
 	}
 
 	public void suspend() {
+		active = false;
 		timer.stop();
+		stats.unregister();
 	}
 
 	public void resume() {
+		stats.register();
+		active = true;
 		timer.start();
 	}
 
 	public void start() {
+		stats.register();
+		active = true;
 		timer.start();
 	}
+
+	@Override
+	public void removeNotify() {
+		suspend();
+		super.removeNotify();
+	}
 }
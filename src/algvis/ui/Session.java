@@ -0,0 +1,638 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.ui;
+
+import java.awt.EventQueue;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import algvis.core.AlgorithmAdapter;
+import algvis.core.DataStructure;
+import algvis.core.Dictionary;
+import algvis.core.OperationCallback;
+import algvis.ds.intervaltree.IntervalTrees;
+import algvis.ds.priorityqueues.MeldablePQ;
+import algvis.ds.priorityqueues.PriorityQueue;
+import algvis.ds.rotations.Rotations;
+import algvis.ds.suffixtree.SuffixTree;
+import algvis.ds.trie.Trie;
+import algvis.ds.unionfind.UnionFind;
+import algvis.ui.view.ClickListener;
+
+/**
+ * The Class Session. Records the operations issued from the buttons of a panel
+ * so that the whole session can be saved to a file and replayed later. Before
+ * every operation the random generators of the panel are reseeded from the
+ * session seed and the number of the operation, so random keys, skip-list
+ * towers and treap priorities come out the same on replay. Going back in the
+ * history and issuing a new operation there is recorded as a rewind.
+ * <p/>
+ * Besides the operations, the changes of the options of the data structure
+ * (see Buttons.setOption) are recorded, and the node chosen by a click is
+ * recorded with the operation that uses it (its position after the
+ * animation). While a session is being loaded, nothing else is recorded.
+ * 
+ * File format (big-endian): magic "AVSN", version, class name of the data
+ * structure, session seed, number of operations, the number of the first
+ * operation whose steps are in the history, the length of the operations in
+ * bytes, every operation as its one-byte code followed by its arguments (ints
+ * as zig-zag varints, strings as modified UTF-8), and finally the position in
+ * the history (see HistoryManager.save).
+ */
+public class Session {
+	public static final byte CLEAR = 1, RANDOM = 2, INSERT = 3, FIND = 4,
+			DELETE = 5, DELETE_MIN = 6, MELD = 7, MAKESET = 8, UNION = 9,
+			OFINTERVAL = 10, INSERT_WORD = 11, FIND_WORD = 12,
+			DELETE_WORD = 13, REWIND = 14, ROTATE = 15, CHANGE_KEY = 16,
+			OPTION = 17;
+	private static final int MAGIC = 0x4156534e; // "AVSN"
+	private static final int VERSION = 3;
+
+	private final VisPanel panel;
+	private long seed;
+	private long count;
+	private ByteArrayOutputStream log;
+	private DataOutputStream out;
+	/**
+	 * the number of every operation that has started and the id of the last
+	 * edit before it; only the operations with steps in the history are kept
+	 */
+	private final LinkedList<long[]> starts = new LinkedList<long[]>();
+	/** the first operation undone by a recorded rewind */
+	private long rewound;
+	/** the operation after the last rewind until it starts, 0 otherwise */
+	private long branch;
+	private volatile boolean loading = false;
+
+	public Session(VisPanel panel) {
+		this.panel = panel;
+		restart(new Random().nextLong());
+	}
+
+	private synchronized void restart(long seed) {
+		this.seed = seed;
+		count = 0;
+		log = new ByteArrayOutputStream();
+		out = new DataOutputStream(log);
+		starts.clear();
+		rewound = Long.MAX_VALUE;
+		branch = 0;
+	}
+
+	/**
+	 * @return number of recorded operations
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Records an operation issued from the panel; ignored while a session is
+	 * being loaded, since the replay records its operations itself.
+	 */
+	public void record(byte op, int... args) {
+		if (!loading) {
+			append(op, args);
+		}
+	}
+
+	public void record(byte op, String arg) {
+		if (!loading) {
+			append(op, arg);
+		}
+	}
+
+	private void append(byte op, int... args) {
+		final long a;
+		synchronized (this) {
+			a = begin(op);
+			try {
+				for (final int x : args) {
+					writeInt(out, x);
+				}
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		seedAlgorithms(a);
+	}
+
+	private void append(byte op, String arg) {
+		final long a;
+		synchronized (this) {
+			a = begin(op);
+			try {
+				out.writeUTF(arg);
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		seedAlgorithms(a);
+	}
+
+	/**
+	 * Records a rewind if the history is not at its end, then the code of the
+	 * next operation, and reseeds the user interface generator.
+	 * 
+	 * @return the seed of the algorithm generator for the operation
+	 */
+	private long begin(byte op) {
+		// until the operation after a rewind starts, the history still shows
+		// the undone edits
+		if (!loading && branch == 0) {
+			final int p = panel.history.getPosition();
+			final int undone = panel.history.getLength() - p;
+			if (undone > 0) {
+				rewound = Math.min(rewound,
+						operationOf(panel.history.getEditId(p)));
+				rewind(undone);
+				branch = count + 1;
+			}
+		}
+		++count;
+		panel.random.setSeed(mix(seed + 2 * count * 0x9E3779B97F4A7C15L));
+		try {
+			out.writeByte(op);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return mix(seed + (2 * count + 1) * 0x9E3779B97F4A7C15L);
+	}
+
+	private void rewind(int undone) {
+		++count;
+		try {
+			out.writeByte(REWIND);
+			writeInt(out, undone);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the number of the operation that made the edit with the given
+	 *         id
+	 */
+	private long operationOf(long editId) {
+		long op = starts.isEmpty() ? 1 : starts.getFirst()[0];
+		for (final long[] s : starts) {
+			if (s[1] >= editId) {
+				break;
+			}
+			op = s[0];
+		}
+		return op;
+	}
+
+	/**
+	 * Reseeds the algorithm generator when the operation is about to run (the
+	 * operations before it may still be running) and notes where its steps
+	 * start. Must not be called with the monitor held: the queue may be full.
+	 */
+	private void seedAlgorithms(final long a) {
+		final long op;
+		synchronized (this) {
+			op = count;
+		}
+		panel.D.start(new Runnable() {
+			@Override
+			public void run() {
+				panel.random.setAlgorithmSeed(a);
+				final long first = panel.history.getFirstEditId();
+				synchronized (Session.this) {
+					if (branch == op) {
+						branch = 0;
+					}
+					starts.add(new long[] { op, panel.history.getLastEditId() });
+					while (starts.size() > 1 && starts.get(1)[1] + 1 < first) {
+						starts.removeFirst();
+					}
+				}
+			}
+		});
+	}
+
+	public synchronized void save(File file) throws IOException {
+		long first = count + 1;
+		final long firstId = panel.history.getFirstEditId();
+		for (final long[] s : starts) {
+			if (s[1] + 1 >= firstId) {
+				first = s[0];
+				break;
+			}
+		}
+		first = Math.min(first, rewound);
+		final DataOutputStream f = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			f.writeInt(MAGIC);
+			f.writeShort(VERSION);
+			f.writeUTF(panel.D.getClass().getName());
+			f.writeLong(seed);
+			f.writeLong(count);
+			f.writeLong(first);
+			out.flush();
+			f.writeInt(log.size());
+			log.writeTo(f);
+			panel.history.save(f);
+		} finally {
+			f.close();
+		}
+	}
+
+	/**
+	 * Clears the data structure and replays the session stored in the file;
+	 * the replayed session continues to be recorded. The operations whose
+	 * steps were no longer in the history are run in the turbo mode (see
+	 * DataStructure.fastForward), the others without pauses, so that their
+	 * steps are in the history again; then the saved position in the history
+	 * is restored.
+	 * <p/>
+	 * Blocks until the replay has been run, so it must not be called from the
+	 * event dispatch thread.
+	 */
+	public void load(File file) throws IOException {
+		final long[] header;
+		final DataInputStream in = open(file);
+		try {
+			header = readHeader(in, file);
+			check(in, header[1], in.readInt());
+		} finally {
+			in.close();
+		}
+		final long seed = header[0], n = header[1], first = header[2];
+
+		// the operations and then the history are read as they are replayed
+		final DataInputStream replayed = open(file);
+		final IOException[] error = new IOException[1];
+		final boolean p = panel.pauses;
+		loading = true;
+		panel.pauses = false;
+		try {
+			readHeader(replayed, file);
+			replayed.readInt();
+			restart(seed);
+			panel.D.fastForward(new Runnable() {
+				@Override
+				public void run() {
+					clear();
+					try {
+						for (long i = 1; i < first && i <= n;) {
+							i += replay(replayed);
+						}
+					} catch (final IOException e) {
+						error[0] = e;
+					}
+				}
+			});
+			drain();
+			if (error[0] != null) {
+				throw error[0];
+			}
+			for (long i = Math.max(first, 1); i <= n;) {
+				i += replay(replayed);
+			}
+			panel.D.start(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						panel.history.load(replayed);
+					} catch (final IOException e) {
+						error[0] = e;
+					}
+				}
+			});
+			drain();
+			if (error[0] != null) {
+				throw error[0];
+			}
+		} finally {
+			replayed.close();
+			panel.pauses = p;
+			loading = false;
+			EventQueue.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					panel.refresh();
+				}
+			});
+		}
+	}
+
+	private static DataInputStream open(File file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(
+				file)));
+	}
+
+	/**
+	 * Reads the header up to the length of the operations.
+	 * 
+	 * @return the seed, the number of operations and the first operation
+	 *         with steps in the history
+	 */
+	private long[] readHeader(DataInputStream in, File file)
+			throws IOException {
+		final int magic = in.readInt();
+		final short version = in.readShort();
+		if (magic != MAGIC || version < 2 || version > VERSION) {
+			throw new IOException("not a session file: " + file);
+		}
+		final String ds = in.readUTF();
+		if (!ds.equals(panel.D.getClass().getName())) {
+			throw new IOException("session of " + ds
+					+ " cannot be loaded into " + panel.D.getClass().getName());
+		}
+		return new long[] { in.readLong(), in.readLong(), in.readLong() };
+	}
+
+	/**
+	 * Reads the n operations without running them and checks that they take
+	 * exactly length bytes.
+	 */
+	private static void check(DataInputStream in, long n, int length)
+			throws IOException {
+		long read = 0;
+		for (long i = 0; i < n; ++i) {
+			final int k = arity(in.readByte());
+			++read;
+			if (k < 0) {
+				final int utf = in.readUnsignedShort();
+				in.readFully(new byte[utf]);
+				read += 2 + utf;
+			}
+			for (int j = 0; j < k; ++j) {
+				read += skipInt(in);
+			}
+		}
+		if (read != length) {
+			throw new IOException("operations take " + read
+					+ " bytes instead of " + length);
+		}
+	}
+
+	/**
+	 * @return the number of int arguments of the operation, or -1 if it takes
+	 *         a string
+	 */
+	private static int arity(byte op) throws IOException {
+		switch (op) {
+		case CLEAR:
+		case DELETE_MIN:
+			return 0;
+		case RANDOM:
+		case INSERT:
+		case FIND:
+		case DELETE:
+		case MAKESET:
+		case REWIND:
+			return 1;
+		case ROTATE:
+			return 1;
+		case MELD:
+		case UNION:
+		case OFINTERVAL:
+		case OPTION:
+			return 2;
+		case CHANGE_KEY:
+			return 3;
+		case INSERT_WORD:
+		case FIND_WORD:
+		case DELETE_WORD:
+			return -1;
+		default:
+			throw new IOException("unknown operation " + op);
+		}
+	}
+
+	/**
+	 * Replays one operation, or a rewind and the operation after it.
+	 * 
+	 * @return the number of operations replayed
+	 */
+	private int replay(DataInputStream in) throws IOException {
+		final byte op = in.readByte();
+		final DataStructure D = panel.D;
+		if (D instanceof UnionFind || op == MELD || op == CHANGE_KEY
+				|| op == OPTION) {
+			// elements, heaps and options are looked up or set when the
+			// operation is issued, i.e., after the previous ones have run
+			drain();
+		}
+		final int k = arity(op);
+		final int x = k > 0 ? readInt(in) : 0;
+		final int y = k > 1 ? readInt(in) : 0;
+		final int z = k > 2 ? readInt(in) : 0;
+		final String s = k < 0 ? in.readUTF() : null;
+		switch (op) {
+		case REWIND:
+			synchronized (this) {
+				rewind(x);
+			}
+			D.start(new Runnable() {
+				@Override
+				public void run() {
+					panel.history.seek(panel.history.getPosition() - x);
+				}
+			});
+			return 1 + replay(in);
+		case CLEAR:
+			append(op);
+			clear();
+			break;
+		case RANDOM:
+			append(op, x);
+			D.random(x);
+			break;
+		case INSERT:
+			append(op, x);
+			D.insert(x);
+			break;
+		case FIND:
+			append(op, x);
+			if (D instanceof UnionFind) {
+				((UnionFind) D).find(((UnionFind) D).at(x));
+			} else {
+				((Dictionary) D).find(x);
+			}
+			break;
+		case DELETE:
+			append(op, x);
+			((Dictionary) D).delete(x);
+			break;
+		case DELETE_MIN:
+			append(op);
+			((PriorityQueue) D).delete();
+			break;
+		case MELD:
+			append(op, x, y);
+			((MeldablePQ) D).meld(x, y);
+			break;
+		case MAKESET:
+			append(op, x);
+			D.start(new AlgorithmAdapter(panel) {
+				@Override
+				public void runAlgorithm() throws InterruptedException {
+					((UnionFind) D).makeSet(x);
+				}
+			});
+			break;
+		case UNION:
+			append(op, x, y);
+			((UnionFind) D).union(((UnionFind) D).at(x), ((UnionFind) D).at(y));
+			break;
+		case OFINTERVAL:
+			append(op, x, y);
+			((IntervalTrees) D).ofinterval(x, y);
+			break;
+		case INSERT_WORD:
+			append(op, s);
+			if (D instanceof Trie) {
+				((Trie) D).insert(s);
+			} else {
+				((SuffixTree) D).insert(s);
+			}
+			break;
+		case FIND_WORD:
+			append(op, s);
+			if (D instanceof Trie) {
+				((Trie) D).find(s);
+			} else {
+				((SuffixTree) D).find(s);
+			}
+			break;
+		case DELETE_WORD:
+			append(op, s);
+			((Trie) D).delete(s);
+			break;
+		case ROTATE:
+			append(op, x);
+			((Rotations) D).rotate(x);
+			break;
+		case CHANGE_KEY:
+			append(op, x, y, z);
+			// click the node where it was when the key was changed
+			panel.scene.endAnimation();
+			if (D.chosen != null) {
+				D.chosen.unmark();
+				D.chosen = null;
+			}
+			((ClickListener) D).mouseClicked(x, y);
+			if (D instanceof PriorityQueue) {
+				((PriorityQueue) D).decreaseKey(D.chosen, z);
+			} else {
+				((IntervalTrees) D).changeKey(D.chosen, z);
+			}
+			break;
+		case OPTION:
+			append(op, x, y);
+			panel.buttons.setOption(x, y);
+			break;
+		}
+		return 1;
+	}
+
+	private void clear() {
+		final DataStructure D = panel.D;
+		D.start(new AlgorithmAdapter(panel) {
+			@Override
+			public void runAlgorithm() throws InterruptedException {
+				D.clear();
+			}
+		});
+	}
+
+	/**
+	 * Waits until all the queued operations have run.
+	 */
+	private void drain() {
+		final CountDownLatch done = new CountDownLatch(1);
+		panel.D.start(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, new OperationCallback() {
+			@Override
+			public void completed(Runnable operation) {
+				done.countDown();
+			}
+
+			@Override
+			public void failed(Runnable operation, Throwable cause) {
+				done.countDown();
+			}
+		});
+		try {
+			done.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static void writeInt(DataOutputStream out, int x)
+			throws IOException {
+		int v = (x << 1) ^ (x >> 31);
+		while ((v & ~0x7f) != 0) {
+			out.writeByte((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	/**
+	 * Skips an int written by writeInt.
+	 * 
+	 * @return the number of bytes skipped
+	 */
+	private static int skipInt(DataInputStream in) throws IOException {
+		int k = 1;
+		while ((in.readByte() & 0x80) != 0) {
+			if (++k > 5) {
+				throw new EOFException("malformed varint");
+			}
+		}
+		return k;
+	}
+
+	private static int readInt(DataInputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final int b = in.readByte();
+			v |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return (v >>> 1) ^ -(v & 1);
+			}
+		}
+		throw new EOFException("malformed varint");
+	}
+}
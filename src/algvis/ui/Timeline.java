@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Jakub Kováč, Katarína Kotrlová, Pavol Lukča, Viktor Tomkovič, Tatiana Tóthová
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package algvis.ui;
+
+import javax.swing.JSlider;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * The Class Timeline. A slider over the whole history of a panel; dragging it
+ * scrubs through the recorded steps (see VisPanel.scrubTo).
+ */
+public class Timeline extends JSlider implements ChangeListener {
+	private static final long serialVersionUID = 2853104474291659374L;
+	private final VisPanel panel;
+	private boolean updating = false;
+
+	public Timeline(VisPanel panel) {
+		super(0, 0, 0);
+		this.panel = panel;
+		setFocusable(false);
+		addChangeListener(this);
+	}
+
+	/**
+	 * Synchronizes the slider with the history.
+	 */
+	public void refresh() {
+		updating = true;
+		try {
+			final int length = panel.getTimelineLength();
+			setMaximum(length);
+			setValue(panel.getTimelinePosition());
+			setEnabled(length > 0);
+		} finally {
+			updating = false;
+		}
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		if (!updating && getValue() != panel.getTimelinePosition()) {
+			panel.scrubTo(getValue());
+		}
+	}
+}
@@ -18,12 +18,13 @@ package algvis.ui;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.io.File;
+import java.io.IOException;
 import java.util.Hashtable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
@@ -32,12 +33,16 @@ import javax.swing.border.TitledBorder;
 import javax.swing.undo.StateEditable;
 
 import algvis.core.DataStructure;
+import algvis.core.MyRandom;
+import algvis.core.OperationCallback;
+import algvis.core.OperationQueue;
 import algvis.core.Settings;
 import algvis.core.history.HistoryManager;
 import algvis.core.visual.Scene;
 import algvis.internationalization.ILabel;
 import algvis.internationalization.LanguageListener;
 import algvis.internationalization.Languages;
+import algvis.ui.view.LayoutListener;
 
 public abstract class VisPanel extends JPanel implements LanguageListener,
 		StateEditable {
@@ -51,17 +56,30 @@ public abstract class VisPanel extends JPanel implements LanguageListener,
 	public Screen screen; // obrazovky v strede
 	public final Scene scene = new Scene();
 	public ILabel statusBar; // a status baru
+	public Timeline timeline;
 	public final Settings S;
 	private TitledBorder border;
 
 	public volatile boolean pauses = true;
+	/**
+	 * headless fast-forward: algorithms skip pauses, history, commentary and
+	 * scene updates (see DataStructure.fastForward)
+	 */
+	public volatile boolean turbo = false;
 	public boolean small = false;
-	public ExecutorService algorithmPool = Executors.newSingleThreadExecutor();
+	public final OperationQueue operations;
 	public final HistoryManager history = new HistoryManager(this);
+	public final Session session = new Session(this);
+	/** the random generators of this panel (see Session) */
+	public final MyRandom random = new MyRandom();
 	private boolean started = false;
 
 	protected VisPanel(Settings S) {
 		this.S = S;
+		operations = new OperationQueue(S.runtime);
+		S.addOperationQueue(operations);
+		history.setBudget(S.getHistoryBudget(), S.historySpill == null ? null
+				: new File(S.historySpill));
 		init();
 	}
 
@@ -70,7 +88,25 @@ public abstract class VisPanel extends JPanel implements LanguageListener,
 		final JPanel screenP = initScreen();
 		final JScrollPane commentary = initCommentary();
 		statusBar = new ILabel("EMPTYSTR");
+		operations.setRejectionCallback(new OperationCallback() {
+			@Override
+			public void completed(Runnable operation) {
+			}
+
+			@Override
+			public void failed(Runnable operation, Throwable cause) {
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						statusBar.setT("queuefull");
+					}
+				});
+			}
+		});
 		initDS();
+		if (D instanceof LayoutListener) {
+			S.addLayoutListener((LayoutListener) D);
+		}
 
 		final GridBagConstraints cs = new GridBagConstraints();
 		cs.gridx = 0;
@@ -130,6 +166,8 @@ public abstract class VisPanel extends JPanel implements LanguageListener,
 			}
 		};
 		screenP.add(screen, BorderLayout.CENTER);
+		timeline = new Timeline(this);
+		screenP.add(timeline, BorderLayout.SOUTH);
 
 		border = BorderFactory.createTitledBorder("");
 		border.setTitleJustification(TitledBorder.CENTER);
@@ -194,6 +232,33 @@ public abstract class VisPanel extends JPanel implements LanguageListener,
 	public void refresh() {
 		buttons.refresh();
 		commentary.refresh();
+		timeline.refresh();
+		screen.repaint();
+	}
+
+	/**
+	 * @return number of recorded steps
+	 */
+	public int getTimelineLength() {
+		return history.getLength();
+	}
+
+	/**
+	 * @return number of steps that are currently done
+	 */
+	public int getTimelinePosition() {
+		return history.getPosition();
+	}
+
+	/**
+	 * Jumps to the state after the first position steps without animating.
+	 * Long jumps start from the nearest keyframe, so the cost does not depend
+	 * on the distance.
+	 */
+	public void scrubTo(int position) {
+		history.seek(position);
+		scene.endAnimation();
+		refresh();
 	}
 
 	@Override
@@ -210,8 +275,26 @@ public abstract class VisPanel extends JPanel implements LanguageListener,
 		scene.restoreState(state);
 	}
 
+	/**
+	 * Saves the operations of this session (see Session).
+	 */
+	public void saveSession(File file) throws IOException {
+		session.save(file);
+	}
+
+	/**
+	 * Replaces the data structure by a replay of a saved session; blocks until
+	 * the replay has been run, so it must not be called from the event
+	 * dispatch thread.
+	 */
+	public void loadSession(File file) throws IOException {
+		if (history.canRedo()) {
+			newAlgorithmPool();
+		}
+		session.load(file);
+	}
+
 	public void newAlgorithmPool() {
-		algorithmPool.shutdownNow();
-		algorithmPool = Executors.newSingleThreadExecutor();
+		operations.cancelAll();
 	}
 }
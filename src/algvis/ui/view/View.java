@@ -21,6 +21,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.event.MouseEvent;
@@ -57,33 +58,87 @@ public class View implements MouseListener, MouseMotionListener,
 
 	public final AffineTransform at;
 	private AffineTransform oldTransform;
+	// the visible part of the plane (as of startDrawing)
+	private static final Rectangle2D EVERYTHING = new Rectangle2D.Double(
+			-1e9, -1e9, 2e9, 2e9);
+	private final Rectangle2D viewport = new Rectangle2D.Double();
+	// has the transform changed since the last frame?
+	private boolean changed = true;
+	// the scale of the last frame and whether it differs from the one before
+	private double scale = 0;
+	private boolean zooming = false;
+	// the screen while drawing an image of a subtree (see algvis.core.Tile)
+	private Graphics2D screen = null;
+	/*
+	 * Levels of detail. Below PLAIN_SCALE the keys are too small to read and
+	 * text is drawn only near the centre of the screen (in the focus); below
+	 * POINT_SCALE nodes are drawn as plain squares, arrows without heads and
+	 * nothing is antialiased.
+	 */
+	private static final double PLAIN_SCALE = 0.6, POINT_SCALE = 0.3;
+	private Detail detail = Detail.FULL;
+	private final Rectangle2D focus = new Rectangle2D.Double();
+	// digits of a number label (see drawNumber)
+	private final char[] label = new char[11];
+	// lines of the current color not drawn yet (see flush)
+	private final Path2D lines = new Path2D.Float();
+	private boolean batched = false;
 	private ClickListener D;
+	private final JPanel P;
+
+	/**
+	 * A view of no panel, e.g., of an offscreen image (see FrameExporter); it
+	 * is not controlled by the mouse.
+	 */
+	public View() {
+		this(null);
+	}
 
 	public View(JPanel P) {
-		P.addMouseListener(this);
-		P.addMouseMotionListener(this);
-		P.addMouseWheelListener(this);
+		this.P = P;
+		if (P != null) {
+			P.addMouseListener(this);
+			P.addMouseMotionListener(this);
+			P.addMouseWheelListener(this);
+		}
 		at = new AffineTransform();
+		viewport.setRect(EVERYTHING);
 		setBounds(0, 0, 0, 0);
 	}
 
 	public void setGraphics(Graphics2D g, int W, int H) {
-		this.g = g;
+		setSurface(g);
 		this.W = W;
 		this.H = H;
+		resetView();
+	}
+
+	/**
+	 * Redirects drawing to another surface of the same size (e.g., the other
+	 * buffer of the screen) without resetting the view.
+	 */
+	public void setSurface(Graphics2D g) {
+		flush();
+		this.g = g;
+		setHints();
+	}
+
+	private void setHints() {
 		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-				RenderingHints.VALUE_ANTIALIAS_ON);
+				detail == Detail.POINT ? RenderingHints.VALUE_ANTIALIAS_OFF
+						: RenderingHints.VALUE_ANTIALIAS_ON);
 		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
 				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-		resetView();
 	}
 
 	public Graphics2D getGraphics() {
+		flush();
 		return g;
 	}
 
 	public void resetView() {
 		at.setToIdentity();
+		changed = true;
 		double f = 1, f2 = 1;
 		if ((maxx - minx) > W || (maxy - miny) > H) {
 			f2 = Math.min(W / (double) (maxx - minx), H
@@ -111,6 +166,13 @@ public class View implements MouseListener, MouseMotionListener,
 			at.scale(f, f);
 			at.translate(-minx, -miny);
 		}
+		repaint();
+	}
+
+	private void repaint() {
+		if (P != null) {
+			P.repaint();
+		}
 	}
 
 	public void setBounds(int minx, int miny, int maxx, int maxy) {
@@ -127,6 +189,8 @@ public class View implements MouseListener, MouseMotionListener,
 			t.scale(f, f);
 			t.translate(-x, -y);
 			at.preConcatenate(t);
+			changed = true;
+			repaint();
 		}
 	}
 
@@ -175,6 +239,8 @@ public class View implements MouseListener, MouseMotionListener,
 				- mouseY));
 		mouseX = x;
 		mouseY = y;
+		changed = true;
+		repaint();
 	}
 
 	@Override
@@ -199,6 +265,8 @@ public class View implements MouseListener, MouseMotionListener,
 		if (D != null) {
 			D.mouseClicked((int) p.getX(), (int) p.getY());
 		}
+		changed = true;
+		repaint();
 	}
 
 	@Override
@@ -218,16 +286,181 @@ public class View implements MouseListener, MouseMotionListener,
 	}
 
 	public void setColor(Color c) {
-		g.setColor(c);
+		if (!c.equals(g.getColor())) {
+			flush();
+			g.setColor(c);
+		}
+	}
+
+	/**
+	 * Draws the lines collected by addLine as one path. Lines are collected
+	 * while the color stays the same and drawn before anything else, so the
+	 * picture is as if each of them had been drawn right away.
+	 */
+	private void flush() {
+		if (!batched) {
+			return;
+		}
+		g.draw(lines);
+		lines.reset();
+		batched = false;
 	}
 
 	public void startDrawing() {
+		startDrawing(null);
+	}
+
+	/**
+	 * Start drawing a frame; only the given part of the screen (or the whole
+	 * screen if clip is null) is redrawn and everything else is culled.
+	 */
+	public void startDrawing(Rectangle clip) {
 		oldTransform = g.getTransform();
 		g.transform(at);
+		changed = false;
+		zooming = at.getScaleX() != scale;
+		scale = at.getScaleX();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, W, H);
+		}
+		final Point2D a = r2v(clip.x, clip.y), b = r2v(clip.x + clip.width,
+				clip.y + clip.height);
+		viewport.setFrameFromDiagonal(a, b);
+		final double s = getScale();
+		detail = s >= PLAIN_SCALE ? Detail.FULL : s >= POINT_SCALE ? Detail.PLAIN
+				: Detail.POINT;
+		setHints();
+		focus.setFrameFromDiagonal(r2v(W / 4, H / 4), r2v(3 * W / 4, 3 * H / 4));
+	}
+
+	/**
+	 * @return the level of detail of the frame being drawn
+	 */
+	public Detail getDetail() {
+		return detail;
+	}
+
+	/**
+	 * @return the level of detail at point (x,y), i.e., FULL in the focus
+	 *         if keys are not drawn elsewhere
+	 */
+	public Detail getDetail(double x, double y) {
+		if (detail == Detail.PLAIN && screen == null && focus.contains(x, y)) {
+			return Detail.FULL;
+		}
+		return detail;
+	}
+
+	/**
+	 * @return whether anything in r would be drawn in more detail than the
+	 *         rest of the frame
+	 */
+	public boolean isFocused(Rectangle2D r) {
+		return detail == Detail.PLAIN && focus.intersects(r);
+	}
+
+	/**
+	 * @return whether the transform has changed since the last frame
+	 */
+	public boolean isChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return the part of the screen covering rectangle r of the plane
+	 */
+	public Rectangle toScreen(Rectangle2D r) {
+		final Point2D a = v2r(r.getMinX(), r.getMinY()), b = v2r(r.getMaxX(),
+				r.getMaxY());
+		final Rectangle s = new Rectangle();
+		s.setFrameFromDiagonal(a, b);
+		s.grow(2, 2);
+		return s.intersection(new Rectangle(0, 0, W, H));
+	}
+
+	/**
+	 * Is any part of the square with center (x,y) and radius r visible?
+	 */
+	public boolean isVisible(double x, double y, double r) {
+		return screen != null
+				|| viewport.intersects(x - r, y - r, 2 * r, 2 * r);
+	}
+
+	/**
+	 * @return the scale of the surface being drawn on
+	 */
+	public double getScale() {
+		return g.getTransform().getScaleX();
+	}
+
+	/**
+	 * @return whether the scale has changed since the last frame
+	 */
+	public boolean isZooming() {
+		return zooming;
+	}
+
+	/**
+	 * Redirects drawing to an image of a subtree (see algvis.core.Tile); g
+	 * is already transformed and nothing is culled until endTile.
+	 */
+	public void startTile(Graphics2D g) {
+		flush();
+		screen = this.g;
+		setSurface(g);
+	}
+
+	public void endTile() {
+		flush();
+		g = screen;
+		screen = null;
+	}
+
+	public boolean isTiling() {
+		return screen != null;
+	}
+
+	/**
+	 * @return the point of the surface where (x,y) is drawn
+	 */
+	public Point2D toDevice(double x, double y) {
+		return g.getTransform().transform(new Point2D.Double(x, y), null);
+	}
+
+	/**
+	 * Draws an image of the rectangle r of the plane drawn at the current
+	 * scale (and shifted to whole pixels, see toDevice), unless r is not
+	 * visible.
+	 * 
+	 * @return whether the image was drawn
+	 */
+	public boolean drawTile(Image img, Rectangle r) {
+		flush();
+		if (!isVisible(r)) {
+			return false;
+		}
+		final AffineTransform t = g.getTransform();
+		final Point2D p = toDevice(r.x, r.y);
+		g.setTransform(new AffineTransform());
+		g.drawImage(img, (int) Math.floor(p.getX()),
+				(int) Math.floor(p.getY()), null);
+		g.setTransform(t);
+		return true;
+	}
+
+	/**
+	 * Is any part of rectangle r visible?
+	 */
+	public boolean isVisible(Rectangle2D r) {
+		return screen != null || viewport.intersects(r);
 	}
 
 	public void endDrawing() {
+		flush();
 		g.setTransform(oldTransform);
+		viewport.setRect(EVERYTHING);
+		detail = Detail.FULL;
+		setHints();
 	}
 
 	public Point2D cut(double x, double y, double x2, double y2, double c) {
@@ -237,10 +470,12 @@ public class View implements MouseListener, MouseMotionListener,
 	}
 
 	public void fillRect(double x, double y, double a, double b) {
+		flush();
 		g.fillRect((int) (x - a), (int) (y - b), (int) (2 * a), (int) (2 * b));
 	}
 
 	void drawRect(double x, double y, double a, double b) {
+		flush();
 		g.drawRect((int) (x - a), (int) (y - b), (int) (2 * a), (int) (2 * b));
 	}
 
@@ -253,27 +488,59 @@ public class View implements MouseListener, MouseMotionListener,
 	}
 
 	public void fillOval(double x, double y, double a, double b) {
+		flush();
 		g.fillOval((int) x, (int) y, (int) a, (int) b);
 	}
 
 	public void drawOval(double x, double y, double a, double b) {
+		flush();
 		g.drawOval((int) x, (int) y, (int) a, (int) b);
 	}
 
 	public void fillCircle(double x, double y, double r) {
+		flush();
+		if (detail == Detail.POINT) {
+			g.fillRect((int) (x - r), (int) (y - r), 2 * (int) r, 2 * (int) r);
+			return;
+		}
 		g.fillOval((int) (x - r), (int) (y - r), 2 * (int) r, 2 * (int) r);
 	}
 
 	public void drawCircle(double x, double y, double r) {
+		flush();
+		if (detail == Detail.POINT) {
+			return;
+		}
 		g.drawOval((int) (x - r), (int) (y - r), 2 * (int) r, 2 * (int) r);
 	}
 
 	public void drawLine(double x1, double y1, double x2, double y2) {
-		g.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+		if (screen == null
+				&& !viewport.intersects(Math.min(x1, x2), Math.min(y1, y2),
+						Math.abs(x2 - x1) + 1, Math.abs(y2 - y1) + 1)) {
+			return;
+		}
+		addLine(x1, y1, x2, y2);
+	}
+
+	/**
+	 * Draws a line, or adds it to the batch of lines if not antialiased:
+	 * Java2D draws a thin antialiased line faster on its own than in a path,
+	 * but plain lines are faster in one path.
+	 */
+	private void addLine(double x1, double y1, double x2, double y2) {
+		if (detail != Detail.POINT) {
+			g.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+			return;
+		}
+		lines.moveTo((int) x1, (int) y1);
+		lines.lineTo((int) x2, (int) y2);
+		batched = true;
 	}
 
 	void drawWideLine(double x1, double y1, double x2, double y2, float width,
 			Color col) {
+		flush();
 		final Stroke old = g.getStroke(), wide = new BasicStroke(width,
 				BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
 		final Color c = g.getColor();
@@ -294,6 +561,7 @@ public class View implements MouseListener, MouseMotionListener,
 	}
 
 	public void drawDashedLine(double x1, double y1, double x2, double y2) {
+		flush();
 		final float dash1[] = { 2.0f, 5.0f };
 		final Stroke old = g.getStroke(), dashed = new BasicStroke(1.0f,
 				BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, dash1,
@@ -305,6 +573,7 @@ public class View implements MouseListener, MouseMotionListener,
 
 	// square; x, y is the center
 	public void drawSquare(double x, double y, double a) {
+		flush();
 		g.drawRect((int) (x - a), (int) (y - a), 2 * (int) a, 2 * (int) a);
 	}
 
@@ -316,16 +585,68 @@ public class View implements MouseListener, MouseMotionListener,
 	 * draw string horizontally; middle character is at (x, y)
 	 */
 	public void drawString(String str, double x, double y, Fonts f) {
+		flush();
+		if (getDetail(x, y) != Detail.FULL) {
+			return;
+		}
 		x -= f.fm.stringWidth(str) / 2;
 		y -= f.fm.getHeight() / 2 - f.fm.getAscent();
 		g.setFont(f.font);
 		g.drawString(str, (int) x, (int) y);
 	}
 
+	/**
+	 * draw number n like drawString, without making a string of it (the
+	 * glyphs themselves are cached by Java2D)
+	 */
+	public void drawNumber(int n, double x, double y, Fonts f) {
+		if (getDetail(x, y) != Detail.FULL) {
+			return;
+		}
+		if (n == Integer.MIN_VALUE) {
+			drawString(Integer.toString(n), x, y, f);
+			return;
+		}
+		int i = label.length;
+		int m = Math.abs(n);
+		do {
+			label[--i] = (char) ('0' + m % 10);
+			m /= 10;
+		} while (m > 0);
+		if (n < 0) {
+			label[--i] = '-';
+		}
+		drawChars(i, label.length - i, x, y, f);
+	}
+
+	/**
+	 * draw character c like drawString, without making a string of it
+	 */
+	public void drawChar(char c, double x, double y, Fonts f) {
+		if (getDetail(x, y) != Detail.FULL) {
+			return;
+		}
+		label[0] = c;
+		drawChars(0, 1, x, y, f);
+	}
+
+	private void drawChars(int offset, int length, double x, double y,
+			Fonts f) {
+		flush();
+		x -= f.charsWidth(label, offset, length) / 2;
+		y -= f.height / 2 - f.ascent;
+		g.setFont(f.font);
+		g.drawChars(label, offset, length, (int) x, (int) y);
+	}
+
 	/**
 	 * draw string horizontally; last character is at (x, y)
 	 */
 	public void drawStringLeft(String str, double x, double y, Fonts f) {
+		flush();
+		if (getDetail(x, y) != Detail.FULL) {
+			return;
+		}
 		x -= f.fm.stringWidth(str);
 		y -= f.fm.getHeight() / 2 - f.fm.getAscent();
 		g.setFont(f.font);
@@ -336,12 +657,20 @@ public class View implements MouseListener, MouseMotionListener,
 	 * draw string horizontally; first character is at (x, y)
 	 */
 	public void drawStringRight(String str, double x, double y, Fonts f) {
+		flush();
+		if (getDetail(x, y) != Detail.FULL) {
+			return;
+		}
 		y -= f.fm.getHeight() / 2 - f.fm.getAscent();
 		g.setFont(f.font);
 		g.drawString(str, (int) x, (int) y);
 	}
 
 	public void drawStringTop(String str, double x, double y, Fonts f) {
+		flush();
+		if (getDetail(x, y) != Detail.FULL) {
+			return;
+		}
 		x -= f.fm.stringWidth(str) / 2;
 		y -= f.fm.getHeight();
 		g.setFont(f.font);
@@ -349,37 +678,49 @@ public class View implements MouseListener, MouseMotionListener,
 	}
 
 	public void drawVerticalString(String str, double x, double y, Fonts f) {
+		flush();
+		if (getDetail(x, y) != Detail.FULL) {
+			return;
+		}
 		final int xx = (int) x;
 		int yy = (int) y - str.length() * f.fm.getHeight() / 2;
 		g.setFont(f.font);
 		for (int i = 0; i < str.length(); ++i) {
-			g.drawString("" + str.charAt(i), xx, yy);
+			label[0] = str.charAt(i);
+			g.drawChars(label, 0, 1, xx, yy);
 			yy += f.fm.getHeight();
 		}
 	}
 
 	public void fillArc(double x, double y, double w, double h, double a1,
 			double a2) {
+		flush();
 		g.fillArc((int) x, (int) y, (int) w, (int) h, (int) a1, (int) a2);
 	}
 
 	public void drawRectangle(Rectangle2D r) {
+		flush();
 		g.draw(r);
 	}
 
 	public void drawRoundRectangle(double x, double y, double w, double h,
 			double arcw, double arch) {
+		flush();
 		g.draw(new RoundRectangle2D.Double(x - w, y - h, 2 * w, 2 * h, arcw,
 				arch));
 	}
 
 	public void fillRoundRectangle(double x, double y, double w, double h,
 			double arcw, double arch) {
+		flush();
 		g.fill(new RoundRectangle2D.Double(x - w, y - h, 2 * w, 2 * h, arcw,
 				arch));
 	}
 
 	private void arrowHead(double x, double y, double xx, double yy) {
+		if (detail == Detail.POINT) {
+			return;
+		}
 		final double alpha = 6.0, beta = 1.5;
 		double vecX, vecY, normX, normY, d, th, ta, baseX, baseY;
 
@@ -406,16 +747,17 @@ public class View implements MouseListener, MouseMotionListener,
 		p.lineTo(baseX + th * normX, baseY + th * normY);
 		p.lineTo(baseX - th * normX, baseY - th * normY);
 		p.closePath();
+		flush();
 		g.fill(p);
 	}
 
 	public void drawArrow(double x1, double y1, double x2, double y2) {
-		g.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+		addLine(x1, y1, x2, y2);
 		arrowHead((int) x1, (int) y1, (int) x2, (int) y2);
 	}
 
 	public void drawDoubleArrow(double x1, double y1, double x2, double y2) {
-		g.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+		addLine(x1, y1, x2, y2);
 		arrowHead((int) x1, (int) y1, (int) x2, (int) y2);
 		arrowHead((int) x2, (int) y2, (int) x1, (int) y1);
 	}
@@ -424,6 +766,7 @@ public class View implements MouseListener, MouseMotionListener,
 	// x,y,w,h is the bounding rectangle
 	// a1,a2 is the starting and ending angle in degrees
 	void drawArc(double x, double y, double w, double h, double a1, double a2) {
+		flush();
 		g.drawArc((int) x, (int) y, (int) w, (int) h, (int) a1, (int) (a2 - a1));
 	}
 
@@ -460,6 +803,7 @@ public class View implements MouseListener, MouseMotionListener,
 	}
 
 	public void drawFancyArc(double x1, double y1, double x3, double y3) {
+		flush();
 		g.draw(new CubicCurve2D.Double(x1, y1, x1, y1 + 10, x3, y3 - 40, x3, y3));
 	}
 
@@ -482,10 +826,12 @@ public class View implements MouseListener, MouseMotionListener,
 
 	public void drawCurve(double x1, double y1, double cx1, double cy1,
 			double cx2, double cy2, double x2, double y2) {
+		flush();
 		g.draw(new CubicCurve2D.Double(x1, y1, cx1, cy1, cx2, cy2, x2, y2));
 	}
 
 	public void fillPolygon(Polygon p) {
+		flush();
 		final Stroke old = g.getStroke(), wide = new BasicStroke(27.0f,
 				BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
 		final Color c = g.getColor();
@@ -498,6 +844,7 @@ public class View implements MouseListener, MouseMotionListener,
 	}
 
 	public void drawImage(Image img, double x, double y, double w, double h) {
+		flush();
 		g.drawImage(img, (int) x, (int) y, (int) w, (int) h, null);
 	}
 